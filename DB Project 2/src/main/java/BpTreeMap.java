@@ -8,6 +8,7 @@
 import java.io.*;
 import java.lang.reflect.Array;
 import java.util.*;
+import java.util.function.Function;
 
 import static java.lang.System.out;
 
@@ -17,21 +18,37 @@ import java.awt.RenderingHints.Key;
  * This class provides B+Tree maps.  B+Trees are used as multi-level index structures
  * that provide efficient access for both point queries and range queries.
  * All keys will be at the leaf level with leaf nodes linked by references.
- * Internal nodes will contain divider keys such that divKey corresponds to the
- * largest key in its left subtree.
+ * Internal nodes will contain divider keys such that divKey is at least as large
+ * as every key in its left subtree and smaller than every key in its right subtree.
+ * Nodes have a configurable fanout (ORDER by default) and are searched by binary
+ * search, so with a fanout in the hundreds a lookup visits 2 to 4 nodes even for
+ * millions of keys.  Removing keys keeps every node but the root at least about
+ * half full, by borrowing from or merging with a sibling, so the tree shrinks as
+ * it empties.
  */
 public class BpTreeMap <K extends Comparable <K>, V>
 extends AbstractMap <K, V>
 implements Serializable, Cloneable, SortedMap <K, V>
 {
-	/** The maximum fanout (number of children) for a B+Tree node.
-	 *  May wish to increase for better performance for Program 3.
+	/** The default maximum fanout (number of children) for a B+Tree node.  A node
+	 *  then spans a few kilobytes (a page or so) of key and reference arrays.
 	 */
-	private static final int ORDER = 3;
+	public static final int ORDER = 128;
 
-	/** The floor of half the ORDER.
+	/** The maximum fanout of the nodes of this tree (a node splits when it reaches
+	 *  order keys, leaving each half with about order / 2).
 	 */
-	private static final int MID = ORDER / 2;
+	private final int order;
+
+	/** The fewest keys a node other than the root may hold; a node left with fewer
+	 *  by a remove borrows from or is merged with a sibling.
+	 */
+	private final int minKeys;
+
+	/** The default fill factor of the nodes built by bulkLoad, which leaves room in
+	 *  each for some inserts before it splits.
+	 */
+	public static final double FILL = 0.75;
 
 	/** The debug flag
 	 */
@@ -45,32 +62,30 @@ implements Serializable, Cloneable, SortedMap <K, V>
 	 */
 	private final Class <V> classV;
 
+	/** The number of keys in the B+Tree map.
+	 */
+	private int size = 0;
+
 	/********************************************************************************
-	 * This inner class defines nodes that are stored in the B+tree map.
+	 * This inner class defines nodes that are stored in the B+tree map.  A node has
+	 * room for one key (and reference) more than it may keep, so an insert can
+	 * overflow it before it is split.
 	 */
-	private int treesize = 1;
 	private class Node
 	{
 		boolean   isLeaf;
 		int       nKeys;
 		K []      key;
 		Object [] ref;
+		Node      next, prev;                                 // the next and previous leaf (leaves only)
 
 		@SuppressWarnings("unchecked")
 		Node (boolean _isLeaf)
 		{
 			isLeaf = _isLeaf;
 			nKeys  = 0;
-			key    = (K []) Array.newInstance (classK, ORDER - 1);
-			if (isLeaf)
-			{
-				//ref = (V []) Array.newInstance (classV, ORDER);
-				ref = new Object [ORDER];
-			} 
-			else 
-			{
-				ref = (Node []) Array.newInstance (Node.class, ORDER);
-			} // if
+			key    = (K []) Array.newInstance (classK, order);
+			ref    = new Object [order + 1];
 		} // constructor
 	} // Node inner class
 
@@ -86,20 +101,37 @@ implements Serializable, Cloneable, SortedMap <K, V>
 	 */
 	int count = 0;
 
-	// Variable added by me
-	public  K middlekey;
+	/** The divider key pushed up by the last split (see insert).
+	 */
+	private K divider;
 
-	public K largestLeft;
+	/** The value replaced by the last put of an existing key (see insert).
+	 */
+	private V old;
 
 	/********************************************************************************
-	 * Construct an empty B+Tree map.
+	 * Construct an empty B+Tree map with the default fanout (ORDER).
 	 * @param _classK  the class for keys (K)
 	 * @param _classV  the class for values (V)
 	 */
 	public BpTreeMap (Class <K> _classK, Class <V> _classV)
 	{
+		this (_classK, _classV, ORDER);
+	} // constructor
+
+	/********************************************************************************
+	 * Construct an empty B+Tree map whose nodes have the given fanout.
+	 * @param _classK  the class for keys (K)
+	 * @param _classV  the class for values (V)
+	 * @param _order   the maximum number of children of a node (at least 3)
+	 */
+	public BpTreeMap (Class <K> _classK, Class <V> _classV, int _order)
+	{
+		if (_order < 3) throw new IllegalArgumentException ("BpTreeMap: order must be at least 3, not " + _order);
 		classK    = _classK;
 		classV    = _classV;
+		order     = _order;
+		minKeys   = (_order - 1) / 2;
 		root      = new Node (true);
 		firstLeaf = root;
 	} // constructor
@@ -114,28 +146,63 @@ implements Serializable, Cloneable, SortedMap <K, V>
 	} // comparator
 
 	/********************************************************************************
-	 * Return a set containing all the entries as pairs of keys and values.
+	 * Return a set view of the entries (pairs of keys and values) in key order.  The
+	 * view is backed by the map, so nothing is copied: its size is the map's and its
+	 * iterator walks the linked leaves, reading each leaf's key and value arrays in
+	 * turn.
 	 * @return  the set view of the map
 	 */
 	public Set <Map.Entry <K, V>> entrySet ()
 	{
-		Set <Map.Entry <K, V>> enSet = new HashSet <> ();
-		Node firstLeafNode = this.root;
+		return new AbstractSet <Map.Entry <K, V>> () {
+			public int size () { return size; }
+			public Iterator <Map.Entry <K, V>> iterator ()
+			{
+				return new Walk <> (cursor (null, true, null, true, false), c -> new SimpleImmutableEntry <> (c.key (), c.value ()));
+			} // iterator
+		};
+	} // entrySet
 
-		while(!firstLeafNode.isLeaf){
-			firstLeafNode = (Node)firstLeafNode.ref[0];
-		}
+	/********************************************************************************
+	 * Return a set view of the keys in ascending order (see entrySet), whose iterator
+	 * creates no entries.
+	 * @return  the set of keys
+	 */
+	public Set <K> keySet ()
+	{
+		return new AbstractSet <K> () {
+			public int size () { return size; }
+			public boolean contains (Object key) { return containsKey (key); }
+			public Iterator <K> iterator () { return new Walk <> (cursor (null, true, null, true, false), Cursor::key); }
+		};
+	} // keySet
 
-		while(firstLeafNode!=null){
-			for(int i=0;i<firstLeafNode.nKeys;i++){
-				SimpleEntry<K, V> simpleEntry = new SimpleEntry<K,V>(firstLeafNode.key[i], (V)firstLeafNode.ref[i]);
-				enSet.add(simpleEntry);
-			}
-			firstLeafNode = (Node)firstLeafNode.ref[ORDER-1];
+	/********************************************************************************
+	 * Return a collection view of the values in key order (see entrySet), whose
+	 * iterator creates no entries.
+	 * @return  the collection of values
+	 */
+	public Collection <V> values ()
+	{
+		return new AbstractCollection <V> () {
+			public int size () { return size; }
+			public Iterator <V> iterator () { return new Walk <> (cursor (null, true, null, true, false), Cursor::value); }
+		};
+	} // values
 
-		}
-		return enSet;
-	} // entrySet 
+	/********************************************************************************
+	 * Determine whether the B+Tree map has an entry with the given key (by a lookup,
+	 * rather than the scan AbstractMap would do).
+	 * @param key  the key to look for
+	 * @return  whether it is in the map
+	 */
+	@SuppressWarnings("unchecked")
+	public boolean containsKey (Object key)
+	{
+		Node leaf = leafFor ((K) key);
+		int i = search ((K) key, leaf);
+		return i < leaf.nKeys && ((K) key).compareTo (leaf.key [i]) == 0;
+	} // containsKey
 
 	/********************************************************************************
 	 * Given the key, look up the value in the B+Tree map.
@@ -149,17 +216,159 @@ implements Serializable, Cloneable, SortedMap <K, V>
 	} // get
 
 	/********************************************************************************
-	 * Put the key-value pair in the B+Tree map.
+	 * Put the key-value pair in the B+Tree map, replacing the value of an existing
+	 * key.  When the root splits, a new root is grown above it.
 	 * @param key    the key to insert
 	 * @param value  the value to insert
-	 * @return  null, not the previous value for this key
+	 * @return  the previous value for this key, or null if it is new
 	 */
 	public V put (K key, V value)
 	{
-		insert (key, value, root);
-		return null;
+		old = null;
+		Node rt = insert (key, value, root);
+		if (rt != null) {
+			Node r = new Node (false);
+			r.key [0] = divider;
+			r.ref [0] = root;
+			r.ref [1] = rt;
+			r.nKeys   = 1;
+			root = r;
+		} // if
+		V prev = old;
+		old = null;
+		return prev;
 	} // put
 
+	/********************************************************************************
+	 * Remove the entry with the given key from the B+Tree map.  A node left with
+	 * fewer than minKeys keys borrows one from a sibling with keys to spare, or else
+	 * is merged with a sibling (the right node of the pair into the left one, so the
+	 * first leaf stays first); a root left with a single child is replaced by it.
+	 * @param key  the key to remove
+	 * @return  the value the key had, or null if it was not in the map
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove (Object key)
+	{
+		old = null;
+		delete ((K) key, root);
+		if (! root.isLeaf && root.nKeys == 0) root = (Node) root.ref [0];
+		V prev = old;
+		old = null;
+		return prev;
+	} // remove
+
+	/********************************************************************************
+	 * Rebuild the B+Tree map with its nodes filled to the default fill factor (see
+	 * bulkLoad), e.g., after many removes have left it with nodes just half full.
+	 */
+	public void compact ()
+	{
+		List <Map.Entry <K, V>> entries = new ArrayList <> (entrySet ());
+		Arrays.fill (firstLeaf.key, null);
+		Arrays.fill (firstLeaf.ref, null);
+		firstLeaf.nKeys = 0;
+		firstLeaf.next  = null;
+		firstLeaf.prev  = null;
+		root = firstLeaf;
+		size = 0;
+		bulkLoad (entries.iterator ());
+	} // compact
+
+	/********************************************************************************
+	 * Build the B+Tree map from entries in ascending key order, with nodes filled to
+	 * the default fill factor (FILL).
+	 * @param entries  the entries, sorted by key
+	 */
+	public void bulkLoad (Iterator <? extends Map.Entry <K, V>> entries)
+	{
+		bulkLoad (entries, FILL);
+	} // bulkLoad
+
+	/********************************************************************************
+	 * Build the B+Tree map bottom-up from entries in ascending key order, in one
+	 * linear pass rather than a put (a descent from the root) per key.  The leaves
+	 * are packed left to right with fill * (order - 1) keys each (the last two
+	 * leaves share what is left), then each level of internal nodes is built over
+	 * the one below with about fill * order children each, until one node, the
+	 * root, is left.  A key equal to the one before it replaces its value, as put
+	 * would.  The map must be empty.
+	 * @param entries  the entries, sorted by key
+	 * @param fill     the fraction of each node to fill (from 0.5 to 1)
+	 */
+	public void bulkLoad (Iterator <? extends Map.Entry <K, V>> entries, double fill)
+	{
+		if (size > 0) throw new IllegalStateException ("BpTreeMap.bulkLoad: the map is not empty");
+		if (fill < 0.5 || fill > 1) throw new IllegalArgumentException ("BpTreeMap.bulkLoad: bad fill factor " + fill);
+		int perLeaf = Math.max (1, (int) (fill * (order - 1)));
+		int perNode = Math.max (3, (int) (fill * order));
+
+		List <Node> level = new ArrayList <> ();
+		List <K>    max   = new ArrayList <> ();             // the largest key under each node of level
+		Node leaf = firstLeaf;
+		K last = null;
+		while (entries.hasNext ()) {
+			Map.Entry <K, V> e = entries.next ();
+			K k = e.getKey ();
+			int c = (last == null) ? 1 : k.compareTo (last);
+			if (c < 0) throw new IllegalArgumentException ("BpTreeMap.bulkLoad: key " + k + " is out of order");
+			if (c == 0) {
+				leaf.ref [leaf.nKeys - 1] = e.getValue ();
+				continue;
+			} // if
+			if (leaf.nKeys == perLeaf) {                     // start the next leaf
+				level.add (leaf);
+				max.add (last);
+				leaf.next = new Node (true);
+				leaf.next.prev = leaf;
+				leaf = leaf.next;
+			} // if
+			leaf.key [leaf.nKeys]   = k;
+			leaf.ref [leaf.nKeys++] = e.getValue ();
+			size++;
+			last = k;
+		} // while
+		if (last == null) return;
+		level.add (leaf);
+		max.add (last);
+
+		int n = level.size ();
+		if (n > 1 && leaf.nKeys < (order - 1) / 2) {         // even out the last two leaves
+			Node prev = level.get (n - 2);
+			int move = (prev.nKeys - leaf.nKeys) / 2;
+			System.arraycopy (leaf.key, 0, leaf.key, move, leaf.nKeys);
+			System.arraycopy (leaf.ref, 0, leaf.ref, move, leaf.nKeys);
+			System.arraycopy (prev.key, prev.nKeys - move, leaf.key, 0, move);
+			System.arraycopy (prev.ref, prev.nKeys - move, leaf.ref, 0, move);
+			Arrays.fill (prev.key, prev.nKeys - move, prev.nKeys, null);
+			Arrays.fill (prev.ref, prev.nKeys - move, prev.nKeys, null);
+			prev.nKeys -= move;
+			leaf.nKeys += move;
+			max.set (n - 2, prev.key [prev.nKeys - 1]);
+		} // if
+
+		while (level.size () > 1) {                          // build the next level up
+			n = level.size ();
+			int m = (n + perNode - 1) / perNode;             // spread the children evenly
+			List <Node> up    = new ArrayList <> (m);
+			List <K>    upMax = new ArrayList <> (m);
+			for (int g = 0, c = 0; g < m; g++) {
+				int kids = n / m + (g < n % m ? 1 : 0);
+				Node p = new Node (false);
+				for (int j = 0; j < kids; j++, c++) {
+					if (j > 0) p.key [j - 1] = max.get (c - 1);
+					p.ref [j] = level.get (c);
+				} // for
+				p.nKeys = kids - 1;
+				up.add (p);
+				upMax.add (max.get (c - 1));
+			} // for
+			level = up;
+			max   = upMax;
+		} // while
+		root = level.get (0);
+	} // bulkLoad
+
 	/********************************************************************************
 	 * Return the first (smallest) key in the B+Tree map.
 	 * @return  the first key in the B+Tree map.
@@ -195,121 +404,240 @@ implements Serializable, Cloneable, SortedMap <K, V>
 	} // lastKey
 
 	/********************************************************************************
-	 * Return the portion of the B+Tree map where key < toKey.
+	 * Return the portion of the B+Tree map where key < toKey, as a view backed by
+	 * the map (see Range).
 	 * @return  the submap with keys in the range [firstKey, toKey)
 	 */
 	public SortedMap <K,V> headMap (K toKey)
 	{
-		//  T O   B E   I M P L E M E N T E D
-		/*    	Node temp = this.root;
-
-    	BpTreeMap<K,V> newmap = new BpTreeMap<K,V>(this.classK,this.classV);
-
-    	while(!(temp.isLeaf))
-    	{
-    		temp = (Node)temp.ref[0];
-    	}
-    	K currentKey = temp.key[0];
-    	V currentRef;
-    	boolean done = false;
-    	while(currentKey.compareTo(toKey) < 0)
-    	{
-    		for(int i=0;i<temp.nKeys;i++)
-    		{
-    			currentKey = temp.key[i];
-				currentRef = (V)temp.ref[i];
-    			if(currentKey.compareTo(toKey)<0)
-    			{
-
-    				newmap.put(currentKey, currentRef);
-    			}
-    			else
-    			{
-    				done = true;
-    				break;
-    			}
-    		}
-    		if(done)
-    			break;
-    		temp = (Node)temp.ref[ORDER-1];
-    	}
-    	out.println("_________________________HEAD MAP____________________________");
-    	newmap.print(newmap.root, 0);*/
-
-		return this.subMap(this.firstKey(), toKey);
+		return new Range (null, toKey);
 	} // headMap
 
 	/********************************************************************************
-	 * Return the portion of the B+Tree map where fromKey <= key.
+	 * Return the portion of the B+Tree map where fromKey <= key, as a view backed by
+	 * the map (see Range).
 	 * @return  the submap with keys in the range [fromKey, lastKey]
 	 */
 	public SortedMap <K,V> tailMap (K fromKey)
 	{
-		//  T O   B E   I M P L E M E N T E D
-		return this.subMap(fromKey, this.lastKey());
+		return new Range (fromKey, null);
 	} // tailMap
 
 	/********************************************************************************
 	 * Return the portion of the B+Tree map whose keys are between fromKey and toKey,
-	 * i.e., fromKey <= key < toKey.
+	 * i.e., fromKey <= key < toKey, as a view backed by the map (see Range).
 	 * @return  the submap with keys in the range [fromKey, toKey)
 	 */
 	public SortedMap <K,V> subMap (K fromKey, K toKey)
 	{
-		//  T O   B E   I M P L E M E N T E D
-		Node temp = this.root;
+		if (fromKey.compareTo (toKey) > 0) throw new IllegalArgumentException ("BpTreeMap.subMap: fromKey > toKey");
+		return new Range (fromKey, toKey);
+	} // subMap
+
+	/********************************************************************************
+	 * Return a cursor over the entries with keys from fromKey to toKey (either bound
+	 * may be null for no bound), in ascending or descending key order.
+	 * @param fromKey        the lower bound of the keys
+	 * @param fromInclusive  whether a key equal to fromKey is in the range
+	 * @param toKey          the upper bound of the keys
+	 * @param toInclusive    whether a key equal to toKey is in the range
+	 * @param descending     whether to go from the largest key down
+	 * @return  the cursor, positioned before the first entry of the range
+	 */
+	public Cursor cursor (K fromKey, boolean fromInclusive, K toKey, boolean toInclusive, boolean descending)
+	{
+		return new Cursor (fromKey, fromInclusive, toKey, toInclusive, descending);
+	} // cursor
+
+	/********************************************************************************
+	 * This inner class is a cursor over the entries of the B+Tree map whose keys are
+	 * in a range.  It descends the tree once, to the leaf where the range starts,
+	 * and then follows the leaf links one entry per call to next, so reading k
+	 * entries costs O(log n + k) node visits and allocates nothing per entry; it may
+	 * be abandoned at any point.  The map must not be changed while it is in use.
+	 */
+	public class Cursor
+	{
+		private Node leaf;                                    // null once past the range
+		private int  i;
+		private final K lo, hi;
+		private final boolean loIn, hiIn, descending;
 
-		BpTreeMap<K,V> newmap = new BpTreeMap<K,V>(this.classK,this.classV);
-		while(!(temp.isLeaf))
+		private Cursor (K _lo, boolean _loIn, K _hi, boolean _hiIn, boolean _descending)
 		{
-			temp = (Node)temp.ref[0];
-		}
-		K currentKey = temp.key[0];
-		V currentRef;
-		boolean done = false;
-		while(currentKey.compareTo(fromKey) < 0)
+			lo = _lo; loIn = _loIn;
+			hi = _hi; hiIn = _hiIn;
+			descending = _descending;
+			if (descending) {
+				leaf = (hi == null) ? lastLeaf () : leafFor (hi);
+				i    = (hi == null) ? leaf.nKeys : Math.min (search (hi, leaf) + 1, leaf.nKeys);
+			} else {
+				leaf = (lo == null) ? firstLeaf : leafFor (lo);
+				i    = (lo == null) ? -1 : search (lo, leaf) - 1;
+			} // if
+		} // constructor
+
+		/****************************************************************************
+		 * Move to the next entry of the range.
+		 * @return  whether there is one
+		 */
+		public boolean next ()
 		{
-			for(int i=0;i<temp.nKeys;i++)
-			{
-				currentKey = temp.key[i];
-				currentRef = (V)temp.ref[i];
-				if(currentKey.compareTo(fromKey)<0)
-				{
-				}
-				else
-				{
-					done = true;
-					break;
-				}
-			}
-			if(done)
-				break;
-			temp = (Node)temp.ref[ORDER-1];
-		}
-		done = false;
-		while(currentKey.compareTo(toKey)<0)
+			while (leaf != null) {
+				i += descending ? -1 : 1;
+				if (i < 0 || i >= leaf.nKeys) {                   // on to the next leaf
+					leaf = descending ? leaf.prev : leaf.next;
+					if (leaf != null) i = descending ? leaf.nKeys : -1;
+					continue;
+				} // if
+				K k = leaf.key [i];
+				if (descending ? ! belowHi (k) : ! aboveLo (k)) continue;       // not there yet
+				if (descending ? aboveLo (k) : belowHi (k)) return true;
+				leaf = null;                                      // past the range
+			} // while
+			return false;
+		} // next
+
+		/** Return the key of the current entry. */
+		public K key () { return leaf.key [i]; }
+
+		/** Return the value of the current entry. */
+		@SuppressWarnings("unchecked")
+		public V value () { return (V) leaf.ref [i]; }
+
+		private boolean aboveLo (K k)
 		{
-			for(int i=0;i<temp.nKeys;i++)
-			{
-				currentKey = temp.key[i];
-				currentRef = (V)temp.ref[i];
-				if(currentKey.compareTo(toKey)<0)
+			if (lo == null) return true;
+			int c = k.compareTo (lo);
+			return c > 0 || c == 0 && loIn;
+		} // aboveLo
+
+		private boolean belowHi (K k)
+		{
+			if (hi == null) return true;
+			int c = k.compareTo (hi);
+			return c < 0 || c == 0 && hiIn;
+		} // belowHi
+	} // Cursor class
+
+	/********************************************************************************
+	 * This inner class is the view of the entries with keys from lo (included) to
+	 * hi (excluded) returned by subMap, headMap and tailMap (a null bound is no
+	 * bound).  Nothing is copied: lookups go to the map and iteration uses a Cursor,
+	 * so only the entries actually read are visited.  Puts of keys in the range go
+	 * through to the map.
+	 */
+	private class Range
+	        extends AbstractMap <K, V>
+	        implements SortedMap <K, V>
+	{
+		private final K lo, hi;
+
+		Range (K _lo, K _hi)
+		{
+			lo = _lo;
+			hi = _hi;
+		} // constructor
+
+		/** Return whether the key is in the range. */
+		private boolean inRange (Object key)
+		{
+			@SuppressWarnings("unchecked")
+			K k = (K) key;
+			return (lo == null || k.compareTo (lo) >= 0) && (hi == null || k.compareTo (hi) < 0);
+		} // inRange
+
+		/** Check that a bound of a subrange lies within this range. */
+		private K bound (K key)
+		{
+			if ((lo != null && key.compareTo (lo) < 0) || (hi != null && key.compareTo (hi) > 0)) {
+				throw new IllegalArgumentException ("BpTreeMap.Range: key out of range " + key);
+			} // if
+			return key;
+		} // bound
+
+		public Comparator <? super K> comparator () { return null; }
+
+		public V get (Object key) { return inRange (key) ? BpTreeMap.this.get (key) : null; }
+
+		public boolean containsKey (Object key) { return get (key) != null; }
+
+		public V remove (Object key) { return inRange (key) ? BpTreeMap.this.remove (key) : null; }
+
+		public V put (K key, V value)
+		{
+			if (! inRange (key)) throw new IllegalArgumentException ("BpTreeMap.Range: key out of range " + key);
+			return BpTreeMap.this.put (key, value);
+		} // put
+
+		public SortedMap <K,V> subMap (K fromKey, K toKey)
+		{
+			if (fromKey.compareTo (toKey) > 0) throw new IllegalArgumentException ("BpTreeMap.subMap: fromKey > toKey");
+			return new Range (bound (fromKey), bound (toKey));
+		} // subMap
+
+		public SortedMap <K,V> headMap (K toKey) { return new Range (lo, bound (toKey)); }
+
+		public SortedMap <K,V> tailMap (K fromKey) { return new Range (bound (fromKey), hi); }
+
+		public K firstKey () { return end (false); }
+
+		public K lastKey () { return end (true); }
+
+		/** Return the first or last key of the range. */
+		private K end (boolean last)
+		{
+			Cursor c = new Cursor (lo, true, hi, false, last);
+			if (! c.next ()) throw new NoSuchElementException ();
+			return c.key ();
+		} // end
+
+		public Set <Map.Entry <K, V>> entrySet ()
+		{
+			return new AbstractSet <Map.Entry <K, V>> () {
+				public int size ()
 				{
-					newmap.put(currentKey, currentRef);
-				}
-				else
+					int n = 0;
+					for (Cursor c = new Cursor (lo, true, hi, false, false); c.next (); ) n++;
+					return n;
+				} // size
+
+				public Iterator <Map.Entry <K, V>> iterator ()
 				{
-					done = true;
-					break;
-				}
-			}
-			if(done)
-				break;
-			temp = (Node)temp.ref[ORDER-1];
-		}
-		newmap.print(newmap.root, 0);
-		return newmap;
-	} // subMap
+					return new Walk <> (new Cursor (lo, true, hi, false, false), c -> new SimpleImmutableEntry <> (c.key (), c.value ()));
+				} // iterator
+			};
+		} // entrySet
+	} // Range class
+
+	/********************************************************************************
+	 * This inner class iterates over the entries of a cursor, turning each into an
+	 * item (an entry, a key or a value).
+	 */
+	private class Walk <T>
+	        implements Iterator <T>
+	{
+		private final Cursor c;
+		private final Function <Cursor, T> item;
+		private boolean ready;
+
+		Walk (Cursor _c, Function <Cursor, T> _item)
+		{
+			c     = _c;
+			item  = _item;
+			ready = c.next ();
+		} // constructor
+
+		public boolean hasNext () { return ready; }
+
+		public T next ()
+		{
+			if (! ready) throw new NoSuchElementException ();
+			T t = item.apply (c);
+			ready = c.next ();
+			return t;
+		} // next
+	} // Walk class
 
 	/********************************************************************************
 	 * Return the size (number of keys) in the B+Tree.
@@ -317,11 +645,7 @@ implements Serializable, Cloneable, SortedMap <K, V>
 	 */
 	public int size ()
 	{
-		//        int sum = 0;
-		//        System.out.println(this.treesize);
-		//  T O   B E   I M P L E M E N T E D
-
-		return  this.treesize;
+		return size;
 	} // size
 
 	/********************************************************************************
@@ -357,232 +681,95 @@ implements Serializable, Cloneable, SortedMap <K, V>
 
 
 	/********************************************************************************
-	 * Recursive helper function for finding a key in B+trees.
+	 * Helper function for finding a key in B+trees: descend from node n to the
+	 * leaf that may hold the key, one node per level.
 	 * @param key  the key to find
-	 * @param ney  the current node
+	 * @param n    the current node
+	 * @return  the value associated with the key or null if not found
 	 */
 	@SuppressWarnings("unchecked")
 	private V find (K key, Node n)
 	{
-		count++;
-		for (int i = 0; i < n.nKeys; i++) {
-			K k_i = n.key [i];
-			if (key.compareTo (k_i) <= 0)
-			{
-				if (n.isLeaf)
-				{
-					//System.out.println(key.hashCode());
-					//System.out.println(k_i.hashCode());
-					return (key.compareTo (k_i)==0) ? (V) n.ref [i] : null;
-				} 
-				else 
-				{
-					return find (key, (Node) n.ref [i]);
-				} // if
+		for ( ; ; n = (Node) n.ref [search (key, n)]) {
+			count++;
+			if (n.isLeaf) {
+				int i = search (key, n);
+				return (i < n.nKeys && key.compareTo (n.key [i]) == 0) ? (V) n.ref [i] : null;
 			} // if
 		} // for
-		return (n.isLeaf) ? null : find (key, (Node) n.ref [n.nKeys]);
 	} // find
 
 	/********************************************************************************
-	 * Recursive helper function for inserting a key in B+trees.
-	 * @param key  the key to insert
-	 * @param ref  the value/node to insert
-	 * @param n    the current node
-	 * @return  the node inserted into (may wish to return more information)
+	 * Return the leaf where the given key is or would be inserted.
+	 * @param key  the key to look for
+	 * @return  the leaf
 	 */
-	private Node insert(K key, V ref, Node n)
+	private Node leafFor (K key)
 	{
-		boolean inserted = false;
-		if (n.isLeaf) 
-		{                                  // handle leaf node
-			if (n.nKeys < ORDER - 1) 
-			{
-				for (int i = 0; i < n.nKeys; i++) 
-				{
-					K k_i = n.key [i];
-					if (key.compareTo (k_i) < 0) 
-					{
-						wedgeL (key, ref, n, i);
-						inserted = true;
-						return null;
-						//break;
-					} 
-					else if (key.equals (k_i)) 
-					{
-						out.println ("BpTreeMap.insert: attempt to insert duplicate key = " + key);
-						inserted = true;
-						return null;
-						//break;
-					} // if
-				} // for
-				if (! inserted) wedgeL (key, ref, n, n.nKeys);
-			} 
-			else 
-			{
-				V if_found = find(key,root);
-				if(if_found != null)
-				{
-					out.println("Key already found");
-					return null;
-				}
-				Node sib = splitL (key, ref, n);
-				if(root.isLeaf)
-				{
-					this.treesize += 1;
-					//                	System.out.println("Calling recursively");
-					Node rootnode = new Node(false);
-					this.root = rootnode;
-					this.root.ref[0] = n;
-					this.root.ref[1] = sib;
-					this.root.key[0] = n.key[n.nKeys-1];
-					this.root.nKeys += 1;
-					System.out.println(this.root.key[0]);
-				}
-				else
-				{
-					return sib;        // JUST A THOUGHT
-				}
+		Node n = root;
+		for (count++; ! n.isLeaf; count++) n = (Node) n.ref [search (key, n)];
+		return n;
+	} // leafFor
 
-				//  T O   B E   I M P L E M E N T E D
+	/********************************************************************************
+	 * Return the last (rightmost) leaf.
+	 * @return  the leaf
+	 */
+	private Node lastLeaf ()
+	{
+		Node n = root;
+		while (! n.isLeaf) n = (Node) n.ref [n.nKeys];
+		return n;
+	} // lastLeaf
 
-			} // if
+	/********************************************************************************
+	 * Return the position of the first key in node n that is greater than or equal
+	 * to the given key (n.nKeys if there is none), found by binary search.  In an
+	 * internal node this is also the position of the child to descend to.
+	 * @param key  the key to look for
+	 * @param n    the node to search
+	 * @return  the position of the key (or where it would be inserted)
+	 */
+	private int search (K key, Node n)
+	{
+		int lo = 0, hi = n.nKeys;
+		while (lo < hi) {
+			int m = lo + hi >>> 1;
+			if (n.key [m].compareTo (key) < 0) lo = m + 1;
+			else hi = m;
+		} // while
+		return lo;
+	} // search
 
-		} 
-		else 
-		{							// handle internal node
-			boolean insertion = false;
-			int insert_pos = 0;
-			for(int i=0;i < n.nKeys;i++)
-			{
-				K key_i = n.key[i];
-				if(key.compareTo(key_i) < 0)
-				{
-					insert_pos = i;
-					insertion = true;
-					break;
-				}
-			}
-			if(!insertion)
-				insert_pos = n.nKeys;
-			int i = insert_pos;
-			Node newchild = insert(key,ref,(Node)n.ref[i]);
-			if(newchild == null)
-			{
-				//DO NOTHING
+	/********************************************************************************
+	 * Recursive helper function for inserting a key in B+trees.  A node that
+	 * overflows (reaches order keys) is split; its new right sibling is returned
+	 * so the parent can wedge it in after the divider key left in the field divider.
+	 * @param key  the key to insert
+	 * @param ref  the value to insert
+	 * @param n    the current node
+	 * @return  the new right sibling of node n if it was split, else null
+	 */
+	@SuppressWarnings("unchecked")
+	private Node insert (K key, V ref, Node n)
+	{
+		int i = search (key, n);
+		if (n.isLeaf) {                                       // handle leaf node
+			if (i < n.nKeys && key.compareTo (n.key [i]) == 0) {
+				old = (V) n.ref [i];                          // replace the value of an existing key
+				n.ref [i] = ref;
 				return null;
-			}
-			else
-			{
-				//THE CASE WHEN THE BELOW LEVEL SPLITS INTO TWO PARTS
-				if(n.nKeys == ORDER-1)
-				{
-					if(n.equals(this.root))
-					{
-						this.treesize += 1;
-						Node newrootnode = new Node(false);
-						Node newrootchild = null;
-						if(newchild.isLeaf)
-							newrootchild = splitI(largestLeft,newchild,n);
-						else
-							newrootchild = splitI(middlekey,newchild,n);
-						newrootnode.ref[0] = n;
-						newrootnode.ref[1] = newrootchild;
-						newrootnode.key[0] = middlekey;
-						newrootnode.nKeys += 1;
-						this.root = newrootnode;
-						return newrootnode;
-					}
-					if(!newchild.isLeaf)
-					{
-						Node toUpperlevel = splitI(middlekey,newchild,n);
-						return toUpperlevel;
-					}
-					else
-					{
-						Node toUpperlevel = splitI(largestLeft,newchild,n);
-						return toUpperlevel;
-					}
-				}
-				else
-				{
-					if(!newchild.isLeaf)
-					{
-						wedgeI(middlekey,newchild,n,i);
-						return null;
-					}
-					else
-					{
-						wedgeI(largestLeft,newchild,n,i);
-						return null;
-					}
-				}
-
-			}
-		}
-		return null;
-	}
-	//        }
-	//mmmm
-	/*        	if(!root_insert)
-        	{
-        		Node newchild2 = insert(key,ref,(Node)(n.ref[n.nKeys]));
-        	}
-        }
-
-//	        			Node nodeofinterest = ((Node)n.ref[i]);
-	        			//Finding the middle node
-	        			if(n.equals(root))
-	        			{
-	        				K newrootkey;
-	        				int leftnodekeys = nodeofinterest.nKeys;
-	        				int rightnodekeys = newchild.nKeys;
-	        				int middle = (leftnodekeys+rightnodekeys)/2;
-	        				if(middle <= leftnodekeys-1)
-	        				{
-	        					newrootkey = nodeofinterest.key[middle-1];
-	        				}
-	        				else
-	        				{
-	        					newrootkey = newchild.key[middle-leftnodekeys];
-	        				}
-	        				out.println("Found the middle node to be "+newrootkey);
-	        				wedgeI(newrootkey,newchild,newchild,i+1);	
-	        			}
-
-	        			K maxvalue = nodeofinterest.key[nodeofinterest.nKeys-1];
-	        			wedgeI(maxvalue,newchild,n,1);
-	        			n.ref[n.nKeys] = newchild;
-	        			n.key[n.nKeys] = newchild.key[newchild.nKeys-1];
-	        			n.nKeys += 1;
-	   }
-	        	System.out.println("Calling Recursively");
-	        	if(!root_insert)
-	        	{
-	        		Node newchild = insert(key,ref,(Node)n.ref[n.nKeys]); // NEW CHILD RETURNED BY THE LOWER LEVEL
-	        		//WEDGE THE NEWCHILD AND KEY AT THE POSITION N.NKEYS. 
-	        		// GOT TO POINT THE LAST ADDRESS TO THE NEW CHILD
-	        	}
-        	}//  T O   B E   I M P L E M E N T E D
-        	else
-        	{
-        		// TRY TO INSERT INTO THE LAST REFERENCE NODE AND CHECK FOR THE RETURN VALUE
-        		// Node childnode = insert(key,ref,(Node)n.ref[ORDER-1]);
-        		// if(childnode == null)
-        		// DO NOTHING
-        		// else
-        		// splitI(K,node,node);
-        		// IF THE LAST INSERTION RETURNS A CHILD, SINCE OUR ROOT IS FULL WE HAVE TO SPLIT IT
-        		// GUESS SHOULD DO SPLIT INTERNAL HERE
-        		// TAKE THE RETURNED NODE. CREATE A NEW ROOT AND MARK POINTERS APPROPRIATELY
-        	}
-
-
-        }// if
-	 */
-	//       if (DEBUG) print (root, 0);
-	//       return null;                                     // FIX: return useful information
-	//    } // insert
+			} // if
+			wedgeL (key, ref, n, i);
+			size++;
+			return (n.nKeys == order) ? splitL (n) : null;
+		} // if
+
+		Node rt = insert (key, ref, (Node) n.ref [i]);       // handle internal node
+		if (rt == null) return null;
+		wedgeI (divider, rt, n, i);
+		return (n.nKeys == order) ? splitI (n) : null;
+	} // insert
 
 	/********************************************************************************
 	 * Wedge the key-ref pair into leaf node n.
@@ -593,239 +780,178 @@ implements Serializable, Cloneable, SortedMap <K, V>
 	 */
 	private void wedgeL (K key, V ref, Node n, int i)
 	{
-		for (int j = n.nKeys; j > i; j--) {
-			n.key [j] = n.key [j-1];
-			n.ref [j] = n.ref [j-1];
-		} // for
+		System.arraycopy (n.key, i, n.key, i + 1, n.nKeys - i);
+		System.arraycopy (n.ref, i, n.ref, i + 1, n.nKeys - i);
 		n.key [i] = key;
 		n.ref [i] = ref;
 		n.nKeys++;
 	} // wedgeL
 
-	/**************************	`******************************************************
-	 * Wedge the key-ref pair into internal node n.
+	/********************************************************************************
+	 * Wedge the key-ref pair into internal node n: the key goes at position i and
+	 * the node to its right.
 	 * @param key  the key to insert
-	 * @param ref  the value/node to insert
+	 * @param ref  the node to insert
 	 * @param n    the current node
 	 * @param i    the insertion position within node n
 	 */
-	private void wedgeI (K key, Node ref, Node n, int i)   //Changed the method signature. Changed the type V to Node.
+	private void wedgeI (K key, Node ref, Node n, int i)
 	{
-		//        out.println ("wedgeI not implemented yet");
-		Object tempref = n.ref[i];
-		for(int j=n.nKeys;j>i;j--)
-		{
-			n.key[j] = n.key[j-1];
-			n.ref[j] = n.ref[j-1];
-		}
-		n.key[i] = key;
-		n.ref[i] = tempref;
-		n.ref[i+1] = ref;
-		n.nKeys += 1;
-		//n.key[n.nKeys] = null;
-		// n.nKeys -= 1;
-		//  T O   B E   I M P L E M E N T E D
+		System.arraycopy (n.key, i, n.key, i + 1, n.nKeys - i);
+		System.arraycopy (n.ref, i + 1, n.ref, i + 2, n.nKeys - i);
+		n.key [i] = key;
+		n.ref [i + 1] = ref;
+		n.nKeys++;
 	} // wedgeI
 
 	/********************************************************************************
-	 * Split leaf node n and return the newly created right sibling node rt.
-	 * Split first (MID keys for both node n and node rt), then add the new key and ref.
-	 * @param key  the new key to insert
-	 * @param ref  the new value/node to insert
-	 * @param n    the current node
-	 * @return  the right sibling node (may wish to provide more information)
+	 * Split the overflowing leaf node n (it holds order keys) and return the newly
+	 * created right sibling node rt, linked after n.  Node n keeps the first half of
+	 * the keys, the largest of which is left in divider.
+	 * @param n  the current node
+	 * @return  the right sibling node
 	 */
-	private Node splitL (K key, V ref, Node n)
+	private Node splitL (Node n)
 	{
-		this.treesize += 1;
-		//        out.println ("splitL not implemented yet");
 		Node rt = new Node (true);
-		int rt_index = 0; 
-		int temp = n.nKeys;
-		for(int i = MID;i < temp;i++)
-		{
-			rt.key[rt_index] = n.key[i];
-			rt.ref[rt_index] = n.ref[i];
-			n.key[i] = null;
-			n.ref[i] = null;
-			rt_index += 1;
-			n.nKeys -= 1;
-			rt.nKeys += 1;
-		}
-		n.ref[ORDER-1] = rt;
-		boolean left = false;
-		boolean insert_success = false;
-		if(key.compareTo(n.key[n.nKeys-1]) < 0 )
-		{
-			left = true;
-		}
-		if(left)
-		{
-			for(int i=0;i < n.nKeys && !insert_success;i++)
-			{
-				K k_i = n.key[i];
-				if(key.compareTo(k_i) < 0)
-				{
-					wedgeL(key,ref,n,i);
-					insert_success = true;
-				}
-			}
-			if(!insert_success)
-				wedgeL(key,ref,n,n.nKeys);
-			this.largestLeft = n.key[n.nKeys-1];
-		}
-		else
-		{
-			this.largestLeft = n.key[n.nKeys-1];
-			for(int i=0;i<rt.nKeys && !insert_success;i++)
-			{
-				K key_i = rt.key[i];
-				if(key.compareTo(key_i)<0)
-				{
-					wedgeL(key,ref,rt,i);
-					insert_success = true;
-				}
-			}
-			if(!insert_success)
-				wedgeL(key,ref,rt,rt.nKeys);
-		}
-		//  T O   B E   I M P L E M E N T E D
-
+		int h = (order + 1) / 2;
+		rt.nKeys = order - h;
+		System.arraycopy (n.key, h, rt.key, 0, rt.nKeys);
+		System.arraycopy (n.ref, h, rt.ref, 0, rt.nKeys);
+		Arrays.fill (n.key, h, order, null);
+		Arrays.fill (n.ref, h, order, null);
+		n.nKeys = h;
+		rt.next = n.next;
+		rt.prev = n;
+		if (rt.next != null) rt.next.prev = rt;
+		n.next  = rt;
+		divider = n.key [h - 1];
 		return rt;
 	} // splitL
 
 	/********************************************************************************
-	 * Split internal node n and return the newly created right sibling node rt.
-	 * Split first (MID keys for node n and MID-1 for node rt), then add the new key and ref.
-	 * @param key  the new key to insert
-	 * @param ref  the new value/node to insert
-	 * @param n    the current node
-	 * @return  the right sibling node (may wish to provide more information)
+	 * Split the overflowing internal node n (it holds order keys) and return the
+	 * newly created right sibling node rt.  The middle key moves up: it is left in
+	 * divider, with the keys before it kept in node n and those after it moved to rt.
+	 * @param n  the current node
+	 * @return  the right sibling node
 	 */
-	private Node splitI (K key, Node ref, Node n)
+	private Node splitI (Node n)
 	{
-		this.treesize += 1;
-		//        out.println ("splitI not implemented yet");
 		Node rt = new Node (false);
-		int rt_index = 0;
-		int middleindex = (ORDER-1)/2;
-		int middlekeyindex = middleindex;
-		K toCompare = n.key[middleindex];
-		boolean left = false;
-		int temp = n.nKeys;
-		if(key.compareTo(toCompare) < 0)
-		{
-			middlekey = n.key[middleindex-1];
-			middlekeyindex -= 1 ;
-			left = true;
-		}
-		else
-		{
-			middlekey = toCompare; 
-		}
-		if(left)
-		{
-			for(int i=middleindex;i<temp;i++)
-			{
-				rt.key[rt_index] = n.key[i];
-				rt.ref[rt_index] = n.ref[i];
-				rt.key[rt_index] = null;
-				rt.ref[rt_index] = null;
-				n.nKeys -= 1;
-				rt.nKeys += 1;
-			}
-			rt.ref[rt.nKeys] = n.ref[ORDER-1];
-			n.ref[ORDER-1] = null;
-			//FINDING POSITION
-			int insert_pos = 0;
-			boolean found = false;
-			for(int i=0;i<n.nKeys && !found;i++)
-			{
-				K key_i = n.key[i];
-				if(key.compareTo(key_i)<0)
-				{
-					insert_pos = i;
-					found = true;
-				}
-			}
-			if(!found)
-				insert_pos = n.nKeys;
-			n.key[middlekeyindex] = null;
-			n.nKeys -= 1;
-			wedgeI(key,ref,n,insert_pos);
-		}
-		else
-		{
-			for(int i=middleindex+1;i<temp;i++)
-			{
-				rt.key[rt_index] = n.key[i];
-				rt.ref[rt_index] = n.ref[i];
-				rt.key[rt_index] = null;
-				rt.ref[rt_index] = null;
-				n.nKeys -= 1;
-				rt.nKeys += 1;
-			}
-			rt.ref[rt.nKeys] = n.ref[ORDER-1];
-			n.ref[ORDER-1] = null;
-			//FINDING POSITION
-			boolean found = false;
-			int insert_pos = 0;
-			for(int i=0;i<rt.nKeys && !found;i++)
-			{
-				K key_i = rt.key[i];
-				if(key.compareTo(key_i)<0)
-				{
-					insert_pos = i;
-					found = true;
-				}
-			}
-			if(!found)
-				insert_pos = rt.nKeys;
-			n.key[middlekeyindex] = null;
-			n.nKeys -= 1;
-			wedgeI(key,ref,rt,insert_pos);
-		}
+		int h = order / 2;
+		rt.nKeys = order - h - 1;
+		System.arraycopy (n.key, h + 1, rt.key, 0, rt.nKeys);
+		System.arraycopy (n.ref, h + 1, rt.ref, 0, rt.nKeys + 1);
+		divider = n.key [h];
+		Arrays.fill (n.key, h, order, null);
+		Arrays.fill (n.ref, h + 1, order + 1, null);
+		n.nKeys = h;
 		return rt;
-	}
+	} // splitI
 
+	/********************************************************************************
+	 * Recursive helper function for removing a key from B+trees.  The value removed
+	 * is left in the field old.
+	 * @param key  the key to remove
+	 * @param n    the current node
+	 * @return  whether node n was left with fewer than minKeys keys
+	 */
+	@SuppressWarnings("unchecked")
+	private boolean delete (K key, Node n)
+	{
+		int i = search (key, n);
+		if (n.isLeaf) {
+			if (i == n.nKeys || key.compareTo (n.key [i]) != 0) return false;
+			old = (V) n.ref [i];
+			System.arraycopy (n.key, i + 1, n.key, i, n.nKeys - i - 1);
+			System.arraycopy (n.ref, i + 1, n.ref, i, n.nKeys - i - 1);
+			n.nKeys--;
+			n.key [n.nKeys] = null;
+			n.ref [n.nKeys] = null;
+			size--;
+			return n.nKeys < minKeys;
+		} // if
+		if (! delete (key, (Node) n.ref [i])) return false;
+		rebalance (n, i);
+		return n.nKeys < minKeys;
+	} // delete
 
-	//COMMENTED CODE
-	/*K midKey = n.key[MID];
-        for(int i=MID+1;i<temp;i++)
-        {
-        	rt.key[rt_index] = n.key[i];
-        	rt.ref[rt_index] = n.ref[i];
-        	n.key[i] = null;
-        	n.ref[i] = null;
-        	n.nKeys -= 1;
-        	rt.nKeys += 1;
-        }
-        //rt.ref[rt.nKeys] = n.ref[ORDER-1];
-        //n.ref[ORDER-1] = null;
-        boolean left = false;
-        boolean inserted = false;
-        if(key.compareTo(midKey)<=0)
-        	left = true;
-        if(left)
-        {
-        	for(int i=0;i < n.nKeys;i++)
-        	{
-        		K k_i = n.key[i];
-        		if(key.compareTo(k_i) <= 0)
-        		{
-        			wedgeI(key,ref,n,i);
-        			inserted = true;
-        		}
-        	}
-        }
-        rt.ref[rt.nKeys] = n.ref[ORDER-1]; 
-        middlekey = n.key[n.nKeys-1];
-        n.ke
-	 */
-	//  T O   B E   I M P L E M E N T E D
-
-
-	//    } // splitI
+	/********************************************************************************
+	 * Refill child i of internal node p, which has fewer than minKeys keys, with a
+	 * key from its left or right sibling, or else merge it with one of them.
+	 * @param p  the parent node
+	 * @param i  the position of the child
+	 */
+	private void rebalance (Node p, int i)
+	{
+		Node c = (Node) p.ref [i];
+		Node l = (i > 0) ? (Node) p.ref [i - 1] : null;
+		Node r = (i < p.nKeys) ? (Node) p.ref [i + 1] : null;
+		if (l != null && l.nKeys > minKeys) {                 // borrow the last key of l
+			System.arraycopy (c.key, 0, c.key, 1, c.nKeys);
+			System.arraycopy (c.ref, 0, c.ref, 1, c.isLeaf ? c.nKeys : c.nKeys + 1);
+			c.nKeys++;
+			l.nKeys--;
+			if (c.isLeaf) {
+				c.key [0] = l.key [l.nKeys];
+				c.ref [0] = l.ref [l.nKeys];
+				p.key [i - 1] = l.key [l.nKeys - 1];
+				l.ref [l.nKeys] = null;
+			} else {
+				c.key [0] = p.key [i - 1];
+				c.ref [0] = l.ref [l.nKeys + 1];
+				p.key [i - 1] = l.key [l.nKeys];
+				l.ref [l.nKeys + 1] = null;
+			} // if
+			l.key [l.nKeys] = null;
+		} else if (r != null && r.nKeys > minKeys) {          // borrow the first key of r
+			if (c.isLeaf) {
+				c.key [c.nKeys]   = r.key [0];
+				c.ref [c.nKeys++] = r.ref [0];
+			} else {
+				c.key [c.nKeys]   = p.key [i];
+				c.ref [++c.nKeys] = r.ref [0];
+			} // if
+			p.key [i] = r.key [0];
+			int refs = r.isLeaf ? r.nKeys : r.nKeys + 1;
+			System.arraycopy (r.key, 1, r.key, 0, r.nKeys - 1);
+			System.arraycopy (r.ref, 1, r.ref, 0, refs - 1);
+			r.nKeys--;
+			r.key [r.nKeys]  = null;
+			r.ref [refs - 1] = null;
+		} else {
+			merge (p, (l != null) ? i - 1 : i);
+		} // if
+	} // rebalance
+
+	/********************************************************************************
+	 * Merge child j + 1 of internal node p into child j and drop it (and the divider
+	 * between them) from p.
+	 * @param p  the parent node
+	 * @param j  the position of the left child of the pair
+	 */
+	private void merge (Node p, int j)
+	{
+		Node l = (Node) p.ref [j], r = (Node) p.ref [j + 1];
+		if (l.isLeaf) {
+			System.arraycopy (r.key, 0, l.key, l.nKeys, r.nKeys);
+			System.arraycopy (r.ref, 0, l.ref, l.nKeys, r.nKeys);
+			l.nKeys += r.nKeys;
+			l.next = r.next;
+			if (l.next != null) l.next.prev = l;
+		} else {
+			l.key [l.nKeys] = p.key [j];
+			System.arraycopy (r.key, 0, l.key, l.nKeys + 1, r.nKeys);
+			System.arraycopy (r.ref, 0, l.ref, l.nKeys + 1, r.nKeys + 1);
+			l.nKeys += r.nKeys + 1;
+		} // if
+		System.arraycopy (p.key, j + 1, p.key, j, p.nKeys - j - 1);
+		System.arraycopy (p.ref, j + 2, p.ref, j + 1, p.nKeys - j - 1);
+		p.nKeys--;
+		p.key [p.nKeys]     = null;
+		p.ref [p.nKeys + 1] = null;
+	} // merge
 
 	/********************************************************************************
 	 * The main method used for testing.
@@ -0,0 +1,381 @@
+/*******************************************************************************
+ * @file  BufferPool.java
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.lang.System.out;
+
+/*******************************************************************************
+ * This class provides a buffer pool that caches pages of disk files in a fixed
+ * number of frames.  All frames are carved out of one direct buffer allocated
+ * up front, so the memory used is exactly nFrames * frameSize bytes no matter
+ * how many files (tables, indices) share the pool.
+ *
+ * A caller pins a page to use it and unpins it when done, saying whether it
+ * modified the page.  Pinned pages are never evicted; dirty pages are written
+ * back before their frame is reused.  The victim frame is chosen by a
+ * pluggable EvictionPolicy.
+ */
+public class BufferPool
+{
+	/**
+	 * The default number of frames in the shared pool.
+	 */
+	public static final int DEFAULT_FRAMES = 1024;
+
+	/**
+	 * The default frame size (the largest page size the shared pool accepts).
+	 */
+	public static final int DEFAULT_FRAME_SIZE = 8192;
+
+	/***************************************************************************
+	 * This interface is implemented by files whose pages are cached in a pool.
+	 */
+	public interface PageFile
+	{
+		/** Return the size of the file's pages in bytes. */
+		int pageSize ();
+
+		/** Read page pageNo of the file into the buffer (position 0 to capacity). */
+		void readPage (int pageNo, ByteBuffer buf) throws IOException;
+
+		/** Write the buffer (position 0 to capacity) to page pageNo of the file. */
+		void writePage (int pageNo, ByteBuffer buf) throws IOException;
+	} // PageFile interface
+
+	/***************************************************************************
+	 * This inner class defines the frames that hold cached pages.
+	 */
+	public class Frame
+	{
+		private final int id;
+		private final ByteBuffer space;
+		private PageFile  file;
+		private int       pageNo;
+		private ByteBuffer buf;
+		private int       pinCount;
+		private boolean   dirty;
+
+		Frame (int _id)
+		{
+			id    = _id;
+			space = arena.duplicate ().position (_id * frameSize).limit ((_id + 1) * frameSize).slice ();
+		} // constructor
+
+		/** Return the buffer holding the page (capacity is the page size). */
+		public ByteBuffer buffer () { return buf; }
+
+		/** Return the number of the page held in this frame. */
+		public int pageNo () { return pageNo; }
+	} // Frame inner class
+
+	/**
+	 * The shared pool used by FileLists that are not given their own pool.
+	 */
+	private static BufferPool shared;
+
+	/**
+	 * The memory backing all the frames.
+	 */
+	private final ByteBuffer arena;
+
+	/**
+	 * The size of each frame in bytes.
+	 */
+	private final int frameSize;
+
+	/**
+	 * The frames, the page table (file/page to frame) and the files' ids.
+	 */
+	private final Frame [] frames;
+	private final Map <Long, Frame> pageTable = new HashMap <> ();
+	private final Map <PageFile, Integer> fileIds = new IdentityHashMap <> ();
+	private final ArrayDeque <Frame> free = new ArrayDeque <> ();
+	private int nextFileId = 0;
+
+	/**
+	 * The number of frames that have been used at least once.
+	 */
+	private int nUsed = 0;
+
+	/**
+	 * The replacement policy.
+	 */
+	private final EvictionPolicy policy;
+
+	/**
+	 * Counters for pin requests found in the pool, read from disk and evictions
+	 * (for performance testing).
+	 */
+	private long hits = 0, misses = 0, evictions = 0;
+
+	/***************************************************************************
+	 * Construct a buffer pool.
+	 *
+	 * @param nFrames     the number of frames
+	 * @param _frameSize  the frame size in bytes (the largest page size allowed)
+	 * @param _policy     the eviction policy
+	 */
+	public BufferPool (int nFrames, int _frameSize, EvictionPolicy _policy)
+	{
+		if (nFrames < 1) throw new IllegalArgumentException ("BufferPool: need at least one frame");
+		frameSize = _frameSize;
+		arena     = ByteBuffer.allocateDirect (nFrames * frameSize);
+		frames    = new Frame [nFrames];
+		policy    = _policy;
+		policy.setup (nFrames);
+	} // constructor
+
+	/***************************************************************************
+	 * Return the pool shared by all tables, creating it with DEFAULT_FRAMES
+	 * CLOCK-managed frames if needed.
+	 *
+	 * @return  the shared pool
+	 */
+	public static synchronized BufferPool getShared ()
+	{
+		if (shared == null) {
+			shared = new BufferPool (DEFAULT_FRAMES, DEFAULT_FRAME_SIZE, new EvictionPolicy.Clock ());
+		} // if
+		return shared;
+	} // getShared
+
+	/***************************************************************************
+	 * Replace the shared pool, e.g., to change its memory budget or policy.
+	 * Should be called before any table is opened.
+	 *
+	 * @param pool  the new shared pool
+	 */
+	public static synchronized void setShared (BufferPool pool)
+	{
+		if (shared != null) shared.flushAll ();
+		shared = pool;
+	} // setShared
+
+	/***************************************************************************
+	 * Pin page pageNo of the file, reading it into a frame if it is not cached.
+	 *
+	 * @param file    the file holding the page
+	 * @param pageNo  the page number
+	 * @return  the frame holding the page
+	 * @throws IOException  if the page (or an evicted dirty page) cannot be transferred
+	 */
+	public synchronized Frame pin (PageFile file, int pageNo) throws IOException
+	{
+		if (file.pageSize () > frameSize) {
+			throw new IllegalArgumentException ("BufferPool.pin: page size " + file.pageSize ()
+			                                    + " exceeds frame size " + frameSize);
+		} // if
+		long pid = pageId (file, pageNo);
+		Frame f  = pageTable.get (pid);
+		if (f != null) {
+			hits++;
+		} else {
+			misses++;
+			f = freeFrame ();
+			f.buf = f.space.duplicate ().limit (file.pageSize ()).slice ();
+			try {
+				file.readPage (pageNo, f.buf);
+			} catch (IOException ex) {
+				policy.remove (f.id);
+				f.file = null;
+				free.push (f);
+				throw ex;
+			} // try
+			f.file   = file;
+			f.pageNo = pageNo;
+			f.dirty  = false;
+			pageTable.put (pid, f);
+		} // if
+		f.pinCount++;
+		policy.access (f.id);
+		return f;
+	} // pin
+
+	/***************************************************************************
+	 * Unpin a frame returned by pin.
+	 *
+	 * @param f      the frame
+	 * @param dirty  whether the caller modified the page
+	 */
+	public synchronized void unpin (Frame f, boolean dirty)
+	{
+		if (f.pinCount == 0) {
+			out.println ("BufferPool.unpin: page " + f.pageNo + " is not pinned");
+			return;
+		} // if
+		f.pinCount--;
+		f.dirty |= dirty;
+	} // unpin
+
+	/***************************************************************************
+	 * Drop a cached page without writing it, e.g., because the file owner has
+	 * just rewritten the page on disk.
+	 *
+	 * @param file    the file holding the page
+	 * @param pageNo  the page number
+	 */
+	public synchronized void invalidate (PageFile file, int pageNo)
+	{
+		Frame f = pageTable.get (pageId (file, pageNo));
+		if (f != null && f.pinCount == 0) {
+			drop (f);
+			free.push (f);
+		} // if
+	} // invalidate
+
+	/***************************************************************************
+	 * Write all dirty pages of the file back to disk.
+	 *
+	 * @param file  the file to flush
+	 */
+	public synchronized void flush (PageFile file)
+	{
+		for (Frame f : framesOf (file)) writeBack (f);
+	} // flush
+
+	/***************************************************************************
+	 * Write the page back to disk if it is cached and dirty.
+	 *
+	 * @param file    the file holding the page
+	 * @param pageNo  the page number
+	 */
+	public synchronized void flush (PageFile file, int pageNo)
+	{
+		Frame f = pageTable.get (pageId (file, pageNo));
+		if (f != null) writeBack (f);
+	} // flush
+
+	/***************************************************************************
+	 * Return the numbers of the file's dirty pages (e.g., the pages a
+	 * checkpoint has to write).
+	 *
+	 * @param file  the file
+	 * @return  the page numbers
+	 */
+	public synchronized int [] dirtyPages (PageFile file)
+	{
+		return framesOf (file).stream ().filter (f -> f.dirty).mapToInt (f -> f.pageNo).toArray ();
+	} // dirtyPages
+
+	/***************************************************************************
+	 * Write every dirty page in the pool back to disk.
+	 */
+	public synchronized void flushAll ()
+	{
+		for (int i = 0; i < nUsed; i++) if (frames [i].file != null) writeBack (frames [i]);
+	} // flushAll
+
+	/***************************************************************************
+	 * Flush the file's pages and release their frames (the file is closing).
+	 *
+	 * @param file  the file being closed
+	 */
+	public synchronized void close (PageFile file)
+	{
+		for (Frame f : framesOf (file)) {
+			writeBack (f);
+			drop (f);
+			free.push (f);
+		} // for
+		fileIds.remove (file);
+	} // close
+
+	/***************************************************************************
+	 * Return the number of frames, the frame size and performance counters.
+	 */
+	public int frameCount () { return frames.length; }
+	public int frameSize () { return frameSize; }
+	public synchronized long hits () { return hits; }
+	public synchronized long misses () { return misses; }
+	public synchronized long evictions () { return evictions; }
+
+	/***************************************************************************
+	 * Return the number of pages currently cached.
+	 *
+	 * @return  the number of resident pages
+	 */
+	public synchronized int residentPages ()
+	{
+		return pageTable.size ();
+	} // residentPages
+
+	// ------------------------------------------------------------------------
+	// Private Methods
+	// ------------------------------------------------------------------------
+
+	/***************************************************************************
+	 * Return a frame that holds no page, evicting a page if necessary.
+	 */
+	private Frame freeFrame () throws IOException
+	{
+		if (! free.isEmpty ()) return free.pop ();
+		if (nUsed < frames.length) {
+			frames [nUsed] = new Frame (nUsed);
+			return frames [nUsed++];
+		} // if
+		int v = policy.victim (i -> frames [i].pinCount == 0);
+		if (v < 0) throw new IllegalStateException ("BufferPool: all " + frames.length + " frames are pinned");
+		Frame f = frames [v];
+		if (f.file != null) {
+			if (f.dirty) f.file.writePage (f.pageNo, f.buf);
+			evictions++;
+			drop (f);
+		} // if
+		return f;
+	} // freeFrame
+
+	/***************************************************************************
+	 * Write the frame's page to its file if it is dirty.
+	 */
+	private void writeBack (Frame f)
+	{
+		if (! f.dirty) return;
+		try {
+			f.file.writePage (f.pageNo, f.buf);
+			f.dirty = false;
+		} catch (IOException ex) {
+			out.println ("BufferPool.writeBack: unable to write page " + f.pageNo + " - " + ex);
+		} // try
+	} // writeBack
+
+	/***************************************************************************
+	 * Remove the frame's page from the page table, leaving the frame empty.
+	 */
+	private void drop (Frame f)
+	{
+		pageTable.remove (pageId (f.file, f.pageNo));
+		policy.remove (f.id);
+		f.file  = null;
+		f.dirty = false;
+	} // drop
+
+	/***************************************************************************
+	 * Return the frames currently holding pages of the file.
+	 */
+	private List <Frame> framesOf (PageFile file)
+	{
+		List <Frame> list = new ArrayList <> ();
+		for (int i = 0; i < nUsed; i++) if (frames [i].file == file) list.add (frames [i]);
+		return list;
+	} // framesOf
+
+	/***************************************************************************
+	 * Combine the file's id and the page number into a page table key.
+	 */
+	private long pageId (PageFile file, int pageNo)
+	{
+		Integer id = fileIds.get (file);
+		if (id == null) fileIds.put (file, id = nextFileId++);
+		return ((long) id << 32) | (pageNo & 0xFFFFFFFFL);
+	} // pageId
+
+} // BufferPool class
@@ -0,0 +1,90 @@
+/*******************************************************************************
+ * @file  Checkpointer.java
+ */
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/*******************************************************************************
+ * This class checkpoints a set of tables periodically on a background thread,
+ * so the write-ahead logs of tables that are inserted into stay short and
+ * recovery replays only what changed since the last checkpoint.  Each table
+ * is checkpointed incrementally and without stopping its inserts (see
+ * Table.checkpoint).
+ */
+public class Checkpointer
+       implements Closeable
+{
+	/**
+	 * The tables to checkpoint.
+	 */
+	private final List <Table> tables = new CopyOnWriteArrayList <> ();
+
+	/**
+	 * The thread running the checkpoints.
+	 */
+	private final ScheduledExecutorService timer;
+
+	/***************************************************************************
+	 * Construct a checkpointer that checkpoints its tables with the given
+	 * delay between the end of one checkpoint and the start of the next.
+	 *
+	 * @param period  the delay between checkpoints
+	 * @param unit    the unit of the delay
+	 */
+	public Checkpointer (long period, TimeUnit unit)
+	{
+		timer = Executors.newSingleThreadScheduledExecutor (r -> {
+			Thread t = new Thread (r, "checkpointer");
+			t.setDaemon (true);
+			return t;
+		});
+		timer.scheduleWithFixedDelay (this::checkpoint, period, period, unit);
+	} // constructor
+
+	/***************************************************************************
+	 * Add a table to the tables checkpointed.
+	 *
+	 * @param table  the table to add
+	 */
+	public void add (Table table)
+	{
+		tables.add (table);
+	} // add
+
+	/***************************************************************************
+	 * Stop checkpointing a table.
+	 *
+	 * @param table  the table to remove
+	 */
+	public void remove (Table table)
+	{
+		tables.removeIf (t -> t == table);              // Table.equals compares tuples
+	} // remove
+
+	/***************************************************************************
+	 * Checkpoint all the tables now (on the calling thread).
+	 */
+	public void checkpoint ()
+	{
+		for (Table t : tables) t.checkpoint ();
+	} // checkpoint
+
+	/***************************************************************************
+	 * Stop the background checkpoints (after one that is running finishes).
+	 */
+	public void close ()
+	{
+		timer.shutdown ();
+		try {
+			timer.awaitTermination (1, TimeUnit.MINUTES);
+		} catch (InterruptedException ex) {
+			Thread.currentThread ().interrupt ();
+		} // try
+	} // close
+
+} // Checkpointer class
@@ -0,0 +1,568 @@
+/*******************************************************************************
+ * @file  ColumnStore.java
+ */
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.RandomAccess;
+
+/*******************************************************************************
+ * This class keeps the tuples of a columnar table: one array per column
+ * instead of one array per row.  Integer, Long and Double columns are
+ * primitive arrays and String columns are int arrays of codes into a
+ * StringDictionary; the other domains are kept as arrays of values.  An
+ * operator that reads two columns of a wide table then streams through just
+ * those two arrays, and project and where copy columns without building
+ * tuples (see Table.project and Table.where).
+ *
+ * A String column whose values turn out to be mostly distinct (e.g., titles)
+ * is switched to an array of Strings, since a dictionary would only add to
+ * it.  Equality selections and equi-joins on dictionary encoded columns
+ * compare int codes (see selectEqual and Table.join).
+ *
+ * A record id (rid) is the row's position in the column arrays.  A deleted
+ * row keeps its position as a hole, skipped by the list view and cursors.
+ * As a List the store builds a new tuple for every get; code that reads only
+ * some columns should use a cursor.
+ */
+public class ColumnStore
+       extends AbstractList <Comparable []>
+       implements RandomAccess, RidMap.Store, Row.Source
+{
+	/**
+	 * The initial capacity of the column arrays.
+	 */
+	private static final int INITIAL_ROWS = 1024;
+
+	/**
+	 * A String column stops being dictionary encoded once its dictionary has
+	 * more than DICT_LIMIT values and more values than half its rows.
+	 */
+	private static final int DICT_LIMIT = 1 << 12;
+
+	/**
+	 * The domains of the columns.
+	 */
+	private final Class [] domain;
+
+	/**
+	 * The columns.
+	 */
+	private final Column [] columns;
+
+	/**
+	 * The number of rows (live or deleted), of live rows and the capacity of
+	 * the column arrays.
+	 */
+	private int rows, live, capacity;
+
+	/**
+	 * The deleted rows.
+	 */
+	private final BitSet deleted = new BitSet ();
+
+	/**
+	 * The rids of the live rows in list order, once rows have been deleted
+	 * (null while there are none, or when it must be rebuilt).
+	 */
+	private int [] order;
+
+	/***************************************************************************
+	 * Construct an empty store for tuples with the given domains.
+	 *
+	 * @param _domain  the domains (data types) of the attributes
+	 */
+	public ColumnStore (Class [] _domain)
+	{
+		domain   = _domain;
+		columns  = new Column [domain.length];
+		capacity = INITIAL_ROWS;
+		for (int j = 0; j < columns.length; j++) columns [j] = Column.of (domain [j], capacity);
+	} // constructor
+
+	/***************************************************************************
+	 * Construct a store from columns of rows rows (used by gather).
+	 */
+	private ColumnStore (Class [] _domain, Column [] _columns, int _rows)
+	{
+		domain   = _domain;
+		columns  = _columns;
+		rows     = live = capacity = _rows;
+	} // constructor
+
+	/***************************************************************************
+	 * Add a tuple at the end of the list.
+	 *
+	 * @param tuple  the tuple to add
+	 * @return  whether the tuple was added
+	 */
+	public boolean add (Comparable [] tuple)
+	{
+		return insert (tuple) >= 0;
+	} // add
+
+	/***************************************************************************
+	 * Add a tuple (as add does) and return its record id.
+	 *
+	 * @param tuple  the tuple to add
+	 * @return  the record id
+	 */
+	public long insert (Comparable [] tuple)
+	{
+		if (rows == capacity) {
+			capacity = Math.max (INITIAL_ROWS, capacity * 2);
+			for (Column c : columns) c.grow (capacity);
+		} // if
+		for (int j = 0; j < columns.length; j++) {
+			columns [j].set (rows, tuple [j]);
+			if (columns [j] instanceof StringColumn) {
+				StringDictionary dict = ((StringColumn) columns [j]).dict;
+				if (dict.size () > DICT_LIMIT && dict.size () > rows / 2) columns [j] = columns [j].gather (null, capacity);
+			} // if
+		} // for
+		if (order != null) {
+			if (live == order.length) order = Arrays.copyOf (order, Math.max (16, live * 2));
+			order [live] = rows;
+		} // if
+		live++;
+		modCount++;
+		return rows++;
+	} // insert
+
+	/***************************************************************************
+	 * Return the ith tuple of the list (built anew).
+	 *
+	 * @param i  the list position
+	 * @return  the tuple
+	 */
+	public Comparable [] get (int i)
+	{
+		if (i < 0 || i >= live) throw new IndexOutOfBoundsException ("ColumnStore.get: " + i);
+		return fetch (ridOf (i));
+	} // get
+
+	/***************************************************************************
+	 * Return the record id of the ith tuple of the list.
+	 *
+	 * @param i  the list position
+	 * @return  the record id
+	 */
+	public long ridOf (int i)
+	{
+		if (live == rows) return i;
+		if (order == null) {
+			order = new int [live];
+			for (int r = 0, k = 0; r < rows; r++) if (! deleted.get (r)) order [k++] = r;
+		} // if
+		return order [i];
+	} // ridOf
+
+	/***************************************************************************
+	 * Return the tuple with the given record id.
+	 *
+	 * @param rid  the record id
+	 * @return  the tuple, or null if there is no such (live) row
+	 */
+	public Comparable [] fetch (long rid)
+	{
+		if (rid < 0 || rid >= rows || deleted.get ((int) rid)) return null;
+		Comparable [] tuple = new Comparable [columns.length];
+		for (int j = 0; j < columns.length; j++) tuple [j] = columns [j].get ((int) rid);
+		return tuple;
+	} // fetch
+
+	/***************************************************************************
+	 * Replace the tuple with the given record id (in place).
+	 *
+	 * @param rid    the record id
+	 * @param tuple  the new tuple
+	 * @return  the record id, or -1 if there is no such (live) row
+	 */
+	public long update (long rid, Comparable [] tuple)
+	{
+		if (rid < 0 || rid >= rows || deleted.get ((int) rid)) return -1;
+		for (int j = 0; j < columns.length; j++) columns [j].set ((int) rid, tuple [j]);
+		return rid;
+	} // update
+
+	/***************************************************************************
+	 * Delete the row with the given record id.
+	 *
+	 * @param rid  the record id
+	 * @return  whether a live row was deleted
+	 */
+	public boolean delete (long rid)
+	{
+		if (rid < 0 || rid >= rows || deleted.get ((int) rid)) return false;
+		deleted.set ((int) rid);
+		live--;
+		order = null;
+		modCount++;
+		return true;
+	} // delete
+
+	/***************************************************************************
+	 * Remove the ith tuple (see delete).
+	 *
+	 * @param i  the list position
+	 * @return  the removed tuple
+	 */
+	public Comparable [] remove (int i)
+	{
+		long rid = ridOf (i);
+		Comparable [] tuple = fetch (rid);
+		delete (rid);
+		return tuple;
+	} // remove
+
+	/***************************************************************************
+	 * Return the number of (live) tuples.
+	 *
+	 * @return  the size of the list
+	 */
+	public int size ()
+	{
+		return live;
+	} // size
+
+	/***************************************************************************
+	 * Return a new store holding the given columns of the live rows, in order
+	 * (for project).
+	 *
+	 * @param cols  the positions of the columns to keep
+	 * @return  the new store
+	 */
+	public ColumnStore project (int [] cols)
+	{
+		int [] rids = new int [live];
+		for (int i = 0; i < live; i++) rids [i] = (int) ridOf (i);
+		return gather (rids, live, cols);
+	} // project
+
+	/***************************************************************************
+	 * Return a new store holding the given columns of the given rows, in the
+	 * order given (e.g., the rows a predicate selected).  String columns keep
+	 * their codes; the new store gets a copy of each dictionary.
+	 *
+	 * @param rids  the record ids of the rows
+	 * @param n     the number of record ids used
+	 * @param cols  the positions of the columns to keep
+	 * @return  the new store
+	 */
+	public ColumnStore gather (int [] rids, int n, int [] cols)
+	{
+		Class [] dom = new Class [cols.length];
+		Column [] cs = new Column [cols.length];
+		for (int k = 0; k < cols.length; k++) {
+			dom [k] = domain [cols [k]];
+			cs [k]  = columns [cols [k]].gather (rids, n);
+		} // for
+		return new ColumnStore (dom, cs, n);
+	} // gather
+
+	/***************************************************************************
+	 * Return a new store holding the columns of a and then those of b, which
+	 * must have the same number of rows (e.g., the two sides of a join
+	 * gathered in matching order).
+	 *
+	 * @param a  the store with the first columns
+	 * @param b  the store with the last columns
+	 * @return  the new store
+	 */
+	public static ColumnStore concat (ColumnStore a, ColumnStore b)
+	{
+		if (a.rows != b.rows || a.live != a.rows || b.live != b.rows) {
+			throw new IllegalArgumentException ("ColumnStore.concat: stores differ in rows");
+		} // if
+		Class [] dom = ArrayUtil.concat (a.domain, b.domain);
+		Column [] cs = Arrays.copyOf (a.columns, a.columns.length + b.columns.length);
+		System.arraycopy (b.columns, 0, cs, a.columns.length, b.columns.length);
+		return new ColumnStore (dom, cs, a.rows);
+	} // concat
+
+	/***************************************************************************
+	 * Return the record ids of the live rows whose value in column j equals
+	 * the given value.  A dictionary encoded column looks the value up once
+	 * and then compares int codes.
+	 *
+	 * @param j      the column position
+	 * @param value  the value to match
+	 * @return  the record ids, in order
+	 */
+	public int [] selectEqual (int j, Comparable value)
+	{
+		int [] rids = new int [16];
+		int n = 0;
+		int [] codes = codes (j);
+		int code = codes == null ? -1 : dictionary (j).find ((String) value);
+		if (codes != null && code < 0) return new int [0];
+		for (int r = 0; r < rows; r++) {
+			boolean match = codes != null ? codes [r] == code : value.equals (columns [j].get (r));
+			if (! match || live != rows && deleted.get (r)) continue;
+			if (n == rids.length) rids = Arrays.copyOf (rids, n * 2);
+			rids [n++] = r;
+		} // for
+		return Arrays.copyOf (rids, n);
+	} // selectEqual
+
+	/***************************************************************************
+	 * Return the codes of column j if it is dictionary encoded (null if not).
+	 * Entries past rows () are unused.
+	 *
+	 * @param j  the column position
+	 * @return  the codes, one per row
+	 */
+	int [] codes (int j)
+	{
+		return columns [j] instanceof StringColumn ? ((StringColumn) columns [j]).codes : null;
+	} // codes
+
+	/***************************************************************************
+	 * Return the dictionary of column j if it is dictionary encoded (null if
+	 * not).
+	 *
+	 * @param j  the column position
+	 * @return  the dictionary
+	 */
+	StringDictionary dictionary (int j)
+	{
+		return columns [j] instanceof StringColumn ? ((StringColumn) columns [j]).dict : null;
+	} // dictionary
+
+	/***************************************************************************
+	 * Return the number of rows, live or deleted (the bound on record ids).
+	 *
+	 * @return  the number of rows
+	 */
+	int rows ()
+	{
+		return rows;
+	} // rows
+
+	/***************************************************************************
+	 * Determine whether the row with the given record id is live.
+	 *
+	 * @param rid  the record id
+	 * @return  whether it is live
+	 */
+	boolean isLive (int rid)
+	{
+		return rid >= 0 && rid < rows && (live == rows || ! deleted.get (rid));
+	} // isLive
+
+	/***************************************************************************
+	 * Return the sum of the live values of a numeric column.
+	 *
+	 * @param j  the column position
+	 * @return  the sum
+	 */
+	public double sum (int j)
+	{
+		return columns [j].sum (rows, live == rows ? null : deleted);
+	} // sum
+
+	/***************************************************************************
+	 * Return a cursor positioned before the first live row.
+	 *
+	 * @return  the cursor
+	 */
+	public Cursor cursor ()
+	{
+		return new Cursor ();
+	} // cursor
+
+	/***************************************************************************
+	 * This inner class is a flyweight row that visits the live rows of the
+	 * store in order, reading values straight out of the column arrays.
+	 */
+	public class Cursor
+	       implements Row.Cursor
+	{
+		private int rid = -1;
+
+		/***********************************************************************
+		 * Move to the next live row.
+		 *
+		 * @return  whether there is one
+		 */
+		public boolean next ()
+		{
+			while (++rid < rows) {
+				if (live == rows || ! deleted.get (rid)) return true;
+			} // while
+			return false;
+		} // next
+
+		/** Return the record id of the current row. */
+		public long rid () { return rid; }
+
+		public Comparable get (int j) { return columns [j].get (rid); }
+		public int getInt (int j) { return ((IntColumn) columns [j]).vals [rid]; }
+		public long getLong (int j) { return ((LongColumn) columns [j]).vals [rid]; }
+		public double getDouble (int j) { return ((DoubleColumn) columns [j]).vals [rid]; }
+		public String getString (int j) { return (String) columns [j].get (rid); }
+		public Comparable [] toArray () { return fetch (rid); }
+	} // Cursor class
+
+	// ------------------------------------------------------------------------
+	// Columns
+	// ------------------------------------------------------------------------
+
+	/***************************************************************************
+	 * This class is the base of the column arrays.
+	 */
+	private static abstract class Column
+	{
+		/** Return the value in row i (boxed). */
+		abstract Comparable get (int i);
+
+		/** Set the value in row i. */
+		abstract void set (int i, Comparable v);
+
+		/** Grow the array to hold cap rows. */
+		abstract void grow (int cap);
+
+		/** Return a new column holding the values of the given n rows (or of
+		    the first n rows, padded with nulls, if rids is null). */
+		abstract Column gather (int [] rids, int n);
+
+		/** Return the sum of the values of the first n rows not deleted. */
+		double sum (int n, BitSet deleted)
+		{
+			double s = 0;
+			for (int i = 0; i < n; i++) {
+				if (deleted == null || ! deleted.get (i)) s += ((Number) get (i)).doubleValue ();
+			} // for
+			return s;
+		} // sum
+
+		/** Return a column for values of class c. */
+		static Column of (Class c, int cap)
+		{
+			if (c == Integer.class) return new IntColumn (new int [cap]);
+			if (c == Long.class)    return new LongColumn (new long [cap]);
+			if (c == Double.class)  return new DoubleColumn (new double [cap]);
+			if (c == String.class)  return new StringColumn (new int [cap], new StringDictionary ());
+			return new ObjectColumn (new Comparable [cap]);
+		} // of
+	} // Column class
+
+	private static class IntColumn extends Column
+	{
+		int [] vals;
+
+		IntColumn (int [] _vals) { vals = _vals; }
+
+		Comparable get (int i) { return vals [i]; }
+		void set (int i, Comparable v) { vals [i] = (Integer) v; }
+		void grow (int cap) { vals = Arrays.copyOf (vals, cap); }
+
+		Column gather (int [] rids, int n)
+		{
+			int [] to = new int [n];
+			for (int k = 0; k < n; k++) to [k] = vals [rids [k]];
+			return new IntColumn (to);
+		} // gather
+
+		double sum (int n, BitSet deleted)
+		{
+			long s = 0;
+			for (int i = 0; i < n; i++) if (deleted == null || ! deleted.get (i)) s += vals [i];
+			return s;
+		} // sum
+	} // IntColumn class
+
+	private static class LongColumn extends Column
+	{
+		long [] vals;
+
+		LongColumn (long [] _vals) { vals = _vals; }
+
+		Comparable get (int i) { return vals [i]; }
+		void set (int i, Comparable v) { vals [i] = (Long) v; }
+		void grow (int cap) { vals = Arrays.copyOf (vals, cap); }
+
+		Column gather (int [] rids, int n)
+		{
+			long [] to = new long [n];
+			for (int k = 0; k < n; k++) to [k] = vals [rids [k]];
+			return new LongColumn (to);
+		} // gather
+
+		double sum (int n, BitSet deleted)
+		{
+			double s = 0;
+			for (int i = 0; i < n; i++) if (deleted == null || ! deleted.get (i)) s += vals [i];
+			return s;
+		} // sum
+	} // LongColumn class
+
+	private static class DoubleColumn extends Column
+	{
+		double [] vals;
+
+		DoubleColumn (double [] _vals) { vals = _vals; }
+
+		Comparable get (int i) { return vals [i]; }
+		void set (int i, Comparable v) { vals [i] = (Double) v; }
+		void grow (int cap) { vals = Arrays.copyOf (vals, cap); }
+
+		Column gather (int [] rids, int n)
+		{
+			double [] to = new double [n];
+			for (int k = 0; k < n; k++) to [k] = vals [rids [k]];
+			return new DoubleColumn (to);
+		} // gather
+
+		double sum (int n, BitSet deleted)
+		{
+			double s = 0;
+			for (int i = 0; i < n; i++) if (deleted == null || ! deleted.get (i)) s += vals [i];
+			return s;
+		} // sum
+	} // DoubleColumn class
+
+	private static class StringColumn extends Column
+	{
+		int [] codes;
+		final StringDictionary dict;
+
+		StringColumn (int [] _codes, StringDictionary _dict) { codes = _codes; dict = _dict; }
+
+		Comparable get (int i) { return dict.decode (codes [i]); }
+		void set (int i, Comparable v) { codes [i] = dict.encode ((String) v); }
+		void grow (int cap) { codes = Arrays.copyOf (codes, cap); }
+
+		Column gather (int [] rids, int n)
+		{
+			if (rids == null) {                         // switch to plain Strings
+				Comparable [] to = new Comparable [n];
+				for (int k = 0; k < n && k < codes.length; k++) to [k] = dict.decode (codes [k]);
+				return new ObjectColumn (to);
+			} // if
+			int [] to = new int [n];
+			for (int k = 0; k < n; k++) to [k] = codes [rids [k]];
+			return new StringColumn (to, new StringDictionary (dict));
+		} // gather
+	} // StringColumn class
+
+	private static class ObjectColumn extends Column
+	{
+		Comparable [] vals;
+
+		ObjectColumn (Comparable [] _vals) { vals = _vals; }
+
+		Comparable get (int i) { return vals [i]; }
+		void set (int i, Comparable v) { vals [i] = v; }
+		void grow (int cap) { vals = Arrays.copyOf (vals, cap); }
+
+		Column gather (int [] rids, int n)
+		{
+			Comparable [] to = new Comparable [n];
+			for (int k = 0; k < n; k++) to [k] = vals [rids [k]];
+			return new ObjectColumn (to);
+		} // gather
+	} // ObjectColumn class
+
+} // ColumnStore class
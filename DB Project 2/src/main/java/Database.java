@@ -0,0 +1,250 @@
+/*******************************************************************************
+ * @file  Database.java
+ */
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*******************************************************************************
+ * This class groups tables into a database kept in one directory (DIR + name).
+ * The tables share one buffer pool and one write-ahead log, in which each
+ * table logs its inserts in its own stream, so a commit forces the log once
+ * for all of them.  The catalog file lists the tables; it is itself a
+ * snapshot of a system table with one row per table:
+ *
+ *     | name | attributes | domains | key | storage ("memory" or "disk") |
+ *
+ * Each table keeps its data in its own files (name + ".dbf" or ".dat" and the
+ * delta files of its checkpoints), whose snapshots record the LSN they are
+ * current up to (see Table.redo), and the trailer of a snapshot locates its
+ * index.  So opening a database reads the catalog, opens each table (lazily,
+ * see Table.open) and replays only the log records its files do not hold.
+ */
+public class Database
+       implements Closeable
+{
+	/**
+	 * The directory holding the databases.
+	 */
+	private static final String DIR = "store" + File.separator;
+
+	/**
+	 * The names of the catalog and log files (without an extension, so a
+	 * table cannot have the same file name).
+	 */
+	private static final String CATALOG = "catalog", LOG = "log";
+
+	/**
+	 * The schema of the catalog.
+	 */
+	private static final String [] CATALOG_ATTRIBUTE = { "name", "attributes", "domains", "key", "storage" };
+	private static final Class [] CATALOG_DOMAIN = { String.class, String.class, String.class, String.class,
+	                                                 String.class };
+	private static final String [] CATALOG_KEY = { "name" };
+
+	/**
+	 * The name of the database and the directory holding its files.
+	 */
+	private final String name, dir;
+
+	/**
+	 * The buffer pool caching the pages of its disk resident tables.
+	 */
+	private final BufferPool pool;
+
+	/**
+	 * The rows of the catalog and the tables, both in stream order.
+	 */
+	private final List <Comparable []> catalog = new ArrayList <> ();
+	private final List <Table> tables = new ArrayList <> ();
+
+	/**
+	 * The tables by name.
+	 */
+	private final Map <String, Table> byName = new HashMap <> ();
+
+	/**
+	 * The log shared by the tables.
+	 */
+	private final WriteAheadLog wal;
+
+	/***************************************************************************
+	 * Open (or create) the database with the given name, caching the pages of
+	 * its disk resident tables in a pool of its own.
+	 *
+	 * @param name  the name of the database
+	 * @return  the database
+	 * @throws IOException  if its files cannot be read
+	 */
+	public static Database open (String name) throws IOException
+	{
+		BufferPool pool = new BufferPool (BufferPool.DEFAULT_FRAMES, BufferPool.DEFAULT_FRAME_SIZE,
+		                                  new EvictionPolicy.Clock ());
+		return new Database (name, pool);
+	} // open
+
+	/***************************************************************************
+	 * Open (or create) the database with the given name, caching the pages of
+	 * its disk resident tables in the given pool.
+	 *
+	 * @param name  the name of the database
+	 * @param pool  the buffer pool
+	 * @return  the database
+	 * @throws IOException  if its files cannot be read
+	 */
+	public static Database open (String name, BufferPool pool) throws IOException
+	{
+		return new Database (name, pool);
+	} // open
+
+	/***************************************************************************
+	 * Open the database: read the catalog, open the tables and replay the log.
+	 */
+	private Database (String _name, BufferPool _pool) throws IOException
+	{
+		name = _name;
+		dir  = DIR + _name + File.separator;
+		pool = _pool;
+		new File (dir).mkdirs ();
+
+		Path cat = Paths.get (dir + CATALOG);
+		if (Files.exists (cat)) catalog.addAll (Snapshot.read (cat).tuples);
+		List <Class []> domains = new ArrayList <> ();
+		for (Comparable [] row : catalog) {
+			Table t = openTable (row);
+			tables.add (t);
+			byName.put (t.getName (), t);
+			domains.add (Table.findClass (((String) row [2]).split (" ")));
+		} // for
+
+		wal = new WriteAheadLog (Paths.get (dir + LOG), domains, WriteAheadLog.Sync.FORCE,
+		                         (stream, lsn, tup) -> tables.get (stream).redo (lsn, tup));
+		for (int i = 0; i < tables.size (); i++) tables.get (i).attachLog (wal, i);
+	} // constructor
+
+	/***************************************************************************
+	 * Open the table described by a row of the catalog.
+	 */
+	private Table openTable (Comparable [] row)
+	{
+		String    tname     = (String) row [0];
+		String [] attribute = ((String) row [1]).split (" ");
+		Class []  domain    = Table.findClass (((String) row [2]).split (" "));
+		String [] key       = ((String) row [3]).split (" ");
+		if ("disk".equals (row [4])) return new Table (dir, tname, attribute, domain, key, true, pool);
+		if (new File (dir + tname + ".dbf").exists ()) return Table.open (dir, tname);
+		return new Table (dir, tname, attribute, domain, key, false, pool);
+	} // openTable
+
+	/***************************************************************************
+	 * Create a table in the database and add it to the catalog.
+	 *
+	 * @param tname       the name of the table
+	 * @param attributes  the attribute names separated by spaces
+	 * @param domains     the attribute domains separated by spaces (e.g., "String Integer")
+	 * @param key         the key attributes separated by spaces
+	 * @param onDisk      whether the tuples are stored on disk
+	 * @return  the new table
+	 * @throws IOException  if the catalog cannot be written
+	 */
+	public synchronized Table create (String tname, String attributes, String domains, String key, boolean onDisk)
+	       throws IOException
+	{
+		if (byName.containsKey (tname)) throw new IllegalArgumentException ("create: table " + tname + " exists");
+		Comparable [] row = { tname, attributes, domains, key, onDisk ? "disk" : "memory" };
+		Table t = openTable (row);
+		int stream = wal.addStream (Table.findClass (domains.split (" ")));
+		t.attachLog (wal, stream);
+		catalog.add (row);
+		tables.add (t);
+		byName.put (tname, t);
+		writeCatalog ();
+		return t;
+	} // create
+
+	/***************************************************************************
+	 * Return the table with the given name (null if there is none).
+	 *
+	 * @param tname  the name of the table
+	 * @return  the table
+	 */
+	public synchronized Table table (String tname)
+	{
+		return byName.get (tname);
+	} // table
+
+	/***************************************************************************
+	 * Return the name of the database.
+	 */
+	public String getName ()
+	{
+		return name;
+	} // getName
+
+	/***************************************************************************
+	 * Checkpoint all the tables (see Table.checkpoint) and cut the records
+	 * they have all written out of the log.
+	 *
+	 * @throws IOException  if a table or the log cannot be written
+	 */
+	public void checkpoint () throws IOException
+	{
+		long lsn = Long.MAX_VALUE;
+		for (Table t : tables ()) lsn = Math.min (lsn, t.checkpointChanges ());
+		if (lsn != Long.MAX_VALUE) wal.truncate (lsn);
+	} // checkpoint
+
+	/***************************************************************************
+	 * Save all the tables (see Table.save) and empty the log of the records
+	 * logged before the saves.
+	 *
+	 * @throws IOException  if the log cannot be written
+	 */
+	public void save () throws IOException
+	{
+		long lsn = wal.end ();
+		for (Table t : tables ()) t.save ();
+		wal.truncate (lsn);
+	} // save
+
+	/***************************************************************************
+	 * Close the database: close each table (see Table.close), so the disk
+	 * resident ones write out their pages and release their files and frames,
+	 * then write out and close the log.  Tuples of in-memory tables not yet
+	 * checkpointed are replayed from the log when it is next opened.
+	 *
+	 * @throws IOException  if the files cannot be written
+	 */
+	public void close () throws IOException
+	{
+		for (Table t : tables ()) t.close ();
+		wal.close ();
+	} // close
+
+	/***************************************************************************
+	 * Return a copy of the list of tables (so they can be checkpointed without
+	 * holding the database lock).
+	 */
+	private synchronized List <Table> tables ()
+	{
+		return new ArrayList <> (tables);
+	} // tables
+
+	/***************************************************************************
+	 * Write the catalog (atomically, see Snapshot.write).
+	 */
+	private void writeCatalog () throws IOException
+	{
+		Snapshot.write (Paths.get (dir + CATALOG), CATALOG, CATALOG_ATTRIBUTE, CATALOG_DOMAIN, CATALOG_KEY,
+		                catalog, null);
+	} // writeCatalog
+
+} // Database class
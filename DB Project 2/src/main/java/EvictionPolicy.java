@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * @file  EvictionPolicy.java
+ */
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/*******************************************************************************
+ * This interface defines the replacement policy used by a BufferPool to choose
+ * which frame to reuse when a page must be read and every frame is occupied.
+ * Two policies are provided: CLOCK (second chance) and LRU-K.
+ */
+public interface EvictionPolicy
+{
+	/***************************************************************************
+	 * Prepare the policy for a pool with the given number of frames.
+	 *
+	 * @param nFrames  the number of frames in the pool
+	 */
+	void setup (int nFrames);
+
+	/***************************************************************************
+	 * Record that the page in the frame was requested (pinned).
+	 *
+	 * @param frame  the frame number
+	 */
+	void access (int frame);
+
+	/***************************************************************************
+	 * Forget the access history of the frame (its page was dropped).
+	 *
+	 * @param frame  the frame number
+	 */
+	void remove (int frame);
+
+	/***************************************************************************
+	 * Choose a frame to evict among those accepted by the evictable test.
+	 *
+	 * @param evictable  whether a frame may be evicted (i.e., it is unpinned)
+	 * @return  the victim frame number, or -1 if no frame can be evicted
+	 */
+	int victim (IntPredicate evictable);
+
+	/***************************************************************************
+	 * The CLOCK policy gives each frame a reference bit that is set on access.
+	 * The clock hand sweeps the frames, clearing set bits, and evicts the first
+	 * evictable frame whose bit is already clear.
+	 */
+	class Clock implements EvictionPolicy
+	{
+		private boolean [] ref = new boolean [0];
+		private int hand = 0;
+
+		public void setup (int nFrames)
+		{
+			ref  = new boolean [nFrames];
+			hand = 0;
+		} // setup
+
+		public void access (int frame)
+		{
+			ref [frame] = true;
+		} // access
+
+		public void remove (int frame)
+		{
+			ref [frame] = false;
+		} // remove
+
+		public int victim (IntPredicate evictable)
+		{
+			for (int n = 0; n < 2 * ref.length; n++) {
+				int f = hand;
+				hand  = (hand + 1) % ref.length;
+				if (! evictable.test (f)) continue;
+				if (! ref [f]) return f;
+				ref [f] = false;
+			} // for
+			return -1;
+		} // victim
+
+	} // Clock class
+
+	/***************************************************************************
+	 * The LRU-K policy evicts the frame whose K-th most recent access is the
+	 * oldest.  Frames with fewer than K accesses count as infinitely old and are
+	 * evicted first (least recently used among them), so a single scan cannot
+	 * flush out pages that are used repeatedly.
+	 */
+	class LruK implements EvictionPolicy
+	{
+		private final int k;
+		private long [][] history = new long [0][];
+		private int [] nAccess = new int [0];
+		private long clock = 0;
+
+		/***********************************************************************
+		 * Construct an LRU-K policy.
+		 *
+		 * @param _k  the number of accesses to remember per frame (e.g., 2)
+		 */
+		public LruK (int _k)
+		{
+			if (_k < 1) throw new IllegalArgumentException ("LruK: k must be positive");
+			k = _k;
+		} // constructor
+
+		public void setup (int nFrames)
+		{
+			history = new long [nFrames][k];
+			nAccess = new int [nFrames];
+			clock   = 0;
+		} // setup
+
+		public void access (int frame)
+		{
+			long [] h = history [frame];
+			System.arraycopy (h, 0, h, 1, k - 1);           // h [0] is the most recent
+			h [0] = ++clock;
+			if (nAccess [frame] < k) nAccess [frame]++;
+		} // access
+
+		public void remove (int frame)
+		{
+			Arrays.fill (history [frame], 0);
+			nAccess [frame] = 0;
+		} // remove
+
+		public int victim (IntPredicate evictable)
+		{
+			int best = -1;
+			boolean bestFull = true;
+			long bestTime = Long.MAX_VALUE;
+			for (int f = 0; f < nAccess.length; f++) {
+				if (! evictable.test (f)) continue;
+				boolean full = nAccess [f] == k;
+				long time    = full ? history [f][k - 1] : history [f][0];
+				if (bestFull && ! full || full == bestFull && time < bestTime) {
+					best     = f;
+					bestFull = full;
+					bestTime = time;
+				} // if
+			} // for
+			return best;
+		} // victim
+
+	} // LruK class
+
+} // EvictionPolicy interface
@@ -0,0 +1,1750 @@
+/*******************************************************************************
+ * @file  FileList.java
+ *
+ * @author   John Miller
+ */
+
+import java.io.*;
+import java.io.ObjectOutputStream.PutField;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static java.lang.System.out;
+import java.util.*;
+import java.util.function.Function;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.ObjLongConsumer;
+
+/*******************************************************************************
+ * This class allows data tuples/tuples (e.g., those making up a relational
+ * table) to be stored in a random access file. Each tuple is packed into a
+ * variable length record by a TupleCodec (strings take only as many bytes as
+ * they need), so a record must fit within one page.
+ *
+ * The file is organized as a sequence of fixed size slotted pages (see Page).
+ * All reads and writes are done a whole page at a time.  New records go into
+ * an append buffer holding the last pages of the file (the last one being the
+ * tail); once the buffer is full, all its pages are written with one large
+ * sequential write.  Call flush or close to write out a partially filled
+ * buffer.  The other pages are read through a BufferPool, which is shared by
+ * all tables by default, or, in mapped mode, straight out of a memory mapping
+ * of the file.
+ *
+ * Each record also has a record id (rid), its page number and slot, which
+ * stays the same until the record is deleted.  Deleting a record leaves a
+ * tombstone in its page; a free-space map remembers the pages that have room
+ * again, and add fills those pages before growing the file, so once records
+ * have been deleted the list is no longer in insertion order.  The freed
+ * bytes are reclaimed when a page is reused or by compact.
+ *
+ * A file may also be compressed (see PageCompressor).  Pages are then stored
+ * as variable length frames after a small file header, and are compressed
+ * and decompressed as they move between the file and memory (readPage and
+ * writePage for the pool, the append buffer and the scan), so the pool and
+ * the scans work on ordinary pages while far fewer bytes cross the disk.
+ * A rewritten page that no longer fits its frame gets a new frame at the end
+ * of the file; compact rewrites the file without the dead frames.
+ */
+public class FileList extends AbstractList<Comparable[]> implements List<Comparable[]>, RandomAccess, Iterable<Comparable[]>, BufferPool.PageFile, RidMap.Store {
+
+	
+	private List<Comparable[]> tuples;
+	/**
+	 * File extension for data files.
+	 */
+	private static final String EXT = ".dat";
+
+	/**
+	 * The random access file that holds the tuples.
+	 */
+	private RandomAccessFile file;
+
+	/**
+	 * The channel used for page sized reads and writes on the file.
+	 */
+	private FileChannel channel;
+
+	/**
+	 * The name of table.
+	 */
+	private final String tableName;
+
+	/**
+	 * The number bytes required to store a "packed tuple"/record when strings
+	 * are padded to Table.str_bytearray_size.  Records are now variable length,
+	 * so this is only an upper bound for typical tuples.
+	 */
+	private final int recordSize;
+
+	/**
+	 * The codec that packs tuples into records and unpacks them.
+	 */
+	private final TupleCodec codec;
+
+	/**
+	 * The number of bytes in each page of the file.
+	 */
+	private final int pageSize;
+
+	/**
+	 * Counter for the number of tuples in this list.
+	 */
+	private int nRecords = 0;
+
+	/**
+	 * The number of pages, including the pages in the append buffer.
+	 */
+	private int nPages = 0;
+
+	/**
+	 * The list position of the first record in each page (used to map a list
+	 * position to a page with a binary search).  After a delete or an insert
+	 * into an earlier page, only the first validPages entries are up to date
+	 * until they are recomputed from pageLive.
+	 */
+	private int[] pageFirst = new int[16];
+	private int validPages = 0;
+
+	/**
+	 * The number of live records in each page.
+	 */
+	private int[] pageLive = new int[16];
+
+	/**
+	 * The free-space map: the pages with room for another record after
+	 * deletes, and the free plus reclaimable bytes of each such page.
+	 */
+	private final BitSet reusable = new BitSet();
+	private int[] pageRoom = new int[16];
+
+	/**
+	 * The number of pages held by the append buffer.
+	 */
+	private static final int APPEND_PAGES = 64;
+
+	/**
+	 * The append buffer, holding pages bufFirst to nPages - 1 of the file.
+	 */
+	private ByteBuffer appendBuf;
+	private int bufFirst = 0;
+
+	/**
+	 * The last page of the file (the last page in the append buffer), where
+	 * new records are added.
+	 */
+	private Page tail;
+
+	/**
+	 * Whether the append buffer has records that are not yet written to the
+	 * file.
+	 */
+	private boolean bufDirty = false;
+
+	/**
+	 * The buffer pool caching the (non-tail) pages of the file.
+	 */
+	private final BufferPool pool;
+
+	/**
+	 * The size of each memory mapped region of the file (a multiple of every
+	 * page size, so a page never straddles two regions).
+	 */
+	private static final long MAP_CHUNK = 1L << 26;
+
+	/**
+	 * Whether pages are read from a memory mapping instead of the pool.
+	 */
+	private boolean mapped = false;
+
+	/**
+	 * The memory mapped regions of the file (region c starts at c * MAP_CHUNK);
+	 * only the last region may be shorter than MAP_CHUNK.
+	 */
+	private final List<MappedByteBuffer> chunks = new ArrayList<>();
+
+	/**
+	 * For compressed files: the compressor (null for uncompressed files), the
+	 * file offset and capacity of each page's frame, the end of the frames,
+	 * the bytes held by dead (superseded) frames and a scratch frame buffer.
+	 * A frame is a FRAME_HEADER byte header (page number, compressed length,
+	 * capacity and the header of the page it holds) followed by the page
+	 * compressed into at most capacity bytes; a compressed length equal to
+	 * the page size means the page is stored as is.
+	 */
+	private PageCompressor zip;
+	private static final int ZIP_MAGIC = 0x464C5A31;    // "FLZ1"
+	private static final int FILE_HEADER = 16, FRAME_HEADER = 20;
+	private long[] frameOff = new long[0];
+	private int[] frameCap = new int[0];
+	private long fileEnd = FILE_HEADER;
+	private long deadBytes = 0;
+	private ByteBuffer frameBuf, batch;
+
+	/**
+	 * The number of bytes a scan reads from the file at a time.
+	 */
+	private int readAhead = 1 << 20;
+
+	/**
+	 * The number of read-ahead blocks a scan keeps in flight beyond the one
+	 * it is working through (0 reads each block when it is reached).
+	 */
+	private int prefetch = 2;
+
+	/**
+	 * The threads reading blocks ahead of the scans.
+	 */
+	private static final ExecutorService READERS = Executors.newCachedThreadPool(r -> {
+		Thread t = new Thread(r, "FileList-reader");
+		t.setDaemon(true);
+		return t;
+	});
+
+	/**
+	 * String Byte array size
+	 */
+	private final static int str_bytearray_size = Table.str_bytearray_size;
+	
+//	private final Map<> map; 
+	
+	private  Class[] domain;
+
+	/***************************************************************************
+	 * Construct a FileList using the default page size.
+	 * 
+	 * @param _tableName
+	 *            the name of the table
+	 * @param _recordSize
+	 *            the size of tuple in bytes.
+	 * @param domain
+	 *            the domains (data types) of the tuple's attributes
+	 */
+	public FileList(String _tableName, int _recordSize, Class[] domain) {
+		this(_tableName, _recordSize, domain, Page.DEFAULT_SIZE);
+	} // constructor
+
+	/***************************************************************************
+	 * Construct a FileList whose pages are cached in the shared buffer pool.
+	 * 
+	 * @param _tableName
+	 *            the name of the table
+	 * @param _recordSize
+	 *            the size of tuple in bytes.
+	 * @param domain
+	 *            the domains (data types) of the tuple's attributes
+	 * @param _pageSize
+	 *            the size of each page in bytes (e.g., 4096 or 8192)
+	 */
+	public FileList(String _tableName, int _recordSize, Class[] domain, int _pageSize) {
+		this(_tableName, _recordSize, domain, _pageSize, BufferPool.getShared());
+	} // constructor
+
+	/***************************************************************************
+	 * Construct a FileList.  If the data file already exists, its pages are
+	 * scanned to find out how many records each one holds.
+	 * 
+	 * @param _tableName
+	 *            the name of the table
+	 * @param _recordSize
+	 *            the size of tuple in bytes.
+	 * @param domain
+	 *            the domains (data types) of the tuple's attributes
+	 * @param _pageSize
+	 *            the size of each page in bytes (e.g., 4096 or 8192)
+	 * @param _pool
+	 *            the buffer pool used to cache pages
+	 */
+	public FileList(String _tableName, int _recordSize, Class[] domain, int _pageSize, BufferPool _pool) {
+		this(_tableName, _recordSize, domain, _pageSize, _pool, false);
+	} // constructor
+
+	/***************************************************************************
+	 * Construct a FileList, optionally compressing its pages.  The setting
+	 * only applies to a new file; an existing file keeps its own format.
+	 * 
+	 * @param _tableName
+	 *            the name of the table
+	 * @param _recordSize
+	 *            the size of tuple in bytes.
+	 * @param domain
+	 *            the domains (data types) of the tuple's attributes
+	 * @param _pageSize
+	 *            the size of each page in bytes (e.g., 4096 or 8192)
+	 * @param _pool
+	 *            the buffer pool used to cache pages
+	 * @param compressed
+	 *            whether a new file stores its pages compressed
+	 */
+	public FileList(String _tableName, int _recordSize, Class[] domain, int _pageSize, BufferPool _pool,
+			boolean compressed) {
+
+		tableName = _tableName;
+		recordSize = _recordSize;
+		pageSize = _pageSize;
+		pool = _pool;
+		this.domain  = domain;
+		codec = new TupleCodec(domain);
+
+		if (! Page.validSize(pageSize) || Page.capacity(pageSize, codec.fixedSize()) < 1) {
+			throw new IllegalArgumentException("FileList: record size " + codec.fixedSize()
+					+ " does not fit in page size " + pageSize);
+		} // if
+		if (pageSize > pool.frameSize()) {
+			throw new IllegalArgumentException("FileList: page size " + pageSize
+					+ " is larger than the buffer pool frames");
+		} // if
+
+		try {
+			file = new RandomAccessFile(tableName + EXT, "rw");
+			channel = file.getChannel();
+			openPages(compressed);
+		} catch (IOException ex) {
+			file = null;
+			out.println("FileList.constructor: unable to open - " + ex);
+		} // try
+
+	} // constructor
+
+	/***************************************************************************
+	 * Add a new tuple into the file list by packing it into a record and
+	 * placing this record into a page that the free-space map says has room,
+	 * or else into the tail page.  When the tail page is full, a new tail page
+	 * is started in the append buffer; the buffer is written to the file only
+	 * once all of its pages are full.
+	 * 
+	 * @author Yash
+	 * @param tuple
+	 *            to add
+	 * @return whether the addition succeeded
+	 */
+	public boolean add(Comparable[] tuple) {
+		return insert(tuple) >= 0;
+	} // add_tuple
+
+	/***************************************************************************
+	 * Add a new tuple (as add does) and return its record id.
+	 * 
+	 * @param tuple
+	 *            the tuple to add
+	 * @return the record id, or -1 if the tuple could not be added
+	 */
+	public long insert(Comparable[] tuple) {
+		try {
+			return place(tuple);
+		} catch (ClassCastException | IllegalArgumentException e) {
+			out.println("FileList.insert: unable to pack tuple - " + e);
+		} catch (IOException e) {
+			out.println("FileList.insert: unable to write pages - " + e);
+		} // try
+		return -1;
+	} // insert
+
+	/***************************************************************************
+	 * Add all the tuples in the collection.  Records are packed straight into
+	 * the append buffer, which is written out in large sequential writes.
+	 * Tuples that do not match the domains are skipped.
+	 * 
+	 * @param c
+	 *            the tuples to add
+	 * @return whether any tuple was added
+	 */
+	public boolean addAll(Collection<? extends Comparable[]> c) {
+		int before = nRecords;
+		try {
+			for (Comparable[] tuple : c) {
+				try {
+					place(tuple);
+				} catch (ClassCastException | IllegalArgumentException e) {
+					out.println("FileList.addAll: unable to pack tuple - " + e);
+				} // try
+			} // for
+		} catch (IOException e) {
+			out.println("FileList.addAll: unable to write pages - " + e);
+		} // try
+		return nRecords != before;
+	} // addAll
+
+	/***************************************************************************
+	 * Get the ith tuple by finding the page that holds it, pinning the page in
+	 * the buffer pool (unless it is the tail) and unpacking the record from its
+	 * slot.
+	 * 
+	 * @author Yash
+	 * @param i,
+	 *            the index of the tuple to get
+	 * @return the ith tuple
+	 */
+	public Comparable[] get (int i) {
+		if (i < 0 || i >= nRecords) throw new IndexOutOfBoundsException("FileList.get: " + i);
+
+		int p = pageOf(i);
+		int k = i - pageFirst[p];
+		try {
+			return read(p, page -> decode(page, slotOf(page, k)));
+		} catch (IOException e) {
+			out.println("FileList.get: unable to read page " + p + " - " + e);
+			return null;
+		} // try
+	} // get
+
+	/***************************************************************************
+	 * Return the record id of the ith tuple.
+	 * 
+	 * @param i
+	 *            the list position of the tuple
+	 * @return the record id, or -1 if its page cannot be read
+	 */
+	public long ridOf(int i) {
+		if (i < 0 || i >= nRecords) throw new IndexOutOfBoundsException("FileList.ridOf: " + i);
+
+		int p = pageOf(i);
+		int k = i - pageFirst[p];
+		try {
+			return read(p, page -> rid(p, slotOf(page, k)));
+		} catch (IOException e) {
+			out.println("FileList.ridOf: unable to read page " + p + " - " + e);
+			return -1;
+		} // try
+	} // ridOf
+
+	/***************************************************************************
+	 * Get the tuple with the given record id.
+	 * 
+	 * @param rid
+	 *            the record id
+	 * @return the tuple, or null if there is no such (live) record
+	 */
+	public Comparable[] fetch(long rid) {
+		int p = (int) (rid >>> 16), slot = (int) rid & 0xFFFF;
+		if (rid < 0 || p >= nPages) return null;
+		try {
+			return read(p, page -> slot < page.slotCount() && page.isLive(slot) ? decode(page, slot) : null);
+		} catch (IOException e) {
+			out.println("FileList.fetch: unable to read page " + p + " - " + e);
+			return null;
+		} // try
+	} // fetch
+
+	/***************************************************************************
+	 * Delete the record with the given record id, leaving a tombstone in its
+	 * page and noting the page's room in the free-space map.
+	 * 
+	 * @param rid
+	 *            the record id
+	 * @return whether a live record was deleted
+	 */
+	public boolean delete(long rid) {
+		int p = (int) (rid >>> 16), slot = (int) rid & 0xFFFF;
+		if (rid < 0 || p >= nPages) return false;
+		try {
+			int room = modify(p, page -> page.delete(slot) ? page.room() : -1);
+			if (room < 0) return false;
+			pageLive[p]--;
+			nRecords--;
+			changed(p, room);
+			modCount++;
+			return true;
+		} catch (IOException e) {
+			out.println("FileList.delete: unable to write page " + p + " - " + e);
+			return false;
+		} // try
+	} // delete
+
+	/***************************************************************************
+	 * Replace the record with the given record id.  The record keeps its id
+	 * when the new version fits in the same page; otherwise it is moved and
+	 * gets a new id.
+	 * 
+	 * @param rid
+	 *            the record id
+	 * @param tuple
+	 *            the new tuple
+	 * @return the (possibly new) record id, or -1 if there is no such record
+	 *         or the tuple could not be stored
+	 */
+	public long update(long rid, Comparable[] tuple) {
+		int p = (int) (rid >>> 16), slot = (int) rid & 0xFFFF;
+		if (rid < 0 || p >= nPages) return -1;
+		try {
+			byte[] record = pack(tuple);
+			checkLength(record.length);
+			int room = modify(p, page -> {
+				if (slot >= page.slotCount() || ! page.isLive(slot)) return -1;
+				return page.update(slot, record) ? page.room() : -2;
+			});
+			if (room == -1) return -1;
+			if (room >= 0) {
+				changed(p, room);
+				return rid;
+			} // if
+			long moved = place(tuple);                  // too long for its page
+			delete(rid);
+			return moved;
+		} catch (ClassCastException | IllegalArgumentException e) {
+			out.println("FileList.update: unable to pack tuple - " + e);
+		} catch (IOException e) {
+			out.println("FileList.update: unable to write page " + p + " - " + e);
+		} // try
+		return -1;
+	} // update
+
+	/***************************************************************************
+	 * Remove the ith tuple (see delete).
+	 * 
+	 * @param i
+	 *            the list position of the tuple
+	 * @return the removed tuple, or null if its page cannot be accessed
+	 */
+	@Override
+	public Comparable[] remove(int i) {
+		long rid = ridOf(i);
+		Comparable[] tuple = fetch(rid);
+		return tuple != null && delete(rid) ? tuple : null;
+	} // remove
+
+	/***************************************************************************
+	 * Reclaim the space of deleted records.  Empty pages at the end of the
+	 * file are cut off, and every page in the free-space map is compacted so
+	 * its garbage and trailing tombstones become free space.  Records do not
+	 * move between pages, so record ids stay valid.  A compressed file is then
+	 * rewritten without its dead frames.
+	 * 
+	 * @return the number of bytes reclaimed
+	 */
+	public long compact() {
+		flush();
+		long reclaimed = 0;
+		try {
+			int last = nPages;
+			while (last > 1 && pageLive[last - 1] == 0) last--;
+			if (last < nPages) {
+				chunks.clear();
+				for (int p = last; p < nPages; p++) {
+					pool.invalidate(this, p);
+					if (zip != null) dropFrame(p);
+				} // for
+				reusable.clear(last, nPages);
+				if (zip == null) reclaimed += (long) (nPages - last) * pageSize;
+				nPages = last;
+				validPages = Math.min(validPages, nPages);
+				bufFirst = nPages - 1;
+				tail = bufferedPage(bufFirst);
+				readPage(bufFirst, tail.buffer());
+				pool.invalidate(this, bufFirst);
+				if (zip == null) channel.truncate((long) nPages * pageSize);
+			} // if
+
+			for (int p = reusable.nextSetBit(0); p >= 0; p = reusable.nextSetBit(p + 1)) {
+				int[] r = modify(p, page -> new int[] { page.compact(), page.room() });
+				reclaimed += r[0];
+				changed(p, r[1]);
+			} // for
+			flush();
+			if (zip != null && deadBytes > 0) reclaimed += rewriteFrames();
+		} catch (IOException e) {
+			out.println("FileList.compact: unable to rewrite pages - " + e);
+		} // try
+		return reclaimed;
+	} // compact
+
+	/***************************************************************************
+	 * Return the size of the file list in terms of the number of
+	 * tuples or records.
+	 * 
+	 * @author Yash
+	 * @return the number of tuples
+	 */
+	public int size() {
+		return nRecords;
+	} // size
+
+	/***************************************************************************
+	 * Return the number of pages used by this list (including the pages in the
+	 * append buffer).
+	 * 
+	 * @return the number of pages
+	 */
+	public int pageCount() {
+		return nPages;
+	} // pageCount
+
+	/***************************************************************************
+	 * Return whether the pages are stored compressed.
+	 * 
+	 * @return whether the file is compressed
+	 */
+	public boolean isCompressed() {
+		return zip != null;
+	} // isCompressed
+
+	/***************************************************************************
+	 * Return the size of the pages in this list's file.
+	 * 
+	 * @return the page size in bytes
+	 */
+	public int pageSize() {
+		return pageSize;
+	} // pageSize
+
+	/***************************************************************************
+	 * Turn the memory mapped read path on or off.  When it is on, get and the
+	 * iterator decode records directly from a MappedByteBuffer over the file
+	 * rather than reading pages through the buffer pool.  Best suited to large
+	 * read-mostly tables, since the mapping is sized by the file rather than
+	 * bounded by the pool.
+	 * 
+	 * @param on
+	 *            whether to read through a memory mapping
+	 */
+	public void setMapped(boolean on) {
+		if (on && ! mapped) pool.flush(this);
+		if (! on) chunks.clear();
+		mapped = on;
+	} // setMapped
+
+	/***************************************************************************
+	 * Set the number of bytes a scan (the iterator) reads at a time.  The value
+	 * is rounded down to whole pages (at least one).
+	 * 
+	 * @param bytes
+	 *            the read-ahead size in bytes (e.g., 1 MB)
+	 */
+	public void setReadAhead(int bytes) {
+		readAhead = Math.max(1, bytes / pageSize) * pageSize;
+	} // setReadAhead
+
+	/***************************************************************************
+	 * Set the number of read-ahead blocks a scan keeps in flight while it
+	 * works through the current one, so reading the next pages overlaps with
+	 * the caller's filtering or probing.  0 makes scans read synchronously.
+	 * 
+	 * @param blocks
+	 *            the number of blocks to read ahead (e.g., 2)
+	 */
+	public void setPrefetch(int blocks) {
+		prefetch = Math.max(0, blocks);
+	} // setPrefetch
+
+	/***************************************************************************
+	 * Return whether the memory mapped read path is on.
+	 * 
+	 * @return whether pages are read from a mapping
+	 */
+	public boolean isMapped() {
+		return mapped;
+	} // isMapped
+
+	/***************************************************************************
+	 * Write the append buffer (with one write) and any dirty pages held by the
+	 * buffer pool to the file.  Only the partially filled tail page stays in
+	 * the append buffer.
+	 */
+	public void flush() {
+		pool.flush(this);
+		flushAppends();
+	} // flush
+
+	/***************************************************************************
+	 * Flush the file and force it to disk (e.g., before emptying a write-ahead
+	 * log that holds the changes).
+	 */
+	public void force() {
+		flush();
+		sync();
+	} // force
+
+	/***************************************************************************
+	 * The steps of an incremental checkpoint, which a caller interleaves with
+	 * its updates instead of flushing everything at once: find the pages that
+	 * are dirty in the buffer pool, write them one at a time, write the append
+	 * buffer and force the file to disk.
+	 */
+	int[] dirtyPages() {
+		return pool.dirtyPages(this);
+	} // dirtyPages
+
+	void flushPage(int p) {
+		pool.flush(this, p);
+	} // flushPage
+
+	void flushAppends() {
+		if (! bufDirty) return;
+		try {
+			writeBuffer();
+			appendBuf.put(0, appendBuf, (nPages - 1 - bufFirst) * pageSize, pageSize);
+			bufFirst = nPages - 1;
+			tail = bufferedPage(bufFirst);
+		} catch (IOException ex) {
+			out.println("FileList.flush: unable to write - " + ex);
+		} // try
+	} // flushAppends
+
+	void sync() {
+		try {
+			file.getChannel().force(false);
+		} catch (IOException ex) {
+			out.println("FileList.force: unable to force - " + ex);
+		} // try
+	} // sync
+
+	/***************************************************************************
+	 * Close the file (after writing the append buffer and releasing the file's
+	 * frames in the buffer pool).
+	 */
+	public void close() {
+		flush();
+		pool.close(this);
+		chunks.clear();
+		try {
+			file.close();
+		} catch (IOException ex) {
+			out.println("FileList.close: unable to close - " + ex);
+		} // try
+
+	} // close
+
+	/***************************************************************************
+	 * Find the number of records held by each page already in the file and
+	 * load the last page as the tail page.  A file starting with ZIP_MAGIC is
+	 * compressed (an uncompressed page cannot start that way, as it would
+	 * have too many slots).
+	 */
+	private void openPages(boolean compressed) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(Page.HEADER_SIZE);
+		if (channel.size() >= 4) {
+			readFully(header.limit(4), 0);
+			compressed = header.getInt(0) == ZIP_MAGIC;
+		} // if
+		ByteBuffer headers = compressed ? openFrames() : null;
+
+		int filePages = compressed ? frameOff.length : (int) (channel.size() / pageSize);
+		for (int p = 0; p < filePages; p++) {
+			header.clear();
+			if (compressed) header.put(0, headers, p * Page.HEADER_SIZE, Page.HEADER_SIZE);
+			else readFully(header, (long) p * pageSize);
+			Page page = new Page(header);
+			addPage(page.liveCount());
+			if (page.liveCount() < page.slotCount() || page.garbage() > 0) changed(p, page.room());
+		} // for
+
+		appendBuf = ByteBuffer.allocate(APPEND_PAGES * pageSize);
+		if (nPages == 0) {
+			newTail();
+		} else {
+			bufFirst = nPages - 1;
+			tail = bufferedPage(bufFirst);
+			readPage(bufFirst, tail.buffer());
+		} // if
+	} // openPages
+
+	/***************************************************************************
+	 * Set up a compressed file: write the file header of a new file, or find
+	 * the latest frame of each page of an existing one.  Return the page
+	 * headers stored in the frames.
+	 */
+	private ByteBuffer openFrames() throws IOException {
+		zip = new PageCompressor(pageSize, codec);
+		frameBuf = ByteBuffer.allocate(FRAME_HEADER + pageSize);
+		ByteBuffer head = ByteBuffer.allocate(FILE_HEADER);
+		if (channel.size() == 0) {
+			head.putInt(0, ZIP_MAGIC).putInt(4, pageSize);
+			writeFully(head, 0);
+		} else {
+			readFully(head, 0);
+			if (head.getInt(4) != pageSize) {
+				throw new IOException("FileList: file has page size " + head.getInt(4) + ", not " + pageSize);
+			} // if
+		} // if
+
+		ByteBuffer headers = ByteBuffer.allocate(16 * Page.HEADER_SIZE);
+		ByteBuffer fh = ByteBuffer.allocate(FRAME_HEADER);
+		long size = channel.size(), pos = FILE_HEADER;
+		while (pos + FRAME_HEADER <= size) {
+			fh.clear();
+			readFully(fh, pos);
+			int p = fh.getInt(0), cap = fh.getInt(8);
+			if (p >= frameOff.length) {
+				growFrames(p + 1);
+				if (headers.capacity() < frameOff.length * Page.HEADER_SIZE) {
+					headers = ByteBuffer.allocate(2 * frameOff.length * Page.HEADER_SIZE).put(headers.clear());
+				} // if
+			} else if (frameOff[p] >= 0) {
+				deadBytes += FRAME_HEADER + frameCap[p];   // superseded by this frame
+			} // if
+			frameOff[p] = pos;
+			frameCap[p] = cap;
+			headers.put(p * Page.HEADER_SIZE, fh, 12, Page.HEADER_SIZE);
+			pos += FRAME_HEADER + cap;
+		} // while
+		fileEnd = pos;
+		return headers;
+	} // openFrames
+
+	/***************************************************************************
+	 * Grow the frame tables to cover n pages (new pages have no frame yet).
+	 */
+	private void growFrames(int n) {
+		int old = frameOff.length;
+		frameOff = Arrays.copyOf(frameOff, n);
+		frameCap = Arrays.copyOf(frameCap, n);
+		Arrays.fill(frameOff, old, n, -1);
+	} // growFrames
+
+	/***************************************************************************
+	 * Forget the frame of page p (its bytes become dead).
+	 */
+	private void dropFrame(int p) {
+		if (p >= frameOff.length || frameOff[p] < 0) return;
+		deadBytes += FRAME_HEADER + frameCap[p];
+		frameOff[p] = -1;
+	} // dropFrame
+
+	/***************************************************************************
+	 * Compress the page into a frame and write it: over its old frame if it
+	 * still fits there, else at the end of the file (into batch when one is
+	 * given, for the caller to write).  The tail page gets a full page of
+	 * capacity, as it keeps being rewritten while it fills up.
+	 */
+	private void writeFrame(int p, ByteBuffer page, ByteBuffer batch) throws IOException {
+		byte[] f = frameBuf.array();
+		int len = zip.compress(page, f, FRAME_HEADER);
+		if (len < 0) {
+			len = pageSize;
+			frameBuf.put(FRAME_HEADER, page, 0, pageSize);
+			frameBuf.put(12, page, 0, Page.HEADER_SIZE);
+		} else {
+			Page pg = new Page(page);                   // the header of the page as it will be rebuilt
+			frameBuf.putShort(12, (short) pg.slotCount());
+			frameBuf.putShort(14, (short) (pg.room() + Page.HEADER_SIZE + pg.slotCount() * Page.SLOT_SIZE));
+			frameBuf.putShort(16, (short) pg.liveCount());
+			frameBuf.putShort(18, (short) 0);
+		} // if
+		frameBuf.putInt(0, p).putInt(4, len);
+
+		if (p >= frameOff.length) growFrames(Math.max(p + 1, 2 * frameOff.length));
+		boolean append = frameOff[p] < 0 || len > frameCap[p];
+		if (append) {
+			dropFrame(p);
+			frameOff[p] = fileEnd;
+			frameCap[p] = p == nPages - 1 ? pageSize : len;
+			fileEnd += FRAME_HEADER + frameCap[p];
+		} // if
+		int cap = frameCap[p];
+		frameBuf.putInt(8, cap);
+		Arrays.fill(f, FRAME_HEADER + len, FRAME_HEADER + cap, (byte) 0);
+		frameBuf.clear().limit(FRAME_HEADER + cap);
+		if (append && batch != null) batch.put(frameBuf);
+		else writeFully(frameBuf, frameOff[p]);
+	} // writeFrame
+
+	/***************************************************************************
+	 * Decompress the frame starting at position off of src into the page,
+	 * using the given compressor (each scan has its own).
+	 */
+	private void unzip(ByteBuffer src, int off, ByteBuffer page, PageCompressor z) {
+		int len = src.getInt(off + 4);
+		if (len == pageSize) page.put(0, src, off + FRAME_HEADER, pageSize);
+		else z.decompress(src, off + FRAME_HEADER, len, page);
+	} // unzip
+
+	/***************************************************************************
+	 * Rewrite a compressed file with just the latest frame of each page, in
+	 * page order, by writing a new file and renaming it over the old one.
+	 * Return the number of bytes saved.
+	 */
+	private long rewriteFrames() throws IOException {
+		long before = channel.size();
+		File tmp = new File(tableName + EXT + ".tmp");
+		try (FileChannel dst = new RandomAccessFile(tmp, "rw").getChannel()) {
+			dst.truncate(0);
+			ByteBuffer head = ByteBuffer.allocate(FILE_HEADER).putInt(0, ZIP_MAGIC).putInt(4, pageSize);
+			while (head.hasRemaining()) dst.write(head);
+			long pos = FILE_HEADER;
+			for (int p = 0; p < nPages; p++) {
+				frameBuf.clear().limit(FRAME_HEADER + frameCap[p]);
+				readFully(frameBuf, frameOff[p]);
+				int cap = p == nPages - 1 ? frameCap[p] : frameBuf.getInt(4);
+				frameBuf.putInt(8, cap).clear().limit(FRAME_HEADER + cap);
+				frameOff[p] = pos;
+				frameCap[p] = cap;
+				while (frameBuf.hasRemaining()) pos += dst.write(frameBuf, pos);
+			} // for
+			fileEnd = pos;
+		} // try
+		chunks.clear();
+		file.close();
+		java.nio.file.Files.move(tmp.toPath(), new File(tableName + EXT).toPath(),
+				java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+		file = new RandomAccessFile(tableName + EXT, "rw");
+		channel = file.getChannel();
+		deadBytes = 0;
+		return before - fileEnd;
+	} // rewriteFrames
+
+	/***************************************************************************
+	 * Record a new page holding the given number of records.
+	 */
+	private void addPage(int count) {
+		if (nPages == pageFirst.length) {
+			pageFirst = Arrays.copyOf(pageFirst, 2 * nPages);
+			pageLive = Arrays.copyOf(pageLive, 2 * nPages);
+			pageRoom = Arrays.copyOf(pageRoom, 2 * nPages);
+		} // if
+		if (validPages == nPages) validPages++;
+		pageFirst[nPages] = nRecords;
+		pageLive[nPages++] = count;
+		nRecords += count;
+	} // addPage
+
+	/***************************************************************************
+	 * Note that the number of records in page p has changed and update its
+	 * entry in the free-space map.
+	 */
+	private void changed(int p, int room) {
+		validPages = Math.min(validPages, p + 1);
+		pageRoom[p] = room;
+		reusable.set(p, room >= codec.fixedSize() + Page.SLOT_SIZE);
+	} // changed
+
+	/***************************************************************************
+	 * Return the first page in the free-space map with room for a record of
+	 * the given length, or -1 if there is none.
+	 */
+	private int findRoom(int len) {
+		for (int p = reusable.nextSetBit(0); p >= 0; p = reusable.nextSetBit(p + 1)) {
+			if (pageRoom[p] >= len + Page.SLOT_SIZE) return p;
+		} // for
+		return -1;
+	} // findRoom
+
+	/***************************************************************************
+	 * Add the tuple to a page with room from the free-space map, or else
+	 * append it, and return its record id.
+	 */
+	private long place(Comparable[] tuple) throws IOException {
+		int p = reusable.isEmpty() ? -1 : findRoom(codec.encodedSize(tuple));
+		if (p < 0) return append(tuple);
+		byte[] record = pack(tuple);
+		int[] r = modify(p, page -> {
+			if (! page.fits(record.length)) page.compact();
+			return new int[] { page.insert(record), page.room() };
+		});
+		pageLive[p]++;
+		nRecords++;
+		changed(p, r[1]);
+		modCount++;
+		return rid(p, r[0]);
+	} // place
+
+	/***************************************************************************
+	 * Throw an IllegalArgumentException if a record of the given length can
+	 * never fit in a page.
+	 */
+	private void checkLength(int len) {
+		if (len > pageSize - Page.HEADER_SIZE - Page.SLOT_SIZE) {
+			throw new IllegalArgumentException("record of " + len + " bytes does not fit in a page");
+		} // if
+	} // checkLength
+
+	/***************************************************************************
+	 * Encode the tuple straight into the tail page, starting a new tail page
+	 * when the current one is full and writing the append buffer when it has
+	 * no room for another page.  The record is encoded before its slot is
+	 * added, so a tuple that fails to encode leaves the page unchanged.
+	 */
+	private long append(Comparable[] tuple) throws IOException {
+		int len = codec.encodedSize(tuple);
+		checkLength(len);
+		if (! tail.fits(len)) {
+			if (nPages - bufFirst == APPEND_PAGES) {
+				writeBuffer();
+				bufFirst = nPages;
+			} // if
+			newTail();
+		} // if
+		codec.encode(tuple, tail.buffer(), tail.nextOffset(len));
+		int slot = tail.allocate(len);
+		bufDirty = true;
+		pageLive[nPages - 1]++;
+		nRecords++;
+		modCount++;
+		return rid(nPages - 1, slot);
+	} // append
+
+	/***************************************************************************
+	 * Apply the read operation to page p, wherever the page currently is.
+	 */
+	private <T> T read(int p, Function<Page, T> op) throws IOException {
+		if (p >= bufFirst) return op.apply(bufferedPage(p));
+		if (mapped) return op.apply(mappedPage(p));
+		BufferPool.Frame f = pool.pin(this, p);
+		try {
+			return op.apply(new Page(f.buffer()));
+		} finally {
+			pool.unpin(f, false);
+		} // try
+	} // read
+
+	/***************************************************************************
+	 * Apply the update operation to page p: in place when the page is in the
+	 * append buffer, else in its buffer pool frame (which is written through
+	 * at once in mapped mode, so the mapping sees the change).
+	 */
+	private <T> T modify(int p, Function<Page, T> op) throws IOException {
+		if (p >= bufFirst) {
+			bufDirty = true;
+			return op.apply(bufferedPage(p));
+		} // if
+		BufferPool.Frame f = pool.pin(this, p);
+		try {
+			return op.apply(new Page(f.buffer()));
+		} finally {
+			pool.unpin(f, true);
+			if (mapped) pool.flush(this);
+		} // try
+	} // modify
+
+	/***************************************************************************
+	 * Return the slot of the kth live record in the page.
+	 */
+	private static int slotOf(Page page, int k) {
+		if (page.liveCount() == page.slotCount()) return k;
+		int slot = 0;
+		for (;; slot++) if (page.isLive(slot) && k-- == 0) return slot;
+	} // slotOf
+
+	/***************************************************************************
+	 * Combine a page number and slot into a record id.
+	 */
+	private static long rid(int p, int slot) {
+		return (long) p << 16 | slot;
+	} // rid
+
+	/***************************************************************************
+	 * Decode the record in the given slot of the page.
+	 */
+	private Comparable[] decode(Page page, int slot) {
+		return codec.decode(page.buffer(), page.offset(slot));
+	} // decode
+
+	/***************************************************************************
+	 * Start a new, empty tail page at the end of the append buffer.
+	 */
+	private void newTail() {
+		addPage(0);
+		tail = Page.format(bufferedPage(nPages - 1).buffer());
+	} // newTail
+
+	/***************************************************************************
+	 * Return a view of page p, which must be in the append buffer.
+	 */
+	private Page bufferedPage(int p) {
+		return new Page(appendBuf.slice((p - bufFirst) * pageSize, pageSize));
+	} // bufferedPage
+
+	/***************************************************************************
+	 * Return the list position of the first record in page p (or the size of
+	 * the list when p is nPages).
+	 */
+	private int firstOf(int p) {
+		if (p >= nPages) return nRecords;
+		if (p >= validPages) prefix();
+		return pageFirst[p];
+	} // firstOf
+
+	/***************************************************************************
+	 * Return the number of the page holding the ith record.
+	 */
+	private int pageOf(int i) {
+		if (validPages < nPages) prefix();
+		int lo = 0, hi = nPages - 1;
+		while (lo < hi) {
+			int mid = (lo + hi + 1) >>> 1;
+			if (pageFirst[mid] <= i) lo = mid;
+			else hi = mid - 1;
+		} // while
+		return lo;
+	} // pageOf
+
+	/***************************************************************************
+	 * Recompute the out of date entries of pageFirst.
+	 */
+	private void prefix() {
+		pageFirst[0] = 0;
+		for (int p = Math.max(validPages, 1); p < nPages; p++) pageFirst[p] = pageFirst[p - 1] + pageLive[p - 1];
+		validPages = nPages;
+	} // prefix
+
+	/***************************************************************************
+	 * Return page p as a view over the memory mapping.  If the page lies past
+	 * the end of the mapped regions (the file has grown since they were
+	 * mapped), the regions up to the current end of file are remapped.
+	 */
+	private Page mappedPage(int p) throws IOException {
+		if (zip == null) return new Page(mappedSlice((long) p * pageSize, pageSize));
+		ByteBuffer page = ByteBuffer.allocate(pageSize);
+		unzip(mappedSlice(frameOff[p], FRAME_HEADER + frameCap[p]), 0, page, zip);
+		return new Page(page);
+	} // mappedPage
+
+	/***************************************************************************
+	 * Return page p as a view over the memory mapping, or null if it lies past
+	 * the mapped regions (which are not remapped: see Scan).
+	 */
+	private Page mappedPageIfMapped(int p) {
+		long pos = (long) p * pageSize;
+		int c = (int) (pos / MAP_CHUNK);
+		if (c >= chunks.size() || pos + pageSize > c * MAP_CHUNK + chunks.get(c).capacity()) return null;
+		return new Page(chunks.get(c).slice((int) (pos - c * MAP_CHUNK), pageSize));
+	} // mappedPageIfMapped
+
+	/***************************************************************************
+	 * Return a view of len bytes of the mapping starting at file position pos
+	 * (or a copy, for a compressed frame that straddles two regions).
+	 */
+	private ByteBuffer mappedSlice(long pos, int len) throws IOException {
+		int c = (int) (pos / MAP_CHUNK);
+		if ((pos + len - 1) / MAP_CHUNK != c) {
+			ByteBuffer b = ByteBuffer.allocate(len);
+			readFully(b, pos);
+			return b;
+		} // if
+		if (c >= chunks.size() || pos + len > c * MAP_CHUNK + chunks.get(c).capacity()) remap(c);
+		return chunks.get(c).slice((int) (pos - c * MAP_CHUNK), len);
+	} // mappedSlice
+
+	/***************************************************************************
+	 * Map the file from the last (possibly partial) region through region c.
+	 */
+	private void remap(int c) throws IOException {
+		long size = channel.size();
+		int first = chunks.isEmpty() ? 0 : chunks.size() - 1;
+		for (int k = first; k <= c; k++) {
+			long start = k * MAP_CHUNK;
+			MappedByteBuffer m = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(MAP_CHUNK, size - start));
+			if (k < chunks.size()) chunks.set(k, m);
+			else chunks.add(m);
+		} // for
+	} // remap
+
+	/***************************************************************************
+	 * Write all the pages in the append buffer to the file with one write.
+	 */
+	private void writeBuffer() throws IOException {
+		if (zip != null) {
+			if (batch == null) batch = ByteBuffer.allocate(APPEND_PAGES * (FRAME_HEADER + pageSize));
+			batch.clear();
+			long start = fileEnd;
+			for (int p = bufFirst; p < nPages; p++) writeFrame(p, bufferedPage(p).buffer(), batch);
+			writeFully(batch.flip(), start);
+		} else {
+			ByteBuffer b = appendBuf.duplicate();
+			b.position(0).limit((nPages - bufFirst) * pageSize);
+			writeFully(b, (long) bufFirst * pageSize);
+		} // if
+		for (int p = bufFirst; p < nPages; p++) pool.invalidate(this, p);
+		bufDirty = false;
+	} // writeBuffer
+
+	/***************************************************************************
+	 * Read page pageNo of the file into the given buffer (used by the pool).
+	 * 
+	 * @param pageNo
+	 *            the page number
+	 * @param buf
+	 *            the buffer to fill (its capacity is the page size)
+	 */
+	public void readPage(int pageNo, ByteBuffer buf) throws IOException {
+		if (zip != null) {
+			frameBuf.clear().limit(FRAME_HEADER + frameCap[pageNo]);
+			readFully(frameBuf, frameOff[pageNo]);
+			unzip(frameBuf, 0, buf, zip);
+			return;
+		} // if
+		ByteBuffer b = buf.duplicate();
+		b.clear();
+		readFully(b, (long) pageNo * pageSize);
+	} // readPage
+
+	/***************************************************************************
+	 * Write the buffer to page pageNo of the file (used by the pool).
+	 * 
+	 * @param pageNo
+	 *            the page number
+	 * @param buf
+	 *            the page contents (its capacity is the page size)
+	 */
+	public void writePage(int pageNo, ByteBuffer buf) throws IOException {
+		if (zip != null) {
+			writeFrame(pageNo, buf, null);
+			return;
+		} // if
+		ByteBuffer b = buf.duplicate();
+		b.clear();
+		writeFully(b, (long) pageNo * pageSize);
+	} // writePage
+
+	/***************************************************************************
+	 * Fill the buffer with bytes from the file starting at the given position.
+	 */
+	private void readFully(ByteBuffer buf, long pos) throws IOException {
+		while (buf.hasRemaining()) {
+			int n = channel.read(buf, pos);
+			if (n < 0) throw new EOFException("FileList: unexpected end of file at " + pos);
+			pos += n;
+		} // while
+	} // readFully
+
+	/***************************************************************************
+	 * Write the buffer's remaining bytes to the file starting at the given
+	 * position.
+	 */
+	private void writeFully(ByteBuffer buf, long pos) throws IOException {
+		while (buf.hasRemaining()) pos += channel.write(buf, pos);
+	} // writeFully
+
+	///////////////////////////////////////////////////////////////////////////////
+	/////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////
+	/***
+	 * @author Yash
+	 * @param Comarable
+	 *            tuple
+	 * @return byte[] of the tuple that is required to be packed
+	 */
+	public byte[] pack(Comparable[] tuple) {
+		byte[] bytes = new byte[codec.encodedSize(tuple)];
+		codec.encode(tuple, ByteBuffer.wrap(bytes), 0);
+		return bytes;
+	}
+	
+	/**
+	 * @author Yash
+	 * @param byte[] to unpack
+	 * @return unpacked Comparable[] tuple
+	 */
+
+	public Comparable[] unpack(byte[] b) {
+		return codec.decode(ByteBuffer.wrap(b), 0);
+	}
+	
+	/***************************************************************************
+	 * Return an iterator that scans the list in order with a Scan cursor, so
+	 * each record is read and unpacked once and the file is read in large
+	 * read-ahead blocks.
+	 * 
+	 * @return an iterator over all the tuples
+	 */
+	@Override
+	public Iterator<Comparable[]> iterator() {
+		return new Scan(0, nPages);
+	} // iterator
+
+	/***************************************************************************
+	 * Scan the list in order (as the iterator does), passing each tuple along
+	 * with its record id to the action, e.g., to build an index of record ids.
+	 * 
+	 * @param action
+	 *            the action to apply to each tuple and record id
+	 */
+	public void forEachRid(ObjLongConsumer<Comparable[]> action) {
+		Scan scan = new Scan(0, nPages);
+		while (scan.hasNext()) {
+			Comparable[] tuple = scan.next();
+			action.accept(tuple, scan.rid());
+		} // while
+	} // forEachRid
+
+	/***************************************************************************
+	 * Return a spliterator that splits the scan on page boundaries, so that
+	 * stream ().parallel () can scan different ranges of pages in parallel.
+	 * Everything the scans share is brought up to date here, on the calling
+	 * thread: the pool's dirty pages are written, the mapping (in mapped mode)
+	 * is extended to the end of the file, and the position of the first record
+	 * of each page is copied for the spliterators, so the worker threads only
+	 * ever read the list's state.
+	 * 
+	 * @return a spliterator over all the tuples
+	 */
+	@Override
+	public Spliterator<Comparable[]> spliterator() {
+		pool.flush(this);
+		if (validPages < nPages) prefix();
+		int[] first = Arrays.copyOf(pageFirst, nPages + 1);
+		first[nPages] = nRecords;
+		if (mapped && zip == null && bufFirst > 0) {
+			try {
+				mappedPage(bufFirst - 1);
+			} catch (IOException e) {
+				throw new UncheckedIOException("FileList.spliterator: unable to map the file", e);
+			} // try
+		} // if
+		return new PageSpliterator(0, nPages, first);
+	} // spliterator
+
+	/***************************************************************************
+	 * This inner class is a sequential scan cursor over the pages [from, to).
+	 * Pages that are in the file are read readAhead bytes at a time into a
+	 * block buffer (or viewed in the mapping when in mapped mode), and records
+	 * are unpacked from each page in slot order, skipping tombstones.  With
+	 * prefetch on, the next blocks are read by READERS while the caller works
+	 * through the current one; each block has its own buffer, and the buffer
+	 * of a finished block is reused for the next read.  Scans
+	 * bypass the buffer pool, so a large scan does not flush out the pool's hot
+	 * pages; the pool's dirty pages are written first so that the scan sees
+	 * them.
+	 */
+	private class Scan implements Iterator<Comparable[]> {
+
+		private int page;
+		private final int end;
+		private ByteBuffer block;
+		private int blockFirst = 0, blockPages = 0;
+		private long blockPos = 0;
+		private ByteBuffer unzipped;
+		private PageCompressor unzipper;
+		private Page cur;
+		private int slot = 0, nSlots = 0;
+		private ArrayDeque<Block> ahead;
+		private final ArrayDeque<ByteBuffer> free = new ArrayDeque<>();
+		private int nextRead;
+		private final boolean shared;
+
+		Scan(int from, int to) {
+			this(from, to, false);
+		} // constructor
+
+		/***********************************************************************
+		 * Construct a scan of the pages [from, to).  A shared scan runs on a
+		 * worker thread of a parallel stream (see spliterator): it leaves the
+		 * pool and the mapping alone, reading any page not yet mapped instead.
+		 */
+		Scan(int from, int to, boolean _shared) {
+			page = from;
+			end = to;
+			shared = _shared;
+			if (! shared) pool.flush(FileList.this);
+		} // constructor
+
+		@Override
+		public boolean hasNext() {
+			for (;;) {
+				while (slot < nSlots && ! cur.isLive(slot)) slot++;
+				if (slot < nSlots) return true;
+				if (page >= end) return false;
+				cur = load(page++);
+				slot = 0;
+				nSlots = cur.slotCount();
+			} // for
+		} // hasNext
+
+		@Override
+		public Comparable[] next() {
+			if (! hasNext()) throw new NoSuchElementException();
+			return decode(cur, slot++);
+		} // next
+
+		/***********************************************************************
+		 * Return the record id of the tuple last returned by next.
+		 */
+		long rid() {
+			return FileList.rid(page - 1, slot - 1);
+		} // rid
+
+		/***********************************************************************
+		 * Return page p, reading the next read-ahead block when p is past the
+		 * current one.
+		 */
+		private Page load(int p) {
+			if (p >= bufFirst) return bufferedPage(p);
+			try {
+				if (zip != null) return frame(p);
+				if (mapped) {
+					Page m = shared ? mappedPageIfMapped(p) : mappedPage(p);
+					if (m != null) return m;
+				} // if
+				if ((p < blockFirst || p >= blockFirst + blockPages) && prefetch > 0) {
+					nextBlock(p);
+				} else if (p < blockFirst || p >= blockFirst + blockPages) {
+					int n = Math.min(readAhead / pageSize, Math.min(end, bufFirst) - p);
+					if (block == null) block = ByteBuffer.allocateDirect(n * pageSize);   // the first block is the largest
+					block.clear().limit(n * pageSize);
+					readFully(block, (long) p * pageSize);
+					blockFirst = p;
+					blockPages = n;
+				} // if
+				return new Page(block.slice((p - blockFirst) * pageSize, pageSize));
+			} catch (IOException e) {
+				throw new UncheckedIOException("FileList.Scan: unable to read page " + p, e);
+			} // try
+		} // load
+
+		/***********************************************************************
+		 * Make the block starting at page p current, waiting for its read if
+		 * it is still in flight, and start reading the blocks after it.
+		 */
+		private void nextBlock(int p) throws IOException {
+			if (ahead == null) ahead = new ArrayDeque<>();
+			if (ahead.isEmpty() || ahead.peek().first != p) {   // first block, or out of sequence
+				for (Block b : ahead) {
+					b.await();
+					free.push(b.buf);
+				} // for
+				ahead.clear();
+				nextRead = p;
+			} // if
+			if (block != null) free.push(block);
+			int limit = Math.min(end, bufFirst);
+			while (ahead.size() <= prefetch && nextRead < limit) {
+				int n = Math.min(readAhead / pageSize, limit - nextRead);
+				ByteBuffer buf = free.isEmpty() ? null : free.pop();
+				if (buf == null || buf.capacity() < n * pageSize) buf = ByteBuffer.allocateDirect(readAhead);
+				ahead.add(new Block(buf, nextRead, n));
+				nextRead += n;
+			} // while
+			Block b = ahead.poll();
+			b.await();
+			block = b.buf;
+			blockFirst = b.first;
+			blockPages = b.pages;
+		} // nextBlock
+
+		/***********************************************************************
+		 * Return compressed page p, decompressed out of the block of frames
+		 * read ahead, reading the next block when the frame is not in it
+		 * (compressed scans read frames from the file even in mapped mode).
+		 */
+		private Page frame(int p) throws IOException {
+			long pos = frameOff[p];
+			int len = FRAME_HEADER + frameCap[p];
+			if (block == null) {
+				block = ByteBuffer.allocate(Math.max(readAhead, FRAME_HEADER + pageSize)).limit(0);
+				unzipped = ByteBuffer.allocate(pageSize);
+				unzipper = new PageCompressor(pageSize, codec);
+			} // if
+			if (pos < blockPos || pos + len > blockPos + block.limit()) {
+				block.clear().limit((int) Math.min(block.capacity(), fileEnd - pos));
+				readFully(block, pos);
+				blockPos = pos;
+			} // if
+			unzip(block, (int) (pos - blockPos), unzipped, unzipper);
+			return new Page(unzipped);
+		} // frame
+
+	} // Scan class
+
+	/***************************************************************************
+	 * This inner class is a block of pages being read ahead of a scan.
+	 */
+	private class Block {
+
+		private final ByteBuffer buf;
+		private final int first, pages;
+		private final Future<?> read;
+
+		Block(ByteBuffer _buf, int _first, int _pages) {
+			buf = _buf;
+			first = _first;
+			pages = _pages;
+			buf.clear().limit(pages * pageSize);
+			read = READERS.submit(() -> {
+				readFully(buf, (long) first * pageSize);
+				return null;
+			});
+		} // constructor
+
+		/***********************************************************************
+		 * Wait until the block has been read.
+		 */
+		void await() throws IOException {
+			try {
+				read.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("FileList: interrupted while reading page " + first);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+				throw new IOException("FileList: unable to read page " + first, e.getCause());
+			} // try
+		} // await
+
+	} // Block class
+
+	/***************************************************************************
+	 * This inner class splits a scan of the pages [lo, hi) into halves by page
+	 * range.  The exact number of tuples in a range is known from a copy of
+	 * pageFirst taken by spliterator (with the list size as a last entry).
+	 */
+	private class PageSpliterator implements Spliterator<Comparable[]> {
+
+		private int lo;
+		private final int hi;
+		private final int[] first;
+		private Scan scan;
+
+		PageSpliterator(int _lo, int _hi, int[] _first) {
+			lo = _lo;
+			hi = _hi;
+			first = _first;
+		} // constructor
+
+		@Override
+		public boolean tryAdvance(java.util.function.Consumer<? super Comparable[]> action) {
+			if (scan == null) scan = new Scan(lo, hi, true);
+			if (! scan.hasNext()) return false;
+			action.accept(scan.next());
+			return true;
+		} // tryAdvance
+
+		@Override
+		public Spliterator<Comparable[]> trySplit() {
+			if (scan != null || hi - lo < 2) return null;
+			int mid = (lo + hi) >>> 1;
+			PageSpliterator prefix = new PageSpliterator(lo, mid, first);
+			lo = mid;
+			return prefix;
+		} // trySplit
+
+		@Override
+		public long estimateSize() {
+			if (scan != null) return Long.MAX_VALUE;
+			return first[hi] - first[lo];
+		} // estimateSize
+
+		@Override
+		public int characteristics() {
+			return ORDERED | NONNULL | (scan == null ? SIZED | SUBSIZED : 0);
+		} // characteristics
+
+	} // PageSpliterator class
+
+	///////////////////////////////////////////////////////////////////////////////////////////////////
+	// Conversion of DataType into Byte array and vice versa
+	/////////////////////////////////////////////////////////////////////////////////////////////////// ////////////////////////////////////////
+	//////////////////////////////////////////////////////////////////////////////////////
+
+	/*******************************************************************************
+	 * Convert Double type attribute into Byte array
+	 * 
+	 * @author Yash
+	 * @param Double
+	 *            value
+	 * @return byte array
+	 */
+
+	public static byte[] toByteArrayfromDouble(double value) {
+		byte[] bytes = new byte[8];
+		ByteBuffer.wrap(bytes).putDouble(value);
+		return bytes;
+	}// toByte
+
+	/**
+	 * Convert Double byte array to Double value
+	 * 
+	 * @author Yash
+	 * @param bytes
+	 *            for Double
+	 * @return Double Value
+	 */
+	public static double toDouble(byte[] bytes) {
+		return ByteBuffer.wrap(bytes).getDouble();
+	}// toDouble
+		///////////////////////////////////////////////////////////////////////////////////
+
+	// Float put
+	/**
+	 * @author Yash
+	 * @param float
+	 *            value to convert into byte array
+	 * @return byte[] of float value
+	 */
+	public static byte[] toByteArrayfromFloat(float value) {
+		byte[] bytes = new byte[4];
+		ByteBuffer.wrap(bytes).putFloat(value);
+		return bytes;
+	}
+
+	// Float get
+	/**
+	 * @author Yash
+	 * @param bytes[]
+	 *            to be converted into float
+	 * @return float value of byte[]
+	 */
+	public static float toFloat(byte[] bytes) {
+		return ByteBuffer.wrap(bytes).getFloat();
+	}
+	////////////////////////////////////////////////////////////////////////////////////
+
+	// Long put
+	/**
+	 * @author Yash
+	 * @param Long
+	 *            value to convert into byte array
+	 * @return byte[] of float Long
+	 */
+	public static byte[] toByteArrayfromLong(long value) {
+		byte[] bytes = new byte[8];
+		ByteBuffer.wrap(bytes).putLong(value);
+		return bytes;
+	}
+
+	// Long get
+	/**
+	 * @author Yash
+	 * @param bytes[]
+	 *            to be converted into Long
+	 * @return Long value of byte[]
+	 */
+	public static long toLong(byte[] bytes) {
+		return ByteBuffer.wrap(bytes).getLong();
+	}
+	///////////////////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * @author Yash
+	 * @param Int
+	 *            value to convert into byte array
+	 * @return byte[] of Int value
+	 */
+	public static byte[] toByteArrayfromInt(int value) {
+		byte[] bytes = new byte[4];
+		ByteBuffer.wrap(bytes).putInt(value);
+		return bytes;
+	}
+
+	/**
+	 * @author Yash
+	 * @param bytes[]
+	 *            to be converted into Long
+	 * @return Long value of byte[]
+	 */
+	public static int toInt(byte[] bytes) {
+		return ByteBuffer.wrap(bytes).getInt();
+	}
+	///////////////////////////////////////////////////////////////////////////////////////
+
+	// Put Short
+	/**
+	 * @author Yash
+	 * @param Short
+	 *            value to convert into byte array
+	 * @return byte[] of Short value
+	 */
+	public static byte[] toByteArrayfromShort(short value) {
+		byte[] bytes = new byte[2];
+		ByteBuffer.wrap(bytes).putShort(value);
+		return bytes;
+	}
+
+	// get Short
+	/**
+	 * @author Yash
+	 * @param bytes[]
+	 *            to be converted into Long
+	 * @return Long value of byte[]
+	 */
+	public static short toShort(byte[] bytes) {
+		return ByteBuffer.wrap(bytes).getShort();
+	}
+	//////////////////////////////////////////////////////////////////////////////////////////
+
+	// put Char
+	/**
+	 * @author Yash
+	 * @param Char
+	 *            value to convert into byte array
+	 * @return byte[] of char value
+	 */
+	public static byte[] toByteArrayfromChar(char value) {
+		byte[] bytes = new byte[2];
+		// System.out.println(bytes.length);
+		ByteBuffer.wrap(bytes).putChar(value);
+		// System.out.println(bytes.length);
+		return bytes;
+	}
+
+	// get Char
+	/**
+	 * @author Yash
+	 * @param bytes[]
+	 *            to be converted into char
+	 * @return char value of byte[]
+	 */
+	public static char toChar(byte[] bytes) {
+		return ByteBuffer.wrap(bytes).getChar();
+	}
+	/////////////////////////////////////////////////////////////////////////////////////////////////
+
+	// put String
+	/**
+	 * @author Yash
+	 * @param String
+	 *            value to convert into byte array
+	 * @return byte[] of String value
+	 */
+	public static byte[] toByteArrayfromString(String value) {
+
+		byte[] dst = new byte[str_bytearray_size]; // Can take String upto 127
+		// length
+		byte[] src = value.getBytes();// get the String Byte array
+		// System.out.println(Arrays.toString(src));
+
+		// get lengh of the String byte array, i.e. the length of "value" and
+		// save
+		// it to the first position of the main byte array
+		dst[0] = (byte) src.length;
+		System.arraycopy(src, 0, dst, 1, src.length);
+		// System.out.println("Byte array for string: " + Arrays.toString(dst));
+		return dst;
+	}
+
+	// get String
+	/**
+	 * @author Yash
+	 * @param bytes[]
+	 *            to be converted into String
+	 * @return String value of byte[]
+	 */
+	public static String toString(byte[] bytes) {
+		int temp_int = bytes[0];
+		// System.out.println(temp_int);
+		byte[] temp_byte = new byte[temp_int];
+		System.arraycopy(bytes, 1, temp_byte, 0, temp_int);
+		// System.out.println(Arrays.toString(temp_byte));
+		String str = new String(temp_byte);
+		// System.out.println("String is " + str);
+		return str;
+	}
+	
+	public static void main(String args[]) {
+		Table movieStar = new Table("movieStar", "name address gender birthdate", "String String Character String",
+				"name");
+		// System.out.println(get_recordsize(movieStar));
+		//
+		// String rand = "test.dat";
+		// try {
+		// RandomAccessFile file = new RandomAccessFile ( rand , "rw");
+		//
+		// } catch (FileNotFoundException e) {
+		// // TODO Auto-generated catch block
+		// e.printStackTrace();
+
+		// byte[] temp = toByteArrayfromString("YIwanna be bkhsa jasgdfkjh
+		// jhsgdf");
+		// toString(temp);
+		// toByteArrayfromInt(4);
+		// System.out.println(Arrays.toString(temp));
+		// System.out.println(toInt(temp));
+	}
+	//
+	// }
+
+	
+
+} // FileList class
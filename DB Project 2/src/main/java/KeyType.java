@@ -18,6 +18,11 @@ import static java.lang.System.out;
 public class KeyType
        implements Comparable <KeyType>, Serializable
 {
+    /** Version of the serialized form, kept at the value of the original class
+     *  so keys in tables saved by Java serialization can still be read
+     */
+    private static final long serialVersionUID = -7485454919318814815L;
+
     /** Array holding the attribute values for a particular key
      */
     private final Comparable [] key;
@@ -79,6 +84,15 @@ public class KeyType
         return sum;
     } // hashCode
 
+    /*************************************************************************************
+     * Return the attribute values making up the key.
+     * @return  the key values
+     */
+    public Comparable [] values ()
+    {
+        return key;
+    } // values
+
     /*************************************************************************************
      * Convert the key to a string.
      * @return  the string representation of the key
@@ -0,0 +1,412 @@
+/*******************************************************************************
+ * @file  Page.java
+ */
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/*******************************************************************************
+ * This class provides a slotted page view over a fixed size block of bytes.
+ * The page begins with a small header, followed by the slot directory that
+ * grows forward.  Records are placed at the end of the page and grow backward,
+ * so free space is always the gap between the slot directory and the records.
+ *
+ *     | header | slot 0 | slot 1 | ... -->      free      <-- ... | rec 1 | rec 0 |
+ *
+ * Header layout (all fields are unsigned shorts):
+ *     0: number of slots, 2: start of the record area, 4: live records,
+ *     6: bytes held by deleted records (garbage)
+ * Slot layout (unsigned shorts): 0: record offset, 2: record length
+ *
+ * Deleting a record leaves a tombstone (a slot with offset 0), so the slot
+ * numbers of the other records never change; the slot is reused by a later
+ * insert.  The deleted bytes are reclaimed by compact, which slides the live
+ * records together at the end of the page.
+ */
+public class Page
+{
+	/**
+	 * The default page size in bytes.
+	 */
+	public static final int DEFAULT_SIZE = 4096;
+
+	/**
+	 * The largest page size supported (offsets are stored as unsigned shorts).
+	 */
+	public static final int MAX_SIZE = 32768;
+
+	/**
+	 * The number of bytes in the page header.
+	 */
+	public static final int HEADER_SIZE = 8;
+
+	/**
+	 * The number of bytes in each slot directory entry.
+	 */
+	public static final int SLOT_SIZE = 4;
+
+	/**
+	 * Byte positions of the header fields.
+	 */
+	private static final int N_SLOTS = 0, FREE_END = 2, N_LIVE = 4, GARBAGE = 6;
+
+	/**
+	 * The bytes making up this page.
+	 */
+	private final ByteBuffer buf;
+
+	/**
+	 * The size of this page in bytes.
+	 */
+	private final int pageSize;
+
+	/***************************************************************************
+	 * Construct a page view over an existing (already formatted) buffer.  The
+	 * page occupies buf [0, buf.capacity ()).
+	 *
+	 * @param _buf  the buffer holding the page
+	 */
+	public Page (ByteBuffer _buf)
+	{
+		buf      = _buf;
+		pageSize = _buf.capacity ();
+	} // constructor
+
+	/***************************************************************************
+	 * Format the given buffer as an empty page and return a view over it.
+	 *
+	 * @param buf  the buffer to format
+	 * @return  the empty page
+	 */
+	public static Page format (ByteBuffer buf)
+	{
+		Page p = new Page (buf);
+		p.putU16 (N_SLOTS, 0);
+		p.putU16 (FREE_END, p.pageSize);
+		p.putU16 (N_LIVE, 0);
+		p.putU16 (GARBAGE, 0);
+		return p;
+	} // format
+
+	/***************************************************************************
+	 * Check that the given page size can be used for slotted pages.
+	 *
+	 * @param size  the page size in bytes
+	 * @return  whether the size is supported
+	 */
+	public static boolean validSize (int size)
+	{
+		return size >= 512 && size <= MAX_SIZE && Integer.bitCount (size) == 1;
+	} // validSize
+
+	/***************************************************************************
+	 * Return the number of records that fit into an empty page when every
+	 * record has the given length.
+	 *
+	 * @param pageSize    the page size in bytes
+	 * @param recordSize  the record length in bytes
+	 * @return  the number of records per page
+	 */
+	public static int capacity (int pageSize, int recordSize)
+	{
+		return (pageSize - HEADER_SIZE) / (recordSize + SLOT_SIZE);
+	} // capacity
+
+	/***************************************************************************
+	 * Return the buffer holding this page.
+	 *
+	 * @return  the page buffer
+	 */
+	public ByteBuffer buffer ()
+	{
+		return buf;
+	} // buffer
+
+	/***************************************************************************
+	 * Return the number of slots in the slot directory.
+	 *
+	 * @return  the slot count
+	 */
+	public int slotCount ()
+	{
+		return getU16 (N_SLOTS);
+	} // slotCount
+
+	/***************************************************************************
+	 * Return the number of live records stored in this page.
+	 *
+	 * @return  the live record count
+	 */
+	public int liveCount ()
+	{
+		return getU16 (N_LIVE);
+	} // liveCount
+
+	/***************************************************************************
+	 * Return the number of contiguous free bytes between the slot directory
+	 * and the record area.
+	 *
+	 * @return  the free space in bytes
+	 */
+	public int freeSpace ()
+	{
+		return freeEnd () - (HEADER_SIZE + slotCount () * SLOT_SIZE);
+	} // freeSpace
+
+	/***************************************************************************
+	 * Return the number of bytes held by deleted records that compact would
+	 * give back.
+	 *
+	 * @return  the garbage in bytes
+	 */
+	public int garbage ()
+	{
+		return getU16 (GARBAGE);
+	} // garbage
+
+	/***************************************************************************
+	 * Return the free space the page would have after compaction.
+	 *
+	 * @return  the free and reclaimable space in bytes
+	 */
+	public int room ()
+	{
+		return freeSpace () + garbage ();
+	} // room
+
+	/***************************************************************************
+	 * Determine whether a record of the given length (plus its slot) fits.
+	 *
+	 * @param len  the record length in bytes
+	 * @return  whether the record fits
+	 */
+	public boolean fits (int len)
+	{
+		return freeSpace () >= len + SLOT_SIZE;
+	} // fits
+
+	/***************************************************************************
+	 * Insert the record into this page.
+	 *
+	 * @param record  the packed record
+	 * @return  the slot number used, or -1 if the page is full
+	 */
+	public int insert (byte [] record)
+	{
+		int slot = allocate (record.length);
+		if (slot >= 0) buf.put (offset (slot), record);
+		return slot;
+	} // insert
+
+	/***************************************************************************
+	 * Return the offset that the next record of the given length will get from
+	 * allocate, so the record can be written in place before it is added.
+	 *
+	 * @param len  the record length in bytes
+	 * @return  the offset of the next record
+	 */
+	public int nextOffset (int len)
+	{
+		return freeEnd () - len;
+	} // nextOffset
+
+	/***************************************************************************
+	 * Reserve space for a record of the given length and give it a slot,
+	 * reusing the first tombstone if there is one.  The caller is responsible
+	 * for writing the record bytes at offset (slot).
+	 *
+	 * @param len  the record length in bytes
+	 * @return  the slot number used, or -1 if the page is full
+	 */
+	public int allocate (int len)
+	{
+		int n    = slotCount ();
+		int slot = n;
+		if (liveCount () < n) {
+			for (slot = 0; isLive (slot); slot++) ;          // find the first tombstone
+		} // if
+		if (freeSpace () < len + (slot == n ? SLOT_SIZE : 0)) return -1;
+		int off = freeEnd () - len;
+		putU16 (FREE_END, off);
+		putU16 (slotPos (slot), off);
+		putU16 (slotPos (slot) + 2, len);
+		if (slot == n) putU16 (N_SLOTS, n + 1);
+		putU16 (N_LIVE, liveCount () + 1);
+		return slot;
+	} // allocate
+
+	/***************************************************************************
+	 * Replace the record in the slot, keeping its slot number.  A record that
+	 * is no longer than the old one is written in place; a longer one is
+	 * written into the free space (compacting the page if needed).
+	 *
+	 * @param slot    the slot number of a live record
+	 * @param record  the new packed record
+	 * @return  whether the record fit in this page
+	 */
+	public boolean update (int slot, byte [] record)
+	{
+		int old = length (slot);
+		if (record.length <= old) {
+			buf.put (offset (slot), record);
+			putU16 (slotPos (slot) + 2, record.length);
+			putU16 (GARBAGE, garbage () + old - record.length);
+			return true;
+		} // if
+		if (freeSpace () < record.length && room () >= record.length) compact ();
+		if (freeSpace () < record.length) return false;
+		int off = freeEnd () - record.length;
+		buf.put (off, record);
+		putU16 (FREE_END, off);
+		putU16 (slotPos (slot), off);
+		putU16 (slotPos (slot) + 2, record.length);
+		putU16 (GARBAGE, garbage () + old);
+		return true;
+	} // update
+
+	/***************************************************************************
+	 * Delete the record in the slot, leaving a tombstone.  Tombstones at the
+	 * end of the slot directory are dropped, and the bytes of a record at the
+	 * start of the record area go straight back to the free space.
+	 *
+	 * @param slot  the slot number
+	 * @return  whether a live record was deleted
+	 */
+	public boolean delete (int slot)
+	{
+		if (slot < 0 || slot >= slotCount () || ! isLive (slot)) return false;
+		int off = offset (slot), len = length (slot);
+		if (off == freeEnd ()) putU16 (FREE_END, off + len);
+		else putU16 (GARBAGE, garbage () + len);
+		putU16 (slotPos (slot), 0);
+		putU16 (slotPos (slot) + 2, 0);
+		putU16 (N_LIVE, liveCount () - 1);
+		trimSlots ();
+		return true;
+	} // delete
+
+	/***************************************************************************
+	 * Slide the live records together at the end of the page, so that all the
+	 * garbage becomes free space, and drop trailing tombstones.  Slot numbers
+	 * do not change.
+	 *
+	 * @return  the number of bytes added to the free space
+	 */
+	public int compact ()
+	{
+		int before = freeSpace ();
+		int n = slotCount (), live = 0;
+		long [] bySpot = new long [n];                  // (offset, slot) of each live record
+		for (int slot = 0; slot < n; slot++) {
+			if (isLive (slot)) bySpot [live++] = (long) offset (slot) << 16 | slot;
+		} // for
+		Arrays.sort (bySpot, 0, live);
+
+		int end = pageSize;
+		for (int k = live - 1; k >= 0; k--) {           // highest offset first, so moves never overwrite
+			int slot = (int) (bySpot [k] & 0xFFFF);
+			int off  = (int) (bySpot [k] >>> 16);
+			int len  = length (slot);
+			end -= len;
+			if (end != off) buf.put (end, buf, off, len);
+			putU16 (slotPos (slot), end);
+		} // for
+		putU16 (FREE_END, end);
+		putU16 (GARBAGE, 0);
+		trimSlots ();
+		return freeSpace () - before;
+	} // compact
+
+	/***************************************************************************
+	 * Determine whether the slot holds a live record (not a tombstone).
+	 *
+	 * @param slot  the slot number
+	 * @return  whether the record is live
+	 */
+	public boolean isLive (int slot)
+	{
+		return offset (slot) != 0;
+	} // isLive
+
+	/***************************************************************************
+	 * Return the byte offset (within the page) of the record in the slot.
+	 *
+	 * @param slot  the slot number
+	 * @return  the record offset
+	 */
+	public int offset (int slot)
+	{
+		return getU16 (slotPos (slot));
+	} // offset
+
+	/***************************************************************************
+	 * Return the length of the record in the slot.
+	 *
+	 * @param slot  the slot number
+	 * @return  the record length in bytes
+	 */
+	public int length (int slot)
+	{
+		return getU16 (slotPos (slot) + 2);
+	} // length
+
+	/***************************************************************************
+	 * Copy the record in the slot out of the page.
+	 *
+	 * @param slot  the slot number
+	 * @return  the packed record
+	 */
+	public byte [] get (int slot)
+	{
+		byte [] b = new byte [length (slot)];
+		buf.get (offset (slot), b);
+		return b;
+	} // get
+
+	// ------------------------------------------------------------------------
+	// Private Methods
+	// ------------------------------------------------------------------------
+
+	/***************************************************************************
+	 * Return the start of the record area.
+	 */
+	private int freeEnd ()
+	{
+		return getU16 (FREE_END);
+	} // freeEnd
+
+	/***************************************************************************
+	 * Drop the tombstones at the end of the slot directory.
+	 */
+	private void trimSlots ()
+	{
+		int n = slotCount ();
+		while (n > 0 && ! isLive (n - 1)) n--;
+		putU16 (N_SLOTS, n);
+	} // trimSlots
+
+	/***************************************************************************
+	 * Return the position of the given slot's directory entry.
+	 */
+	private static int slotPos (int slot)
+	{
+		return HEADER_SIZE + slot * SLOT_SIZE;
+	} // slotPos
+
+	/***************************************************************************
+	 * Read an unsigned short at the given position.
+	 */
+	private int getU16 (int pos)
+	{
+		return buf.getShort (pos) & 0xFFFF;
+	} // getU16
+
+	/***************************************************************************
+	 * Write an unsigned short at the given position.
+	 */
+	private void putU16 (int pos, int value)
+	{
+		buf.putShort (pos, (short) value);
+	} // putU16
+
+} // Page class
@@ -0,0 +1,413 @@
+/*******************************************************************************
+ * @file  PageCompressor.java
+ */
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/*******************************************************************************
+ * This class compresses the slotted pages of one table (schema) for storage
+ * on disk.  A page is compressed in two steps:
+ *
+ * 1. Column transform.  The live records are taken apart column by column:
+ *    the values of each numeric column are stored together, and each String
+ *    column is stored as runs of equal values (run length encoding), each run
+ *    naming its value by a code into a per-page dictionary, so a repetitive
+ *    column such as studioName or genre costs a few bytes per run.
+ * 2. LZ compression.  The transformed bytes are compressed with a small LZ77
+ *    codec in the style of LZ4 (4 byte hash, 64 KB window), which is fast to
+ *    decompress and picks up what the transform leaves (e.g., shared prefixes).
+ *
+ * Decompression rebuilds a compacted page with the same slots (tombstones
+ * included), so record ids survive; only the garbage of deleted records is
+ * lost.  A compressor keeps scratch arrays, so each thread needs its own.
+ */
+public class PageCompressor
+{
+	/**
+	 * Parameters of the LZ codec: hash table size (log 2), shortest match and
+	 * farthest match distance.
+	 */
+	private static final int HASH_BITS  = 12;
+	private static final int MIN_MATCH  = 4;
+	private static final int MAX_OFFSET = 0xFFFF;
+
+	/**
+	 * The size of the pages in bytes.
+	 */
+	private final int pageSize;
+
+	/**
+	 * The codec describing the layout of the records.
+	 */
+	private final TupleCodec codec;
+
+	/**
+	 * The numeric and the String columns.
+	 */
+	private final int [] fixedCols, stringCols;
+
+	/**
+	 * Scratch space: a copy of the page being compressed, the transformed
+	 * page and the compressed input being expanded.
+	 */
+	private final byte [] raw, col, in;
+
+	/***************************************************************************
+	 * Construct a compressor for pages holding records of the given codec.
+	 *
+	 * @param _pageSize  the page size in bytes
+	 * @param _codec     the codec used to encode the records
+	 */
+	public PageCompressor (int _pageSize, TupleCodec _codec)
+	{
+		pageSize = _pageSize;
+		codec    = _codec;
+		int nStrings = 0;
+		for (int j = 0; j < codec.columns (); j++) if (codec.isString (j)) nStrings++;
+		fixedCols  = new int [codec.columns () - nStrings];
+		stringCols = new int [nStrings];
+		for (int j = 0, f = 0, s = 0; j < codec.columns (); j++) {
+			if (codec.isString (j)) stringCols [s++] = j;
+			else fixedCols [f++] = j;
+		} // for
+		raw = new byte [pageSize];
+		col = new byte [4 * pageSize + 1024];           // run and length headers can outgrow the page
+		in  = new byte [pageSize];
+	} // constructor
+
+	/***************************************************************************
+	 * Compress the page into out starting at position off.
+	 *
+	 * @param page  the page to compress
+	 * @param out   the array receiving the compressed bytes (room for pageSize)
+	 * @param off   the position in out to start at
+	 * @return  the compressed length, or -1 if it would not be smaller than
+	 *          the page (the caller should store the page as is)
+	 */
+	public int compress (ByteBuffer page, byte [] out, int off)
+	{
+		page.get (0, raw, 0, pageSize);
+		int n = transform ();
+		return lzCompress (col, n, out, off, pageSize - 1);
+	} // compress
+
+	/***************************************************************************
+	 * Decompress len bytes starting at position off of src into the page.
+	 *
+	 * @param src   the buffer holding the compressed page
+	 * @param off   the position of the compressed bytes in src
+	 * @param len   the compressed length
+	 * @param page  the buffer receiving the page (capacity pageSize)
+	 */
+	public void decompress (ByteBuffer src, int off, int len, ByteBuffer page)
+	{
+		src.get (off, in, 0, len);
+		lzExpand (in, 0, len, col);
+		rebuild (page);
+	} // decompress
+
+	// ------------------------------------------------------------------------
+	// Column transform
+	// ------------------------------------------------------------------------
+
+	/***************************************************************************
+	 * Transform the page in raw into col and return the transformed length.
+	 * Layout: slot count, tombstone bitmap, each numeric column's values, then
+	 * each String column as (run length, code [, length, bytes]) runs, where a
+	 * code equal to the dictionary size introduces a new value.
+	 */
+	private int transform ()
+	{
+		Page page = new Page (ByteBuffer.wrap (raw));
+		int n   = page.slotCount ();
+		int pos = putU16 (col, 0, n);
+		int bitmap = pos;
+		pos += (n + 7) / 8;
+		Arrays.fill (col, bitmap, pos, (byte) 0);
+
+		int [] rec = new int [n];                       // offsets of the live records
+		int nLive  = 0;
+		for (int slot = 0; slot < n; slot++) {
+			if (! page.isLive (slot)) continue;
+			col [bitmap + (slot >> 3)] |= 1 << (slot & 7);
+			rec [nLive++] = page.offset (slot);
+		} // for
+
+		for (int j : fixedCols) {
+			int o = codec.offset (j), s = codec.size (j);
+			for (int k = 0; k < nLive; k++, pos += s) System.arraycopy (raw, rec [k] + o, col, pos, s);
+		} // for
+
+		Map <String, Integer> dict = new HashMap <> ();
+		for (int m = 0; m < stringCols.length; m++) {
+			dict.clear ();
+			int runStart = 0, runLen = 0, run = 0;
+			for (int k = 0; k < nLive; k++) {
+				int start = m == 0 ? codec.fixedSize () : getU16 (raw, rec [k] + codec.offset (stringCols [m - 1]));
+				int len   = getU16 (raw, rec [k] + codec.offset (stringCols [m])) - start;
+				start    += rec [k];
+				if (run > 0 && Arrays.equals (raw, runStart, runStart + runLen, raw, start, start + len)) {
+					run++;
+					continue;
+				} // if
+				if (run > 0) pos = putRun (pos, run, runStart, runLen, dict);
+				runStart = start;
+				runLen   = len;
+				run      = 1;
+			} // for
+			if (run > 0) pos = putRun (pos, run, runStart, runLen, dict);
+		} // for
+		return pos;
+	} // transform
+
+	/***************************************************************************
+	 * Write a run of equal String values into col, adding the value to the
+	 * dictionary when it is new, and return the position after the run.
+	 */
+	private int putRun (int pos, int run, int start, int len, Map <String, Integer> dict)
+	{
+		pos = putVar (col, pos, run);
+		String key = new String (raw, start, len, StandardCharsets.ISO_8859_1);   // one char per byte
+		Integer code = dict.get (key);
+		if (code != null) return putVar (col, pos, code);
+		pos = putVar (col, pos, dict.size ());
+		dict.put (key, dict.size ());
+		pos = putVar (col, pos, len);
+		System.arraycopy (raw, start, col, pos, len);
+		return pos + len;
+	} // putRun
+
+	/***************************************************************************
+	 * Rebuild the page from the transformed bytes in col.
+	 */
+	private void rebuild (ByteBuffer buf)
+	{
+		int n      = getU16 (col, 0);
+		int bitmap = 2;
+		int pos    = bitmap + (n + 7) / 8;
+		int nLive  = 0;
+		for (int slot = 0; slot < n; slot++) if (live (bitmap, slot)) nLive++;
+
+		int [] fixedPos = new int [fixedCols.length];   // where each numeric column starts
+		for (int f = 0; f < fixedCols.length; f++) {
+			fixedPos [f] = pos;
+			pos += nLive * codec.size (fixedCols [f]);
+		} // for
+
+		int [][] strPos = new int [stringCols.length][nLive], strLen = new int [stringCols.length][nLive];
+		int [] dictPos = new int [nLive], dictLen = new int [nLive];
+		int [] v = new int [1];                         // receives each varint read
+		for (int m = 0; m < stringCols.length; m++) {
+			int nDict = 0;
+			for (int k = 0; k < nLive; ) {
+				pos = getVar (col, pos, v);
+				int run = v [0];
+				pos = getVar (col, pos, v);
+				int code = v [0];
+				if (code == nDict) {
+					pos = getVar (col, pos, v);
+					dictPos [nDict] = pos;
+					dictLen [nDict++] = v [0];
+					pos += v [0];
+				} // if
+				for (int end = k + run; k < end; k++) {
+					strPos [m][k] = dictPos [code];
+					strLen [m][k] = dictLen [code];
+				} // for
+			} // for
+		} // for
+
+		Page page = Page.format (buf);
+		for (int slot = 0, k = 0; slot < n; slot++) {
+			if (! live (bitmap, slot)) {
+				page.allocate (0);                          // placeholder, deleted below
+				continue;
+			} // if
+			int len = codec.fixedSize ();
+			for (int m = 0; m < stringCols.length; m++) len += strLen [m][k];
+			int off = page.offset (page.allocate (len));
+			for (int f = 0; f < fixedCols.length; f++) {
+				int s = codec.size (fixedCols [f]);
+				buf.put (off + codec.offset (fixedCols [f]), col, fixedPos [f] + k * s, s);
+			} // for
+			int end = codec.fixedSize ();
+			for (int m = 0; m < stringCols.length; m++) {
+				buf.put (off + end, col, strPos [m][k], strLen [m][k]);
+				end += strLen [m][k];
+				buf.putShort (off + codec.offset (stringCols [m]), (short) end);
+			} // for
+			k++;
+		} // for
+		for (int slot = n - 1; slot >= 0; slot--) if (! live (bitmap, slot)) page.delete (slot);
+	} // rebuild
+
+	/***************************************************************************
+	 * Return whether the slot is marked live in the bitmap of col.
+	 */
+	private boolean live (int bitmap, int slot)
+	{
+		return (col [bitmap + (slot >> 3)] & 1 << (slot & 7)) != 0;
+	} // live
+
+	// ------------------------------------------------------------------------
+	// LZ codec
+	// ------------------------------------------------------------------------
+
+	/***************************************************************************
+	 * Compress the first n bytes of src into dst starting at off.  The output
+	 * is a sequence of (token, literals, match) sequences: the token holds the
+	 * literal count and the match length - 4 (15 means more length bytes
+	 * follow), and the match is a 2 byte distance back into the output.  The
+	 * last sequence has literals only.
+	 *
+	 * @param src    the bytes to compress
+	 * @param n      the number of bytes to compress
+	 * @param dst    the array receiving the compressed bytes
+	 * @param off    the position in dst to start at
+	 * @param limit  the most bytes to produce
+	 * @return  the compressed length, or -1 if it would exceed limit
+	 */
+	static int lzCompress (byte [] src, int n, byte [] dst, int off, int limit)
+	{
+		int [] table = new int [1 << HASH_BITS];        // last position + 1 of each hash
+		int ip = 0, anchor = 0, op = off, end = off + limit;
+		while (ip + MIN_MATCH <= n) {
+			int h   = hash (src, ip);
+			int ref = table [h] - 1;
+			table [h] = ip + 1;
+			if (ref < 0 || ip - ref > MAX_OFFSET || ! Arrays.equals (src, ref, ref + MIN_MATCH, src, ip, ip + MIN_MATCH)) {
+				ip++;
+				continue;
+			} // if
+			int len = MIN_MATCH;
+			while (ip + len < n && src [ref + len] == src [ip + len]) len++;
+			op = putSequence (src, anchor, ip - anchor, ip - ref, len, dst, op, end);
+			if (op < 0) return -1;
+			ip    += len;
+			anchor = ip;
+		} // while
+		op = putSequence (src, anchor, n - anchor, 0, 0, dst, op, end);
+		return op < 0 ? -1 : op - off;
+	} // lzCompress
+
+	/***************************************************************************
+	 * Expand len compressed bytes starting at off of src into dst.
+	 *
+	 * @param src  the compressed bytes
+	 * @param off  the position of the compressed bytes in src
+	 * @param len  the compressed length
+	 * @param dst  the array receiving the original bytes
+	 * @return  the original length
+	 */
+	static int lzExpand (byte [] src, int off, int len, byte [] dst)
+	{
+		int ip = off, end = off + len, op = 0;
+		for ( ; ; ) {
+			int token = src [ip++] & 0xFF;
+			int lit   = token >>> 4;
+			if (lit == 15) {
+				int b;
+				do { b = src [ip++] & 0xFF; lit += b; } while (b == 255);
+			} // if
+			System.arraycopy (src, ip, dst, op, lit);
+			ip += lit;
+			op += lit;
+			if (ip >= end) return op;
+
+			int dist = (src [ip] & 0xFF) | (src [ip + 1] & 0xFF) << 8;
+			ip += 2;
+			int m = token & 15;
+			if (m == 15) {
+				int b;
+				do { b = src [ip++] & 0xFF; m += b; } while (b == 255);
+			} // if
+			for (int k = m + MIN_MATCH; k > 0; k--, op++) dst [op] = dst [op - dist];   // may overlap
+		} // for
+	} // lzExpand
+
+	/***************************************************************************
+	 * Write one sequence (literals plus an optional match) at op and return
+	 * the position after it, or -1 if it would pass end.
+	 */
+	private static int putSequence (byte [] src, int from, int lit, int dist, int matchLen, byte [] dst, int op, int end)
+	{
+		int m = matchLen == 0 ? 0 : matchLen - MIN_MATCH;
+		if (op + lit + lit / 255 + m / 255 + 6 > end) return -1;
+		int token = op++;
+		dst [token] = (byte) (Math.min (lit, 15) << 4 | Math.min (m, 15));
+		if (lit >= 15) op = putLength (dst, op, lit - 15);
+		System.arraycopy (src, from, dst, op, lit);
+		op += lit;
+		if (matchLen == 0) return op;                   // the last sequence
+		dst [op++] = (byte) dist;
+		dst [op++] = (byte) (dist >>> 8);
+		if (m >= 15) op = putLength (dst, op, m - 15);
+		return op;
+	} // putSequence
+
+	/***************************************************************************
+	 * Write the rest of a length as bytes of 255 ending with a smaller byte.
+	 */
+	private static int putLength (byte [] dst, int op, int v)
+	{
+		for ( ; v >= 255; v -= 255) dst [op++] = (byte) 255;
+		dst [op++] = (byte) v;
+		return op;
+	} // putLength
+
+	/***************************************************************************
+	 * Hash the 4 bytes at position i.
+	 */
+	private static int hash (byte [] b, int i)
+	{
+		int v = (b [i] & 0xFF) | (b [i + 1] & 0xFF) << 8 | (b [i + 2] & 0xFF) << 16 | b [i + 3] << 24;
+		return v * 0x9E3779B1 >>> (32 - HASH_BITS);
+	} // hash
+
+	// ------------------------------------------------------------------------
+	// Byte helpers
+	// ------------------------------------------------------------------------
+
+	/***************************************************************************
+	 * Read/write an unsigned short (big endian, as ByteBuffer does).
+	 */
+	private static int getU16 (byte [] b, int pos)
+	{
+		return (b [pos] & 0xFF) << 8 | b [pos + 1] & 0xFF;
+	} // getU16
+
+	private static int putU16 (byte [] b, int pos, int v)
+	{
+		b [pos]     = (byte) (v >>> 8);
+		b [pos + 1] = (byte) v;
+		return pos + 2;
+	} // putU16
+
+	/***************************************************************************
+	 * Read/write an unsigned variable length int (7 bits per byte).  getVar
+	 * stores the value in v [0] and returns the position after it.
+	 */
+	private static int getVar (byte [] b, int pos, int [] v)
+	{
+		int x = 0, shift = 0, c;
+		do {
+			c = b [pos++];
+			x |= (c & 0x7F) << shift;
+			shift += 7;
+		} while (c < 0);
+		v [0] = x;
+		return pos;
+	} // getVar
+
+	private static int putVar (byte [] b, int pos, int v)
+	{
+		for ( ; v >= 0x80; v >>>= 7) b [pos++] = (byte) (v | 0x80);
+		b [pos++] = (byte) v;
+		return pos;
+	} // putVar
+
+} // PageCompressor class
@@ -0,0 +1,228 @@
+/*******************************************************************************
+ * @file  RidMap.java
+ */
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/*******************************************************************************
+ * This class is the index of a disk resident table.  It maps keys to tuples
+ * like the index of an in-memory table, but it only keeps the record id of
+ * each tuple in an underlying map (e.g., a BpTreeMap <KeyType, Long>) and
+ * fetches the tuple from the table's record store (a FileList, or a
+ * TupleArena for an off-heap table) when it is asked for, so a key lookup
+ * costs one index probe plus one record read.  Putting a tuple stores it in
+ * the store (replacing the old tuple for the key), and removing a key deletes
+ * its record.  Over a BpTreeMap, a range of keys is read with a cursor, which
+ * costs O(log n + k) node visits plus a record read for each of the k keys.
+ */
+public class RidMap
+       extends AbstractMap <KeyType, Comparable []>
+{
+	/***************************************************************************
+	 * This interface is implemented by the stores that keep tuples as records
+	 * under record ids.
+	 */
+	public interface Store
+	{
+		/** Add the tuple and return its record id (-1 if it cannot be stored). */
+		long insert (Comparable [] tuple);
+
+		/** Return the tuple with the given record id (null if there is none). */
+		Comparable [] fetch (long rid);
+
+		/** Replace the tuple and return its (possibly new) record id (-1 if it fails). */
+		long update (long rid, Comparable [] tuple);
+
+		/** Delete the record and return whether it existed. */
+		boolean delete (long rid);
+	} // Store interface
+
+	/**
+	 * The store holding the tuples.
+	 */
+	private final Store file;
+
+	/**
+	 * The map from keys to record ids.
+	 */
+	private final Map <KeyType, Long> rids;
+
+	/***************************************************************************
+	 * Construct an index over the tuples in the store.
+	 *
+	 * @param _file  the store (e.g., file) holding the tuples
+	 * @param _rids  the (empty) map to keep the record ids in
+	 */
+	public RidMap (Store _file, Map <KeyType, Long> _rids)
+	{
+		file = _file;
+		rids = _rids;
+	} // constructor
+
+	/***************************************************************************
+	 * Return the tuple with the given key, reading it from the file.
+	 *
+	 * @param key  the key to look up
+	 * @return  the tuple, or null if there is none
+	 */
+	public Comparable [] get (Object key)
+	{
+		Long rid = rids.get (key);
+		return rid == null ? null : file.fetch (rid);
+	} // get
+
+	/***************************************************************************
+	 * Return the record id of the tuple with the given key.
+	 *
+	 * @param key  the key to look up
+	 * @return  the record id, or -1 if there is none
+	 */
+	public long rid (Object key)
+	{
+		Long rid = rids.get (key);
+		return rid == null ? -1 : rid;
+	} // rid
+
+	/***************************************************************************
+	 * Determine whether there is a tuple with the given key (without reading
+	 * the tuple).
+	 *
+	 * @param key  the key to look up
+	 * @return  whether the key is in the index
+	 */
+	public boolean containsKey (Object key)
+	{
+		return rids.get (key) != null;
+	} // containsKey
+
+	/***************************************************************************
+	 * Store the tuple in the file under the given key, replacing the tuple
+	 * that had the key.
+	 *
+	 * @param key    the key
+	 * @param tuple  the tuple
+	 * @return  the old tuple, or null if there was none (or the tuple could
+	 *          not be stored)
+	 */
+	public Comparable [] put (KeyType key, Comparable [] tuple)
+	{
+		Long old = rids.get (key);
+		if (old == null) {
+			long rid = file.insert (tuple);
+			if (rid >= 0) rids.put (key, rid);
+			return null;
+		} // if
+		Comparable [] before = file.fetch (old);
+		long rid = file.update (old, tuple);
+		if (rid >= 0 && rid != old) rids.put (key, rid);
+		return before;
+	} // put
+
+	/***************************************************************************
+	 * Record that the tuple with the given key is already stored under record
+	 * id rid (used when rebuilding the index from the file).
+	 *
+	 * @param key  the key
+	 * @param rid  the record id
+	 */
+	public void putRid (KeyType key, long rid)
+	{
+		rids.put (key, rid);
+	} // putRid
+
+	/***************************************************************************
+	 * Remove the key and delete its tuple from the file.
+	 *
+	 * @param key  the key to remove
+	 * @return  the removed tuple, or null if there was none
+	 */
+	public Comparable [] remove (Object key)
+	{
+		Long rid = rids.remove (key);
+		if (rid == null) return null;
+		Comparable [] tuple = file.fetch (rid);
+		file.delete (rid);
+		return tuple;
+	} // remove
+
+	/***************************************************************************
+	 * Return the number of keys in the index.
+	 *
+	 * @return  the number of keys
+	 */
+	public int size ()
+	{
+		return rids.size ();
+	} // size
+
+	/***************************************************************************
+	 * Return a cursor over the entries whose keys are in [lo, hi], in key
+	 * order, or null if the record ids are not kept in a BpTreeMap.
+	 *
+	 * @param lo  the smallest key in the range
+	 * @param hi  the largest key in the range
+	 * @return  the cursor, or null
+	 */
+	@SuppressWarnings("unchecked")
+	public Cursor cursor (KeyType lo, KeyType hi)
+	{
+		if (! (rids instanceof BpTreeMap)) return null;
+		return new Cursor (((BpTreeMap <KeyType, Long>) rids).cursor (lo, true, hi, true, false));
+	} // cursor
+
+	/***************************************************************************
+	 * This inner class is a cursor over a range of the index (see cursor): it
+	 * walks the record ids with a BpTreeMap cursor and reads each tuple only
+	 * when it is asked for.  The index must not be changed while it is in use.
+	 */
+	public class Cursor
+	{
+		private final BpTreeMap <KeyType, Long>.Cursor c;
+
+		private Cursor (BpTreeMap <KeyType, Long>.Cursor _c) { c = _c; }
+
+		/** Move to the next entry of the range and return whether there is one. */
+		public boolean next () { return c.next (); }
+
+		/** Return the key of the current entry. */
+		public KeyType key () { return c.key (); }
+
+		/** Return the record id of the current entry. */
+		public long rid () { return c.value (); }
+
+		/** Return the tuple of the current entry, reading it from the store. */
+		public Comparable [] value () { return file.fetch (c.value ()); }
+	} // Cursor class
+
+	/***************************************************************************
+	 * Return a view of the entries whose tuples are read as the entries are
+	 * visited.
+	 *
+	 * @return  the set of key-tuple entries
+	 */
+	public Set <Map.Entry <KeyType, Comparable []>> entrySet ()
+	{
+		return new AbstractSet <Map.Entry <KeyType, Comparable []>> () {
+			public int size () { return rids.size (); }
+
+			public Iterator <Map.Entry <KeyType, Comparable []>> iterator ()
+			{
+				Iterator <Map.Entry <KeyType, Long>> it = rids.entrySet ().iterator ();
+				return new Iterator <Map.Entry <KeyType, Comparable []>> () {
+					public boolean hasNext () { return it.hasNext (); }
+
+					public Map.Entry <KeyType, Comparable []> next ()
+					{
+						Map.Entry <KeyType, Long> e = it.next ();
+						return new SimpleImmutableEntry <> (e.getKey (), file.fetch (e.getValue ()));
+					} // next
+				};
+			} // iterator
+		};
+	} // entrySet
+
+} // RidMap class
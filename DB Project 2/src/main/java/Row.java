@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * @file  Row.java
+ */
+
+/*******************************************************************************
+ * This interface gives access to the values of one row of a table by column
+ * position.  Scans (see Table.scan and Table.where) pass the same Row object
+ * for every row, moved from row to row, so a row must not be kept after the
+ * call it was passed to returns; call toArray to keep its values.  Over an
+ * off-heap table (see TupleArena) the values are read straight out of the
+ * encoded record, and the primitive getters do not box them.
+ */
+public interface Row
+{
+	/***************************************************************************
+	 * Return the value of column j.
+	 *
+	 * @param j  the column position
+	 * @return  the value
+	 */
+	Comparable get (int j);
+
+	/***************************************************************************
+	 * Return the value of column j, which must be an Integer, Long, Double or
+	 * String column respectively.
+	 *
+	 * @param j  the column position
+	 * @return  the value
+	 */
+	default int getInt (int j) { return (Integer) get (j); }
+	default long getLong (int j) { return (Long) get (j); }
+	default double getDouble (int j) { return (Double) get (j); }
+	default String getString (int j) { return (String) get (j); }
+
+	/***************************************************************************
+	 * Return the values of the row as a new tuple.
+	 *
+	 * @return  the tuple
+	 */
+	Comparable [] toArray ();
+
+	/***************************************************************************
+	 * This interface is implemented by flyweight rows that move through the
+	 * rows of a store.
+	 */
+	interface Cursor
+	      extends Row
+	{
+		/** Move to the next live row and return whether there is one. */
+		boolean next ();
+
+		/** Return the record id of the current row. */
+		long rid ();
+	} // Cursor interface
+
+	/***************************************************************************
+	 * This interface is implemented by stores whose rows can be scanned
+	 * through a cursor without materializing them.
+	 */
+	interface Source
+	{
+		/** Return a cursor positioned before the first live row. */
+		Cursor cursor ();
+	} // Source interface
+
+} // Row interface
@@ -0,0 +1,676 @@
+/*******************************************************************************
+ * @file  Snapshot.java
+ */
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/*******************************************************************************
+ * This class reads and writes table snapshots, the binary file format used by
+ * Table.save and Table.load in place of Java serialization.  A snapshot is
+ * streamed through a large buffer over a FileChannel and stores values as
+ * primitives rather than as boxed objects:
+ *
+ *     header:  magic, version, flags, table name, attribute names, domains
+ *              (one type code each), key attribute names, number of rows,
+ *              (since version 3) the log sequence number the snapshot is
+ *              current up to
+ *     rows:    blocks of up to BLOCK_ROWS rows, stored column by column;
+ *              a block is (rows, width) followed, for each column, by a type
+ *              code and the values encoded for that type (or, when a column
+ *              of the block mixes types or has nulls, TAGGED followed by a
+ *              type code before each value, or, since version 4, when a
+ *              String column of the block has few distinct values, DICT
+ *              followed by the distinct values and a one or two byte code
+ *              for each row); a block with 0 rows ends them
+ *     index:   (if HAS_INDEX is set) one entry per index key, in key order
+ *              (so a tree index is rebuilt by appending): 1, the key's
+ *              values, and the row number of its tuple (or -1 followed by
+ *              the tuple's values); a 0 ends the index
+ *     trailer: (since version 2) the block table (position and first row of
+ *              each block, and since version 5 the CRC-32C of its bytes),
+ *              the entry table (position of each index entry) and TRAILER
+ *              bytes locating them, ending (since version 5) with the CRC-32C
+ *              of everything before it and MAGIC
+ *
+ * All numbers are big endian; strings are a length and their UTF-8 bytes.
+ * Readers reject snapshots with a newer version than VERSION.  The trailer
+ * lets SnapshotView open a snapshot without reading the rows or the index.
+ *
+ * A snapshot is written to a temporary file that is forced and then renamed
+ * over the old one, so a crash leaves either the old or the new snapshot,
+ * never a mix.  The checksums catch what the rename cannot (e.g., a torn
+ * write the file system did not report, or later damage): read checks the
+ * whole file before decoding it and SnapshotView checks each block when it
+ * decodes it.
+ */
+public class Snapshot
+{
+	/**
+	 * The magic number at the start of every snapshot ("TSNP").
+	 */
+	public static final int MAGIC = 0x54534E50;
+
+	/**
+	 * The current version of the format.
+	 */
+	public static final int VERSION = 5;
+
+	/**
+	 * The header flag saying that the index is stored.
+	 */
+	public static final int HAS_INDEX = 1;
+
+	/**
+	 * The most rows in a block.
+	 */
+	static final int BLOCK_ROWS = 4096;
+
+	/**
+	 * The size of the trailer: block table position, block count, entry table
+	 * position, entry count, end of the row blocks, checksum and MAGIC (the
+	 * trailer of versions 2 to 4, OLD_TRAILER, has no checksum).
+	 */
+	static final int TRAILER = 8 + 4 + 8 + 4 + 8 + 4 + 4, OLD_TRAILER = TRAILER - 4;
+
+	/**
+	 * The size of the I/O buffer in bytes.
+	 */
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	/**
+	 * The classes that values may have; a class is stored as its position in
+	 * this array (-1 for any other class).
+	 */
+	private static final Class [] TYPES = { String.class, Integer.class, Long.class, Double.class,
+	                                        Float.class, Short.class, Character.class, Byte.class };
+
+	/**
+	 * The column code for a column whose values carry their own type codes,
+	 * the value code for null and the column code for a dictionary encoded
+	 * String column.
+	 */
+	private static final int TAGGED = 0x7F, NULL = 0x7E, DICT = 0x7D;
+
+	/**
+	 * A String column of a block is dictionary encoded if it has at most one
+	 * distinct value per DICT_RATIO rows.
+	 */
+	private static final int DICT_RATIO = 4;
+
+	/***************************************************************************
+	 * This interface is implemented by index entries that know the number of
+	 * the row holding their tuple (see SnapshotView), so write need not find
+	 * the row by the identity of the tuple, which a decoded copy would not
+	 * have.
+	 */
+	public interface RowEntry
+	       extends Map.Entry <KeyType, Comparable []>
+	{
+		/** Return the number of the row holding the tuple, or -1 if unknown. */
+		int row ();
+	} // RowEntry interface
+
+	/***************************************************************************
+	 * This class holds the contents of a snapshot that has been read.
+	 */
+	public static class Contents
+	{
+		final int version;
+		final int flags;
+		final String name;
+		final String [] attribute;
+		final Class [] domain;
+		final String [] key;
+		final int rows;
+		long lsn;
+		List <Comparable []> tuples;
+		List <Map.Entry <KeyType, Comparable []>> index;        // null if not stored
+
+		Contents (int _version, int _flags, String _name, String [] _attribute, Class [] _domain,
+		          String [] _key, int _rows)
+		{
+			version   = _version;
+			flags     = _flags;
+			name      = _name;
+			attribute = _attribute;
+			domain    = _domain;
+			key       = _key;
+			rows      = _rows;
+		} // constructor
+	} // Contents class
+
+	/***************************************************************************
+	 * Determine whether the file is a snapshot (rather than, e.g., a table
+	 * saved by an older version with Java serialization).
+	 *
+	 * @param path  the file to check
+	 * @return  whether the file starts with MAGIC
+	 * @throws IOException  if the file cannot be read
+	 */
+	public static boolean isSnapshot (Path path) throws IOException
+	{
+		try (FileChannel ch = FileChannel.open (path, StandardOpenOption.READ)) {
+			ByteBuffer b = ByteBuffer.allocate (4);
+			while (b.hasRemaining () && ch.read (b) >= 0) ;
+			return ! b.hasRemaining () && b.getInt (0) == MAGIC;
+		} // try
+	} // isSnapshot
+
+	/***************************************************************************
+	 * Write a snapshot of a table.  It is written to a temporary file that is
+	 * forced and then atomically renamed over path, so a crash leaves the old
+	 * snapshot intact and a SnapshotView of the old file (which may be
+	 * supplying the tuples being written) keeps working.
+	 *
+	 * @param path       the file to write
+	 * @param name       the table name
+	 * @param attribute  the attribute names
+	 * @param domain     the attribute domains
+	 * @param key        the primary key attribute names
+	 * @param tuples     the tuples
+	 * @param index      the index to store, or null to leave it out
+	 * @throws IOException  if the file cannot be written or holds a value of
+	 *                      an unsupported class
+	 */
+	public static void write (Path path, String name, String [] attribute, Class [] domain, String [] key,
+	                          List <Comparable []> tuples, Map <KeyType, Comparable []> index) throws IOException
+	{
+		write (path, name, attribute, domain, key, tuples, index != null ? index.entrySet () : null, 0);
+	} // write
+
+	/***************************************************************************
+	 * Write a snapshot of a table that includes every change logged before
+	 * the given log sequence number (see WriteAheadLog), so recovery replays
+	 * only the later ones.
+	 *
+	 * @param path       the file to write
+	 * @param name       the table name
+	 * @param attribute  the attribute names
+	 * @param domain     the attribute domains
+	 * @param key        the primary key attribute names
+	 * @param tuples     the tuples
+	 * @param index      the entries of the index to store (in any order; see
+	 *                   RowEntry), or null to leave the index out
+	 * @param lsn        the log sequence number the snapshot is current up to
+	 * @throws IOException  if the file cannot be written or holds a value of
+	 *                      an unsupported class
+	 */
+	public static void write (Path path, String name, String [] attribute, Class [] domain, String [] key,
+	                          List <Comparable []> tuples, Collection <? extends Map.Entry <KeyType, Comparable []>> index,
+	                          long lsn) throws IOException
+	{
+		Path tmp = path.resolveSibling (path.getFileName () + ".tmp");
+		try (FileChannel ch = FileChannel.open (tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+		                                        StandardOpenOption.TRUNCATE_EXISTING)) {
+			Out out = new Out (ch);
+			out.putInt (MAGIC);
+			out.putShort (VERSION);
+			out.putShort (index != null ? HAS_INDEX : 0);
+			out.putString (name);
+			out.putInt (attribute.length);
+			for (String a : attribute) out.putString (a);
+			out.putInt (domain.length);
+			for (Class c : domain) out.putByte (codeOf (c));
+			out.putInt (key.length);
+			for (String k : key) out.putString (k);
+			out.putInt (tuples.size ());
+			out.putLong (lsn);
+
+			IdentityHashMap <Comparable [], Integer> rowOf = index != null ? new IdentityHashMap <> () : null;
+			List <long []> blocks = new ArrayList <> ();                  // position, first row, checksum
+			Comparable [][] block = new Comparable [BLOCK_ROWS][];
+			int n = 0, row = 0;
+			for (Comparable [] t : tuples) {
+				if (n == BLOCK_ROWS || n > 0 && t.length != block [0].length) {
+					blocks.add (putBlock (out, block, n, row - n));
+					n = 0;
+				} // if
+				block [n++] = t;
+				if (rowOf != null) rowOf.put (t, row);
+				row++;
+			} // for
+			if (n > 0) blocks.add (putBlock (out, block, n, row - n));
+			long rowsEnd = out.position ();
+			out.putInt (0);
+
+			long [] entryPos = new long [0];
+			if (index != null) {
+				List <Map.Entry <KeyType, Comparable []>> entries = new ArrayList <> (index);
+				entries.sort (Map.Entry.comparingByKey ());
+				entryPos = new long [entries.size ()];
+				int i = 0;
+				for (Map.Entry <KeyType, Comparable []> e : entries) {
+					entryPos [i++] = out.position ();
+					out.putByte (1);
+					putValues (out, e.getKey ().values ());
+					int known = e instanceof RowEntry ? ((RowEntry) e).row () : -1;
+					Integer r = known >= 0 && known < row ? (Integer) known : rowOf.get (e.getValue ());
+					out.putInt (r != null ? r : -1);
+					if (r == null) putValues (out, e.getValue ());
+				} // for
+				out.putByte (0);
+			} // if
+
+			long blockTable = out.position ();
+			for (long [] b : blocks) {
+				out.putLong (b [0]);
+				out.putInt ((int) b [1]);
+				out.putInt ((int) b [2]);
+			} // for
+			long entryTable = out.position ();
+			for (long pos : entryPos) out.putLong (pos);
+			out.putLong (blockTable);
+			out.putInt (blocks.size ());
+			out.putLong (entryTable);
+			out.putInt (entryPos.length);
+			out.putLong (rowsEnd);
+			out.putInt (out.checksum ());
+			out.putInt (MAGIC);
+			out.flush ();
+			ch.force (false);                               // before it replaces the old file
+		} // try
+		Files.move (tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	} // write
+
+	/***************************************************************************
+	 * Read a snapshot, after checking its checksum (if it has one).
+	 *
+	 * @param path  the file to read
+	 * @return  the contents of the snapshot
+	 * @throws IOException  if the file cannot be read, is not a snapshot this
+	 *                      version understands or is corrupt
+	 */
+	public static Contents read (Path path) throws IOException
+	{
+		try (FileChannel ch = FileChannel.open (path, StandardOpenOption.READ)) {
+			In in = new In (ch);
+			Contents c = header (in, path);
+			if (c.version >= 5) verify (ch, path);
+			List <Comparable []> tuples = new ArrayList <> (c.rows);
+			for (Comparable [][] rows; (rows = getBlock (in)) != null; ) {
+				for (Comparable [] t : rows) tuples.add (t);
+			} // for
+			c.tuples = tuples;
+
+			if ((c.flags & HAS_INDEX) != 0) {
+				c.index = new ArrayList <> ();
+				while (in.getByte () == 1) {
+					KeyType k = new KeyType (getValues (in));
+					int r = in.getInt ();
+					c.index.add (new AbstractMap.SimpleImmutableEntry <> (k, r >= 0 ? tuples.get (r) : getValues (in)));
+				} // while
+			} // if
+			return c;
+		} // try
+	} // read
+
+	/***************************************************************************
+	 * Read the header of a snapshot (leaving the tuples and index of the
+	 * contents null).
+	 *
+	 * @param in    the input positioned at the start of the snapshot
+	 * @param path  the file being read (for messages)
+	 * @return  the contents holding the header
+	 * @throws IOException  if the file is not a snapshot this version understands
+	 */
+	static Contents header (In in, Path path) throws IOException
+	{
+		if (in.getInt () != MAGIC) throw new IOException ("Snapshot: " + path + " is not a snapshot");
+		int version = in.getShort ();
+		if (version > VERSION) throw new IOException ("Snapshot: unsupported version " + version);
+		int flags = in.getShort ();
+
+		String name = in.getString ();
+		String [] attribute = new String [in.getInt ()];
+		for (int j = 0; j < attribute.length; j++) attribute [j] = in.getString ();
+		Class [] domain = new Class [in.getInt ()];
+		for (int j = 0; j < domain.length; j++) {
+			int code = in.getByte ();
+			domain [j] = code >= 0 ? TYPES [code] : null;
+		} // for
+		String [] key = new String [in.getInt ()];
+		for (int j = 0; j < key.length; j++) key [j] = in.getString ();
+		Contents c = new Contents (version, flags, name, attribute, domain, key, in.getInt ());
+		if (version >= 3) c.lsn = in.need (8).getLong ();
+		return c;
+	} // header
+
+	/***************************************************************************
+	 * Check the checksum in the trailer of a snapshot against its contents.
+	 *
+	 * @param ch    the snapshot file (its position is left alone)
+	 * @param path  the file being read (for messages)
+	 * @throws IOException  if the file cannot be read or is corrupt
+	 */
+	static void verify (FileChannel ch, Path path) throws IOException
+	{
+		long end = ch.size () - 8;                             // checksum and MAGIC
+		if (end < 0) throw new IOException ("Snapshot: " + path + " is truncated");
+		ByteBuffer b = ByteBuffer.allocateDirect (BUFFER_SIZE);
+		CRC32C crc = new CRC32C ();
+		for (long pos = 0; pos < end; ) {
+			b.clear ().limit ((int) Math.min (BUFFER_SIZE, end - pos));
+			int n = ch.read (b, pos);
+			if (n < 0) throw new EOFException ("Snapshot: unexpected end of file");
+			crc.update (b.flip ());
+			pos += n;
+		} // for
+		b.clear ().limit (8);
+		while (b.hasRemaining () && ch.read (b, end + b.position ()) >= 0) ;
+		if (b.hasRemaining () || b.getInt (4) != MAGIC || b.getInt (0) != (int) crc.getValue ()) {
+			throw new IOException ("Snapshot: " + path + " is corrupt (bad checksum)");
+		} // if
+	} // verify
+
+	/***************************************************************************
+	 * Read the next block of rows.
+	 *
+	 * @param in  the input positioned at the start of a block
+	 * @return  the rows of the block, or null at the end of the row blocks
+	 * @throws IOException  if the block cannot be read
+	 */
+	static Comparable [][] getBlock (In in) throws IOException
+	{
+		int n = in.getInt ();
+		if (n == 0) return null;
+		Comparable [][] rows = new Comparable [n][in.getInt ()];
+		for (int j = 0; j < rows [0].length; j++) {
+			int code = in.getByte ();
+			if (code == DICT) {
+				String [] dict = new String [in.getInt ()];
+				for (int d = 0; d < dict.length; d++) dict [d] = in.getString ();
+				boolean wide = dict.length > 256;
+				for (int i = 0; i < n; i++) rows [i][j] = dict [wide ? in.getShort () & 0xFFFF : in.getByte () & 0xFF];
+				continue;
+			} // if
+			for (int i = 0; i < n; i++) rows [i][j] = code == TAGGED ? getValue (in, in.getByte ()) : getValue (in, code);
+		} // for
+		return rows;
+	} // getBlock
+
+	/***************************************************************************
+	 * Read a count and that many tagged values (e.g., the key of an index
+	 * entry).
+	 *
+	 * @param in  the input positioned at the count
+	 * @return  the values
+	 * @throws IOException  if the values cannot be read
+	 */
+	static Comparable [] getValues (In in) throws IOException
+	{
+		Comparable [] values = new Comparable [in.getInt ()];
+		for (int j = 0; j < values.length; j++) values [j] = getValue (in, in.getByte ());
+		return values;
+	} // getValues
+
+	// ------------------------------------------------------------------------
+	// Private Methods
+	// ------------------------------------------------------------------------
+
+	/***************************************************************************
+	 * Write the first n rows of the block (which all have the same width)
+	 * column by column and return its entry for the block table: its
+	 * position, its first row and the checksum of its bytes.
+	 */
+	private static long [] putBlock (Out out, Comparable [][] block, int n, int first) throws IOException
+	{
+		long pos = out.position ();
+		out.mark ();
+		int width = block [0].length;
+		out.putInt (n);
+		out.putInt (width);
+		for (int j = 0; j < width; j++) {
+			int code = block [0][j] == null ? -1 : codeOf (block [0][j].getClass ());
+			for (int i = 1; code >= 0 && i < n; i++) {
+				if (block [i][j] == null || block [i][j].getClass () != TYPES [code]) code = -1;
+			} // for
+			if (code == 0 && putDictionary (out, block, n, j)) continue;
+			out.putByte (code >= 0 ? code : TAGGED);
+			for (int i = 0; i < n; i++) {
+				if (code >= 0) putValue (out, code, block [i][j]);
+				else putTagged (out, block [i][j]);
+			} // for
+		} // for
+		return new long [] { pos, first, out.sinceMark () };
+	} // putBlock
+
+	/***************************************************************************
+	 * Write String column j of the first n rows of the block dictionary
+	 * encoded, if it has few enough distinct values; return whether it did.
+	 * The values then share one String each when read back.
+	 */
+	private static boolean putDictionary (Out out, Comparable [][] block, int n, int j) throws IOException
+	{
+		Map <Comparable, Integer> codes = new HashMap <> ();
+		for (int i = 0; i < n; i++) {
+			codes.putIfAbsent (block [i][j], codes.size ());
+			if (codes.size () * DICT_RATIO > n) return false;
+		} // for
+		String [] dict = new String [codes.size ()];
+		for (Map.Entry <Comparable, Integer> e : codes.entrySet ()) dict [e.getValue ()] = (String) e.getKey ();
+		out.putByte (DICT);
+		out.putInt (dict.length);
+		for (String v : dict) out.putString (v);
+		boolean wide = dict.length > 256;
+		for (int i = 0; i < n; i++) {
+			int code = codes.get (block [i][j]);
+			if (wide) out.putShort (code);
+			else out.putByte (code);
+		} // for
+		return true;
+	} // putDictionary
+
+	/***************************************************************************
+	 * Write a count and that many tagged values.
+	 */
+	private static void putValues (Out out, Comparable [] values) throws IOException
+	{
+		out.putInt (values.length);
+		for (Comparable v : values) putTagged (out, v);
+	} // putValues
+
+	/***************************************************************************
+	 * Write a value preceded by its type code (NULL for null).
+	 */
+	private static void putTagged (Out out, Comparable v) throws IOException
+	{
+		if (v == null) {
+			out.putByte (NULL);
+			return;
+		} // if
+		int code = codeOf (v.getClass ());
+		if (code < 0) throw new IOException ("Snapshot: cannot store a value of " + v.getClass ());
+		out.putByte (code);
+		putValue (out, code, v);
+	} // putTagged
+
+	/***************************************************************************
+	 * Write a value of the type with the given code.
+	 */
+	private static void putValue (Out out, int code, Comparable v) throws IOException
+	{
+		switch (code) {
+		case 0:  out.putString ((String) v);          break;
+		case 1:  out.putInt ((Integer) v);            break;
+		case 2:  out.ensure (8).putLong ((Long) v);    break;
+		case 3:  out.ensure (8).putDouble ((Double) v); break;
+		case 4:  out.ensure (4).putFloat ((Float) v);  break;
+		case 5:  out.putShort ((Short) v);            break;
+		case 6:  out.ensure (2).putChar ((Character) v); break;
+		default: out.putByte ((Byte) v);
+		} // switch
+	} // putValue
+
+	/***************************************************************************
+	 * Read a value of the type with the given code.
+	 */
+	private static Comparable getValue (In in, int code) throws IOException
+	{
+		switch (code) {
+		case 0:    return in.getString ();
+		case 1:    return in.getInt ();
+		case 2:    return in.need (8).getLong ();
+		case 3:    return in.need (8).getDouble ();
+		case 4:    return in.need (4).getFloat ();
+		case 5:    return (short) in.getShort ();
+		case 6:    return in.need (2).getChar ();
+		case 7:    return (byte) in.getByte ();
+		case NULL: return null;
+		default:   throw new IOException ("Snapshot: bad type code " + code);
+		} // switch
+	} // getValue
+
+	/***************************************************************************
+	 * Return the type code of the class (-1 if it is not one of TYPES).
+	 */
+	private static int codeOf (Class c)
+	{
+		for (int i = 0; i < TYPES.length; i++) if (TYPES [i] == c) return i;
+		return -1;
+	} // codeOf
+
+	/***************************************************************************
+	 * This class buffers the output to a channel and computes the checksum of
+	 * everything written, as well as of what was written since a mark.
+	 */
+	private static class Out
+	{
+		private final FileChannel ch;
+		private final ByteBuffer buf = ByteBuffer.allocateDirect (BUFFER_SIZE);
+		private long flushed;                           // bytes written to the channel
+		private final CRC32C crc = new CRC32C (), part = new CRC32C ();
+		private int summed;                             // bytes of buf already in the checksums
+
+		Out (FileChannel _ch) { ch = _ch; }
+
+		/** Return the checksum of all the bytes written so far. */
+		int checksum ()
+		{
+			sum ();
+			return (int) crc.getValue ();
+		} // checksum
+
+		/** Start a new partial checksum. */
+		void mark ()
+		{
+			sum ();
+			part.reset ();
+		} // mark
+
+		/** Return the checksum of the bytes written since the mark. */
+		int sinceMark ()
+		{
+			sum ();
+			return (int) part.getValue ();
+		} // sinceMark
+
+		/** Add the bytes buffered since the last call to the checksums. */
+		private void sum ()
+		{
+			crc.update (buf.duplicate ().position (summed).limit (buf.position ()));
+			part.update (buf.duplicate ().position (summed).limit (buf.position ()));
+			summed = buf.position ();
+		} // sum
+
+		/** Return the file position of the next byte. */
+		long position () { return flushed + buf.position (); }
+
+		/** Make room for n more bytes (n <= BUFFER_SIZE) and return the buffer. */
+		ByteBuffer ensure (int n) throws IOException
+		{
+			if (buf.remaining () < n) flush ();
+			return buf;
+		} // ensure
+
+		void putByte (int v) throws IOException { ensure (1).put ((byte) v); }
+		void putShort (int v) throws IOException { ensure (2).putShort ((short) v); }
+		void putInt (int v) throws IOException { ensure (4).putInt (v); }
+		void putLong (long v) throws IOException { ensure (8).putLong (v); }
+
+		void putString (String s) throws IOException
+		{
+			byte [] b = s.getBytes (StandardCharsets.UTF_8);
+			putInt (b.length);
+			for (int off = 0; off < b.length; ) {          // in pieces if longer than the buffer
+				int n = Math.min (b.length - off, ensure (1).remaining ());
+				buf.put (b, off, n);
+				off += n;
+			} // for
+		} // putString
+
+		void flush () throws IOException
+		{
+			sum ();
+			summed = 0;
+			buf.flip ();
+			while (buf.hasRemaining ()) flushed += ch.write (buf);
+			buf.clear ();
+		} // flush
+	} // Out class
+
+	/***************************************************************************
+	 * This class buffers the input from a channel, or reads a buffer (e.g., a
+	 * mapped part of the file) directly.
+	 */
+	static class In
+	{
+		private final FileChannel ch;                   // null when reading a buffer
+		private final ByteBuffer buf;
+
+		In (FileChannel _ch)
+		{
+			ch  = _ch;
+			buf = ByteBuffer.allocateDirect (BUFFER_SIZE).limit (0);
+		} // constructor
+
+		In (ByteBuffer _buf)
+		{
+			ch  = null;
+			buf = _buf;
+		} // constructor
+
+		/** Make sure n more bytes (n <= BUFFER_SIZE) are buffered and return the buffer. */
+		ByteBuffer need (int n) throws IOException
+		{
+			if (buf.remaining () >= n) return buf;
+			if (ch == null) throw new EOFException ("Snapshot: unexpected end of buffer");
+			buf.compact ();
+			while (buf.position () < n) {
+				if (ch.read (buf) < 0) throw new EOFException ("Snapshot: unexpected end of file");
+			} // while
+			return buf.flip ();
+		} // need
+
+		int getByte () throws IOException { return need (1).get (); }
+		int getShort () throws IOException { return need (2).getShort (); }
+		int getInt () throws IOException { return need (4).getInt (); }
+
+		String getString () throws IOException
+		{
+			byte [] b = new byte [getInt ()];
+			for (int off = 0; off < b.length; ) {          // in pieces if longer than the buffer
+				int n = Math.min (b.length - off, need (1).remaining ());
+				buf.get (b, off, n);
+				off += n;
+			} // for
+			return new String (b, StandardCharsets.UTF_8);
+		} // getString
+	} // In class
+
+} // Snapshot class
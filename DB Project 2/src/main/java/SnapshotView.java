@@ -0,0 +1,519 @@
+/*******************************************************************************
+ * @file  SnapshotView.java
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.CRC32C;
+
+/*******************************************************************************
+ * This class opens a snapshot (see Snapshot) without reading its rows or its
+ * index, so opening a table takes the same time however big it is.  Only the
+ * header and the trailer's block table are read; the rest of the file is
+ * mapped and
+ *
+ *     tuples () is a list that decodes a block of rows the first time one of
+ *               its rows is asked for (decoded blocks are softly cached, so
+ *               the garbage collector may drop them again), and
+ *     index ()  is a map that looks keys up by binary search over the mapped
+ *               index entries (which are in key order) through the entry table.
+ *
+ * Both may be changed: tuples added to the list and entries put in (or removed
+ * from) the map are kept in memory on top of the snapshot.  A block whose
+ * checksum (version 5 on) does not match its bytes is reported by an
+ * UncheckedIOException when it is read.
+ *
+ * The file stays open until the view is closed.  When the table is saved over
+ * the snapshot, the view moves onto the new file (see reopen), keeping in
+ * memory only what was added after the new snapshot was taken.
+ */
+public class SnapshotView
+       implements Closeable
+{
+	/**
+	 * The contents of the snapshot header.
+	 */
+	private Snapshot.Contents header;
+
+	/**
+	 * The position of each block of rows and the first row in it, with the end
+	 * of the row blocks as a last position.
+	 */
+	private long [] blockPos;
+	private int [] blockRow;
+
+	/**
+	 * The checksum of each block (null before version 5).
+	 */
+	private int [] blockCrc;
+
+	/**
+	 * The rows of each block, once decoded.
+	 */
+	private SoftReference <Comparable [][]> [] blocks;
+
+	/**
+	 * The file (kept open for mapping the blocks as they are needed).
+	 */
+	private FileChannel ch;
+
+	/**
+	 * The mapped index entries and the positions of the entries relative to
+	 * the start of the mapping (null if the index is not stored).
+	 */
+	private ByteBuffer entries;
+	private LongBuffer entryPos;
+	private long indexStart;
+
+	/**
+	 * The list of tuples and the index handed out (the index is null until
+	 * index () is called).
+	 */
+	private final Tuples tuples = new Tuples ();
+	private Index index;
+
+	/***************************************************************************
+	 * Open the snapshot in the file.
+	 *
+	 * @param path  the snapshot file
+	 * @return  the view, or null if the file has no trailer (version 1) or its
+	 *          index is too big to map
+	 * @throws IOException  if the file cannot be read or is not a snapshot
+	 */
+	public static SnapshotView open (Path path) throws IOException
+	{
+		SnapshotView v = new SnapshotView ();
+		return v.map (path) ? v : null;
+	} // open
+
+	/***************************************************************************
+	 * Open the file and read the header and trailer of its snapshot and map
+	 * its index, closing the file again if it cannot be viewed.
+	 *
+	 * @return  whether the snapshot can be viewed (see open)
+	 */
+	private boolean map (Path path) throws IOException
+	{
+		ch = FileChannel.open (path, StandardOpenOption.READ);
+		try {
+			if (read (path)) return true;
+		} catch (IOException | RuntimeException ex) {
+			ch.close ();
+			throw ex;
+		} // try
+		ch.close ();
+		return false;
+	} // map
+
+	/***************************************************************************
+	 * Read the header and trailer of the snapshot and map its index.
+	 */
+	@SuppressWarnings("unchecked")
+	private boolean read (Path path) throws IOException
+	{
+		header = Snapshot.header (new Snapshot.In (ch.map (FileChannel.MapMode.READ_ONLY, 0,
+		                          Math.min (ch.size (), 1 << 20))), path);
+		long size = ch.size ();
+		boolean crc = header.version >= 5;
+		int len = crc ? Snapshot.TRAILER : Snapshot.OLD_TRAILER, width = crc ? 16 : 12;
+		ByteBuffer t = size >= len ? ch.map (FileChannel.MapMode.READ_ONLY, size - len, len) : null;
+		if (header.version < 2 || t == null || t.getInt (len - 4) != Snapshot.MAGIC
+		    || t.getLong (0) - t.getLong (24) > Integer.MAX_VALUE) {      // the index must fit in one mapping
+			return false;
+		} // if
+
+		long blockTable = t.getLong (0), entryTable = t.getLong (12), rowsEnd = t.getLong (24);
+		int nBlocks = t.getInt (8), nEntries = t.getInt (20);
+		ByteBuffer b = ch.map (FileChannel.MapMode.READ_ONLY, blockTable, (long) nBlocks * width);
+		blockPos = new long [nBlocks + 1];
+		blockRow = new int [nBlocks + 1];
+		blockCrc = crc ? new int [nBlocks] : null;
+		for (int i = 0; i < nBlocks; i++) {
+			blockPos [i] = b.getLong (width * i);
+			blockRow [i] = b.getInt (width * i + 8);
+			if (crc) blockCrc [i] = b.getInt (width * i + 12);
+		} // for
+		blockPos [nBlocks] = rowsEnd;
+		blockRow [nBlocks] = header.rows;
+		blocks = new SoftReference [nBlocks];
+
+		if ((header.flags & Snapshot.HAS_INDEX) != 0) {
+			indexStart = rowsEnd + 4;
+			entries    = ch.map (FileChannel.MapMode.READ_ONLY, indexStart, blockTable - indexStart);
+			entryPos   = ch.map (FileChannel.MapMode.READ_ONLY, entryTable, nEntries * 8L).asLongBuffer ();
+		} else {
+			indexStart = 0;
+			entries    = null;
+			entryPos   = null;
+		} // if
+		return true;
+	} // read
+
+	/***************************************************************************
+	 * Return the header of the snapshot (name, attributes, domains and key).
+	 *
+	 * @return  the header
+	 */
+	public Snapshot.Contents header ()
+	{
+		return header;
+	} // header
+
+	/***************************************************************************
+	 * Return whether the snapshot holds its index.
+	 *
+	 * @return  whether index () may be used
+	 */
+	public boolean hasIndex ()
+	{
+		return entries != null;
+	} // hasIndex
+
+	/***************************************************************************
+	 * Return the rows of the snapshot as a list that reads them on demand.
+	 *
+	 * @return  the list of tuples
+	 */
+	public List <Comparable []> tuples ()
+	{
+		return tuples;
+	} // tuples
+
+	/***************************************************************************
+	 * Return the index of the snapshot as a map that reads it on demand.
+	 *
+	 * @param tuples  the list returned by tuples () (index entries refer to its rows)
+	 * @return  the index
+	 */
+	public Map <KeyType, Comparable []> index (List <Comparable []> tuples)
+	{
+		index = new Index (tuples);
+		return index;
+	} // index
+
+	/***************************************************************************
+	 * Move the view onto the snapshot that has just been saved over its file
+	 * (with its index, if index () was called), which holds the first rows of
+	 * the list of tuples.  The tuples added after those, and the index entries
+	 * put for them, stay in memory on top of the new snapshot; the old file is
+	 * closed.  The caller must keep the tuples and index from being changed
+	 * meanwhile.
+	 *
+	 * @param path  the new snapshot file
+	 * @throws IOException  if the new snapshot cannot be read
+	 */
+	public synchronized void reopen (Path path) throws IOException
+	{
+		SnapshotView v = new SnapshotView ();
+		if (! v.map (path)) throw new IOException ("SnapshotView: " + path + " cannot be viewed");
+		if (index != null && v.entries == null) {
+			v.close ();
+			throw new IOException ("SnapshotView: " + path + " holds no index");
+		} // if
+		ch.close ();
+		int oldRows = header.rows;
+		header   = v.header;
+		blockPos = v.blockPos;
+		blockRow = v.blockRow;
+		blockCrc = v.blockCrc;
+		blocks   = v.blocks;
+		ch       = v.ch;
+		entries  = v.entries;
+		entryPos = v.entryPos;
+		indexStart = v.indexStart;
+		for (Comparable [] t : tuples.added.subList (0, header.rows - oldRows)) tuples.rows.remove (t);
+		tuples.added.subList (0, header.rows - oldRows).clear ();
+		if (index != null) index.reopen ();
+	} // reopen
+
+	/***************************************************************************
+	 * Close the file (the tuples and index may no longer be read).
+	 *
+	 * @throws IOException  if the file cannot be closed
+	 */
+	public void close () throws IOException
+	{
+		ch.close ();
+	} // close
+
+	// ------------------------------------------------------------------------
+	// Private Methods
+	// ------------------------------------------------------------------------
+
+	/***************************************************************************
+	 * Return the rows of block i, reading them from the file (and checking
+	 * them against their checksum) if they are not cached.
+	 */
+	private synchronized Comparable [][] block (int i)
+	{
+		Comparable [][] rows = blocks [i] != null ? blocks [i].get () : null;
+		if (rows == null) {
+			try {
+				long len = blockPos [i + 1] - blockPos [i];
+				ByteBuffer b = ch.map (FileChannel.MapMode.READ_ONLY, blockPos [i], len);
+				if (blockCrc != null) {
+					CRC32C crc = new CRC32C ();
+					crc.update (b.duplicate ());
+					if ((int) crc.getValue () != blockCrc [i]) throw new IOException ("SnapshotView: block " + i + " is corrupt");
+				} // if
+				rows = Snapshot.getBlock (new Snapshot.In (b));
+			} catch (IOException ex) {
+				throw new UncheckedIOException (ex);
+			} // try
+			blocks [i] = new SoftReference <> (rows);
+		} // if
+		return rows;
+	} // block
+
+	/***************************************************************************
+	 * Return an input positioned at index entry e (just after its marker).
+	 */
+	private Snapshot.In entry (int e)
+	{
+		ByteBuffer b = entries.duplicate ();
+		b.position ((int) (entryPos.get (e) - indexStart) + 1);
+		return new Snapshot.In (b);
+	} // entry
+
+	/***************************************************************************
+	 * Return the number of the index entry with the given key, or, if there is
+	 * none, -(insertion point) - 1.
+	 */
+	private int find (KeyType key) throws IOException
+	{
+		int lo = 0, hi = entryPos.limit () - 1;
+		while (lo <= hi) {
+			int mid = lo + hi >>> 1;
+			int c = new KeyType (Snapshot.getValues (entry (mid))).compareTo (key);
+			if (c < 0) lo = mid + 1;
+			else if (c > 0) hi = mid - 1;
+			else return mid;
+		} // while
+		return -lo - 1;
+	} // find
+
+	/***************************************************************************
+	 * This class is the list of tuples: the rows of the snapshot followed by
+	 * the tuples added since it was opened.
+	 */
+	private class Tuples
+	        extends AbstractList <Comparable []>
+	{
+		private final List <Comparable []> added = new ArrayList <> ();
+		private final Map <Comparable [], Integer> rows = new IdentityHashMap <> ();    // of the added tuples
+
+		public Comparable [] get (int i)
+		{
+			if (i >= header.rows) return added.get (i - header.rows);
+			if (i < 0) throw new IndexOutOfBoundsException ("SnapshotView: row " + i);
+			int lo = 0, hi = blocks.length - 1;                      // the last block starting at or before row i
+			while (lo < hi) {
+				int mid = lo + hi + 1 >>> 1;
+				if (blockRow [mid] <= i) lo = mid;
+				else hi = mid - 1;
+			} // while
+			return block (lo) [i - blockRow [lo]];
+		} // get
+
+		public int size () { return header.rows + added.size (); }
+
+		public boolean add (Comparable [] tuple)
+		{
+			modCount++;
+			rows.put (tuple, size ());
+			return added.add (tuple);
+		} // add
+
+		/** Return the number of the row holding the added tuple, or -1. */
+		int rowOf (Comparable [] tuple)
+		{
+			Integer row = tuple != null ? rows.get (tuple) : null;
+			return row != null ? row : -1;
+		} // rowOf
+	} // Tuples class
+
+	/***************************************************************************
+	 * This class is the index: the entries of the snapshot, with the entries
+	 * put or removed since it was opened kept in a sorted overlay (a removed
+	 * key maps to null there).
+	 */
+	private class Index
+	        extends AbstractMap <KeyType, Comparable []>
+	{
+		private final List <Comparable []> tuples;
+		private final TreeMap <KeyType, Comparable []> overlay = new TreeMap <> ();
+		private int size = entryPos.limit ();
+
+		Index (List <Comparable []> _tuples) { tuples = _tuples; }
+
+		/** Drop from the overlay what the new snapshot holds: the entries for
+		 *  its rows and the removals of keys it does not have. */
+		private void reopen () throws IOException
+		{
+			Map <Comparable [], Boolean> kept = new IdentityHashMap <> ();
+			for (Comparable [] t : SnapshotView.this.tuples.added) kept.put (t, true);
+			size = entryPos.limit ();
+			for (Iterator <Map.Entry <KeyType, Comparable []>> it = overlay.entrySet ().iterator (); it.hasNext (); ) {
+				Map.Entry <KeyType, Comparable []> o = it.next ();
+				boolean stored = find (o.getKey ()) >= 0;
+				if (o.getValue () != null ? kept.containsKey (o.getValue ()) : stored) {
+					if (! stored) size++;
+					else if (o.getValue () == null) size--;
+				} else {
+					it.remove ();
+				} // if
+			} // for
+		} // reopen
+
+		/** Return stored entry e, with the number of the row holding its tuple. */
+		private IndexEntry stored (KeyType key, int e) throws IOException
+		{
+			Snapshot.In in = entry (e);
+			Snapshot.getValues (in);
+			int row = in.getInt ();
+			return new IndexEntry (key, row >= 0 ? tuples.get (row) : Snapshot.getValues (in), row);
+		} // stored
+
+		/** Return the tuple stored for the key, or null. */
+		private Comparable [] stored (Object key)
+		{
+			if (! (key instanceof KeyType)) return null;
+			try {
+				int e = find ((KeyType) key);
+				return e >= 0 ? stored ((KeyType) key, e).getValue () : null;
+			} catch (IOException ex) {
+				throw new UncheckedIOException (ex);
+			} // try
+		} // stored
+
+		public Comparable [] get (Object key)
+		{
+			if (overlay.containsKey (key)) return overlay.get (key);
+			return stored (key);
+		} // get
+
+		public boolean containsKey (Object key) { return get (key) != null; }
+
+		public Comparable [] put (KeyType key, Comparable [] tuple)
+		{
+			Comparable [] old = get (key);
+			if (old == null) size++;
+			overlay.put (key, tuple);
+			return old;
+		} // put
+
+		public Comparable [] remove (Object key)
+		{
+			Comparable [] old = get (key);
+			if (old != null) {
+				size--;
+				overlay.put ((KeyType) key, null);
+			} // if
+			return old;
+		} // remove
+
+		public int size () { return size; }
+
+		public Set <Map.Entry <KeyType, Comparable []>> entrySet ()
+		{
+			return new AbstractSet <Map.Entry <KeyType, Comparable []>> () {
+				public int size () { return size; }
+				public Iterator <Map.Entry <KeyType, Comparable []>> iterator () { return new Merge (); }
+			};
+		} // entrySet
+
+		/***********************************************************************
+		 * This class iterates over the stored entries and the overlay in key
+		 * order, letting the overlay win and skipping removed keys.
+		 */
+		private class Merge
+		        implements Iterator <Map.Entry <KeyType, Comparable []>>
+		{
+			private final Iterator <Map.Entry <KeyType, Comparable []>> over = overlay.entrySet ().iterator ();
+			private Map.Entry <KeyType, Comparable []> o = over.hasNext () ? over.next () : null;
+			private int e = 0;
+			private KeyType k = storedKey (0);
+			private Map.Entry <KeyType, Comparable []> next = advance ();
+
+			private KeyType storedKey (int i)
+			{
+				try {
+					return i < entryPos.limit () ? new KeyType (Snapshot.getValues (entry (i))) : null;
+				} catch (IOException ex) {
+					throw new UncheckedIOException (ex);
+				} // try
+			} // storedKey
+
+			private Map.Entry <KeyType, Comparable []> advance ()
+			{
+				while (k != null || o != null) {
+					int c = k == null ? 1 : o == null ? -1 : k.compareTo (o.getKey ());
+					Map.Entry <KeyType, Comparable []> r;
+					if (c < 0) {
+						try {
+							r = stored (k, e);
+						} catch (IOException ex) {
+							throw new UncheckedIOException (ex);
+						} // try
+					} else {
+						Comparable [] t = o.getValue ();
+						r = t != null ? new IndexEntry (o.getKey (), t, SnapshotView.this.tuples.rowOf (t)) : null;
+						o = over.hasNext () ? over.next () : null;
+					} // if
+					if (c <= 0) k = storedKey (++e);
+					if (r != null) return r;
+				} // while
+				return null;
+			} // advance
+
+			public boolean hasNext () { return next != null; }
+
+			public Map.Entry <KeyType, Comparable []> next ()
+			{
+				if (next == null) throw new NoSuchElementException ();
+				Map.Entry <KeyType, Comparable []> r = next;
+				next = advance ();
+				return r;
+			} // next
+		} // Merge class
+	} // Index class
+
+	/***************************************************************************
+	 * This class is an entry of the index that knows the number of the row
+	 * holding its tuple (-1 if the tuple is not in the list), so saving the
+	 * table need not find the row of a tuple decoded again since.
+	 */
+	private static class IndexEntry
+	        extends AbstractMap.SimpleImmutableEntry <KeyType, Comparable []>
+	        implements Snapshot.RowEntry
+	{
+		private final int row;
+
+		IndexEntry (KeyType key, Comparable [] tuple, int _row)
+		{
+			super (key, tuple);
+			row = _row;
+		} // constructor
+
+		public int row () { return row; }
+	} // IndexEntry class
+
+} // SnapshotView class
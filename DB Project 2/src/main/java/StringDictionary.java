@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * @file  StringDictionary.java
+ */
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*******************************************************************************
+ * This class maps the distinct values of a String column to dense int codes
+ * (0, 1, 2, ... in order of first appearance) and back, so the column can be
+ * stored as an int array.  Codes are never reused or changed, so a code stays
+ * valid for as long as the dictionary is used.
+ */
+public class StringDictionary
+{
+	/**
+	 * The value of each code.
+	 */
+	private final List <String> values;
+
+	/**
+	 * The code of each value.
+	 */
+	private final Map <String, Integer> codes;
+
+	/***************************************************************************
+	 * Construct an empty dictionary.
+	 */
+	public StringDictionary ()
+	{
+		values = new ArrayList <> ();
+		codes  = new HashMap <> ();
+	} // constructor
+
+	/***************************************************************************
+	 * Construct a copy of the dictionary (the copy assigns the same codes and
+	 * then grows on its own).
+	 *
+	 * @param dict  the dictionary to copy
+	 */
+	public StringDictionary (StringDictionary dict)
+	{
+		values = new ArrayList <> (dict.values);
+		codes  = new HashMap <> (dict.codes);
+	} // constructor
+
+	/***************************************************************************
+	 * Return the code of the value, adding the value if it is new.
+	 *
+	 * @param value  the value
+	 * @return  its code
+	 */
+	public int encode (String value)
+	{
+		Integer code = codes.get (value);
+		if (code == null) {
+			code = values.size ();
+			values.add (value);
+			codes.put (value, code);
+		} // if
+		return code;
+	} // encode
+
+	/***************************************************************************
+	 * Return the code of the value without adding it.
+	 *
+	 * @param value  the value
+	 * @return  its code, or -1 if the value is not in the dictionary
+	 */
+	public int find (String value)
+	{
+		Integer code = codes.get (value);
+		return code == null ? -1 : code;
+	} // find
+
+	/***************************************************************************
+	 * Return the value with the given code.
+	 *
+	 * @param code  the code
+	 * @return  the value
+	 */
+	public String decode (int code)
+	{
+		return values.get (code);
+	} // decode
+
+	/***************************************************************************
+	 * Return the number of distinct values.
+	 *
+	 * @return  the size of the dictionary
+	 */
+	public int size ()
+	{
+		return values.size ();
+	} // size
+
+} // StringDictionary class
@@ -8,18 +8,26 @@ import static java.lang.System.out;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractList;
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 /****************************************************************************************
@@ -31,6 +39,12 @@ import java.util.stream.Collectors;
  */
 public class Table implements Serializable{
 
+	/**
+	 * Version of the serialized form, kept at the value of the original class
+	 * so tables saved by Java serialization can still be loaded.
+	 */
+	private static final long serialVersionUID = -1518065512342413824L;
+
 	/**
 	 * Relative path for storage directory
 	 */
@@ -41,6 +55,23 @@ public class Table implements Serializable{
 	 */
 	private static final String EXT = ".dbf";
 
+	/**
+	 * Filename extension for write-ahead logs
+	 */
+	private static final String LOG_EXT = ".wal";
+
+	/**
+	 * Most delta files an in-memory table keeps: the checkpoint after that
+	 * saves the whole table instead, merging them into the snapshot.
+	 */
+	private static final int MAX_DELTAS = 8;
+
+	/**
+	 * Number of bytes used to store a String attribute in a packed record
+	 * (one length byte followed by up to 127 characters).
+	 */
+	public static final int str_bytearray_size = 128;
+
 	/**
 	 * Counter for naming temporary tables.
 	 */
@@ -73,9 +104,53 @@ public class Table implements Serializable{
 	private final String[] key;
 
 	/**
-	 * Index into tuples (maps key to tuple number).
+	 * Index into tuples (maps key to tuple number).  For a disk resident table
+	 * this is a RidMap, which holds record ids and reads tuples on demand.
 	 */
 	private final Map<KeyType, Comparable[]> index;
+
+	/**
+	 * Write-ahead log of the inserted tuples (null if inserts are not logged).
+	 */
+	private transient WriteAheadLog wal;
+
+	/**
+	 * Number of tuples written to the snapshot and its delta files (see
+	 * checkpoint).
+	 */
+	private transient int checkpointed;
+
+	/**
+	 * Number of delta files written since the snapshot.
+	 */
+	private transient int deltas;
+
+	/**
+	 * Lock held while the table is saved or checkpointed.
+	 */
+	private transient ReentrantLock saving = new ReentrantLock();
+
+	/**
+	 * Directory holding the table's files (DIR, or the directory of the
+	 * Database the table belongs to).
+	 */
+	private transient String dir;
+
+	/**
+	 * Stream of this table in its write-ahead log, whether the table owns the
+	 * log (rather than sharing its database's), and the log sequence number
+	 * its snapshot and delta files are current up to (replay skips the
+	 * records before it).
+	 */
+	private transient int stream;
+	private transient boolean ownsLog;
+	private transient long ckptLsn;
+
+	/**
+	 * The view of the snapshot the tuples and index are read from, for a
+	 * table opened lazily (see open), or null.
+	 */
+	private transient SnapshotView view;
 	
 
 
@@ -97,13 +172,59 @@ public class Table implements Serializable{
 	 */
 	
 	public Table(String _name, String[] _attribute, Class[] _domain, String[] _key) {
+		this(_name, _attribute, _domain, _key, false);
+	} // constructor
+
+	/************************************************************************************
+	 * Construct a table from the meta-data specifications, either in memory or
+	 * disk resident.  The tuples of a disk resident table live in a FileList
+	 * (DIR + name + ".dat") and its index maps keys to record ids, so only the
+	 * index is kept in memory.  If the data file already exists, its tuples
+	 * are kept and the index is rebuilt from them.
+	 *
+	 * @param _name
+	 *            the name of the relation
+	 * @param _attribute
+	 *            the string containing attributes names
+	 * @param _domain
+	 *            the string containing attribute domains (data types)
+	 * @param _key
+	 *            the primary key
+	 * @param onDisk
+	 *            whether the tuples are stored on disk
+	 */
+	public Table(String _name, String[] _attribute, Class[] _domain, String[] _key, boolean onDisk) {
+		this(DIR, _name, _attribute, _domain, _key, onDisk, BufferPool.getShared());
+	} // constructor
+
+	/************************************************************************************
+	 * Construct a table from the meta-data specifications, keeping its files
+	 * in the given directory and caching the pages of a disk resident table
+	 * in the given buffer pool (used by Database).
+	 */
+	Table(String _dir, String _name, String[] _attribute, Class[] _domain, String[] _key, boolean onDisk,
+			BufferPool pool) {
+		dir = _dir;
 		name = _name;
 		attribute = _attribute;
 		domain = _domain;
 		key = _key;
-		
-		//tuples = new FileList(_name,get_recordsize(), this.domain);
-		//System.out.println("Tuples: "+tuples.size());
+
+		if (onDisk) {
+			new File(dir).mkdirs();
+			FileList file = new FileList(dir + _name, get_recordsize(), this.domain, Page.DEFAULT_SIZE, pool);
+			tuples = file;
+
+			//Instruction For TA: Use Only one of them at a time
+			//RidMap rids = new RidMap(file, new TreeMap<>()); //Uncomment this to run project using TreeMap
+			//RidMap rids = new RidMap(file, new LinHashMap <> (KeyType.class, Long.class)); //Uncomment this to run project using LinHashMap
+			RidMap rids = new RidMap(file, new BpTreeMap <> (KeyType.class, Long.class)); //Uncomment this to run project using BpTreeMap
+			int[] cols = match(key);
+			file.forEachRid((tup, rid) -> rids.putRid(new KeyType(extract(tup, cols)), rid));
+			index = rids;
+			recover(0);
+			return;
+		} // if
 		
 		tuples = new ArrayList<>();
 		
@@ -130,6 +251,15 @@ public class Table implements Serializable{
 	 *            the list of tuples containing the data
 	 */
 	public Table(String _name, String[] _attribute, Class[] _domain, String[] _key, List<Comparable[]> _tuples) {
+		this(DIR, _name, _attribute, _domain, _key, _tuples);
+	} // constructor
+
+	/************************************************************************************
+	 * Construct a table from the meta-data specifications and data in _tuples
+	 * list, keeping its files in the given directory.
+	 */
+	Table(String _dir, String _name, String[] _attribute, Class[] _domain, String[] _key, List<Comparable[]> _tuples) {
+		dir = _dir;
 		name = _name;
 		attribute = _attribute;
 		domain = _domain;
@@ -142,6 +272,74 @@ public class Table implements Serializable{
 		 index = new BpTreeMap <> (KeyType.class, Comparable [].class); //Uncomment this to run project using BpTreeMap
 	} // constructor
 
+	/************************************************************************************
+	 * Construct an off-heap table over the tuples in the arena, whose rows
+	 * are kept as encoded records outside the Java heap (see TupleArena).  Its
+	 * index maps keys to record ids, like that of a disk resident table.  Use
+	 * scan or where to read just some columns of its rows without
+	 * materializing them.
+	 *
+	 * @param _name
+	 *            the name of the relation
+	 * @param _attribute
+	 *            the string containing attributes names
+	 * @param _domain
+	 *            the string containing attribute domains (data types)
+	 * @param _key
+	 *            the primary key
+	 * @param arena
+	 *            the arena holding the tuples (often empty)
+	 */
+	public Table(String _name, String[] _attribute, Class[] _domain, String[] _key, TupleArena arena) {
+		dir = DIR;
+		name = _name;
+		attribute = _attribute;
+		domain = _domain;
+		key = _key;
+		tuples = arena;
+		index = ridIndex(arena, arena);
+	} // constructor
+
+	/************************************************************************************
+	 * Construct a columnar table over the tuples in the column store, which
+	 * keeps one array per column (see ColumnStore), so operators that use few
+	 * of the columns read only those.  Its index maps keys to record ids.
+	 *
+	 * @param _name
+	 *            the name of the relation
+	 * @param _attribute
+	 *            the string containing attributes names
+	 * @param _domain
+	 *            the string containing attribute domains (data types)
+	 * @param _key
+	 *            the primary key
+	 * @param store
+	 *            the column store holding the tuples (often empty)
+	 */
+	public Table(String _name, String[] _attribute, Class[] _domain, String[] _key, ColumnStore store) {
+		dir = DIR;
+		name = _name;
+		attribute = _attribute;
+		domain = _domain;
+		key = _key;
+		tuples = store;
+		index = ridIndex(store, store);
+	} // constructor
+
+	/************************************************************************************
+	 * Construct a table over the given tuples and index (used by open).
+	 */
+	private Table(String _dir, String _name, String[] _attribute, Class[] _domain, String[] _key,
+			List<Comparable[]> _tuples, Map<KeyType, Comparable[]> _index) {
+		dir = _dir;
+		name = _name;
+		attribute = _attribute;
+		domain = _domain;
+		key = _key;
+		tuples = _tuples;
+		index = _index;
+	} // constructor
+
 	/************************************************************************************
 	 * Construct an empty table from the raw string specifications.
 	 *
@@ -153,7 +351,24 @@ public class Table implements Serializable{
 	 *            the string containing attribute domains (data types)
 	 */
 	public Table(String name, String attributes, String domains, String _key) {
-		this(name, attributes.split(" "), findClass(domains.split(" ")), _key.split(" "));
+		this(name, attributes, domains, _key, false);
+	} // constructor
+
+	/************************************************************************************
+	 * Construct an empty table from the raw string specifications, either in
+	 * memory or disk resident.
+	 *
+	 * @param name
+	 *            the name of the relation
+	 * @param attributes
+	 *            the string containing attributes names
+	 * @param domains
+	 *            the string containing attribute domains (data types)
+	 * @param onDisk
+	 *            whether the tuples are stored on disk
+	 */
+	public Table(String name, String attributes, String domains, String _key, boolean onDisk) {
+		this(name, attributes.split(" "), findClass(domains.split(" ")), _key.split(" "), onDisk);
 
 		out.println("DDL> create table " + name + " (" + attributes + ")");
 	} // constructor
@@ -205,6 +420,10 @@ public class Table implements Serializable{
 		String[] attrs = attributes.split(" ");
 		Class[] colDomain = extractDom(match(attrs), domain);
 		String[] newKey = (Arrays.asList(attrs).containsAll(Arrays.asList(key))) ? key : attrs;
+		if (tuples instanceof ColumnStore) {
+			ColumnStore cs = ((ColumnStore) tuples).project(match(attrs));
+			return new Table(name + count++, attrs, colDomain, newKey, cs);
+		} // if
 		Table t=new Table(name + count++, attrs, colDomain, newKey);
 	       
 		// Code written by Karthik
@@ -237,6 +456,100 @@ public class Table implements Serializable{
 		return new Table(name + count++, attribute, domain, key,tuples.stream().filter(t -> predicate.test(t)).collect(Collectors.toList()));
 	} // select
 
+	/************************************************************************************
+	 * Pass each row of the table to the action through one flyweight Row, so
+	 * the rows of an off-heap or columnar table are not materialized (see
+	 * Row).
+	 *
+	 * #usage movie.scan (r -> total [0] += r.getInt (movie.col ("length")))
+	 *
+	 * @param action
+	 *            the action to apply to each row
+	 */
+	public void scan(Consumer<Row> action) {
+		if (tuples instanceof Row.Source) {
+			for (Row.Cursor c = ((Row.Source) tuples).cursor(); c.next(); ) action.accept(c);
+		} else {
+			ArrayRow row = new ArrayRow();
+			for (Comparable[] tup : tuples) {
+				row.tuple = tup;
+				action.accept(row);
+			} // for
+		} // if
+	} // scan
+
+	/************************************************************************************
+	 * Select the rows satisfying the given predicate, which reads the values
+	 * it needs through a flyweight Row.  For an off-heap table the predicate
+	 * decodes only the columns it reads and the result is an off-heap table
+	 * too, into which the matching records are copied without being decoded.
+	 * For a columnar table the predicate reads only the arrays of the columns
+	 * it uses, and the selected rows are then gathered column by column.
+	 *
+	 * #usage movie.where (r -> r.getInt (movie.col ("year")) == 1977)
+	 *
+	 * @param predicate
+	 *            the check condition for rows
+	 * @return a table with the rows satisfying the predicate
+	 */
+	public Table where(Predicate<Row> predicate) {
+		out.println("RA> " + name + ".where (" + predicate + ")");
+
+		if (tuples instanceof ColumnStore) {
+			ColumnStore cs = (ColumnStore) tuples;
+			int[] rids = new int[16];
+			int n = 0;
+			for (Row.Cursor c = cs.cursor(); c.next(); ) {
+				if (! predicate.test(c)) continue;
+				if (n == rids.length) rids = Arrays.copyOf(rids, n * 2);
+				rids[n++] = (int) c.rid();
+			} // for
+			int[] all = new int[domain.length];
+			for (int j = 0; j < all.length; j++) all[j] = j;
+			return new Table(name + count++, attribute, domain, key, cs.gather(rids, n, all));
+		} // if
+		if (! (tuples instanceof TupleArena)) {
+			ArrayRow row = new ArrayRow();
+			return select(t -> {
+				row.tuple = t;
+				return predicate.test(row);
+			});
+		} // if
+		TupleArena arena = new TupleArena(domain);
+		Table t = new Table(name + count++, attribute, domain, key, arena);
+		RidMap rids = (RidMap) t.index;
+		int[] cols = match(key);
+		for (TupleArena.Cursor c = ((TupleArena) tuples).cursor(); c.next(); ) {
+			if (predicate.test(c)) rids.putRid(keyOf(c, cols), arena.insert(c));
+		} // for
+		return t;
+	} // where
+
+	/************************************************************************************
+	 * Select the tuples whose value of the given attribute equals the given
+	 * value.  On a dictionary encoded column of a columnar table the value is
+	 * looked up once and the rows are selected by comparing int codes.
+	 *
+	 * #usage movie.select ("genre", "drama")
+	 *
+	 * @param attr
+	 *            the attribute to compare
+	 * @param value
+	 *            the value it must equal
+	 * @return a table with the tuples satisfying the equality predicate
+	 */
+	public Table select(String attr, Comparable value) {
+		int j = col(attr);
+		if (tuples instanceof ColumnStore) {
+			out.println("RA> " + name + ".select (" + attr + ", " + value + ")");
+			int[] rids = ((ColumnStore) tuples).selectEqual(j, value);
+			int[] all = new int[domain.length];
+			for (int c = 0; c < all.length; c++) all[c] = c;
+			return new Table(name + count++, attribute, domain, key, ((ColumnStore) tuples).gather(rids, rids.length, all));
+		} // if
+		return select(t -> value.equals(t[j]));
+	} // select
+
 	/************************************************************************************
 	 * Select the tuples satisfying the given key predicate (key = value). Use
 	 * an index (Map) to retrieve the tuple with the given key value.
@@ -262,6 +575,49 @@ public class Table implements Serializable{
 		return t;
 	} // select
 
+	/************************************************************************************
+	 * Select the tuples whose primary key is between lo and hi (both
+	 * included).  A BpTreeMap index, or the BpTreeMap of record ids of a
+	 * RidMap index, is range scanned, so only the keys in the range are
+	 * visited; otherwise every tuple is checked.
+	 *
+	 * @param lo
+	 *            the smallest key value
+	 * @param hi
+	 *            the largest key value
+	 * @return a table with the tuples satisfying the range predicate
+	 */
+	@SuppressWarnings("unchecked")
+	public Table select(KeyType lo, KeyType hi) {
+		RidMap.Cursor r = index instanceof RidMap ? ((RidMap) index).cursor(lo, hi) : null;
+		if (!(index instanceof BpTreeMap) && r == null) {
+			int[] cols = match(key);
+			return select(t -> {
+				KeyType k = new KeyType(extract(t, cols));
+				return k.compareTo(lo) >= 0 && k.compareTo(hi) <= 0;
+			});
+		} // if
+		out.println("RA> " + name + ".select (" + lo + " .. " + hi + ")");
+		List<Comparable[]> rows = new ArrayList<>();
+		List<Map.Entry<KeyType, Comparable[]>> entries = new ArrayList<>();
+		if (r != null) {
+			while (r.next()) {
+				Comparable[] tup = r.value();
+				rows.add(tup);
+				entries.add(new AbstractMap.SimpleImmutableEntry<>(r.key(), tup));
+			} // while
+		} else {
+			BpTreeMap<KeyType, Comparable[]>.Cursor c = ((BpTreeMap<KeyType, Comparable[]>) index).cursor(lo, true, hi, true, false);
+			while (c.next()) {
+				rows.add(c.value());
+				entries.add(new AbstractMap.SimpleImmutableEntry<>(c.key(), c.value()));
+			} // while
+		} // if
+		Table t = new Table(name + count++, attribute, domain, key, rows);
+		t.loadIndex(entries);
+		return t;
+	} // select
+
 	/************************************************************************************
 	 * Union this table and table2. Check that the two tables are compatible.
 	 *
@@ -328,17 +684,8 @@ public class Table implements Serializable{
 			return null;
 
 		Table t1=new Table(name + count++, attribute, domain, key);
-		boolean found = false;
 		for (Map.Entry<KeyType, Comparable[]> lhsEntry : index.entrySet()) {
-			found = false;
-			for (Map.Entry<KeyType, Comparable[]> rhsEntry : table2.index.entrySet()) {
-				if (lhsEntry.getKey().equals(rhsEntry.getKey())) {
-					found = true;
-					break;
-				} // if
-			} // for
-
-			if (!found) {
+			if (!table2.index.containsKey(lhsEntry.getKey())) {
 				t1.index.put(lhsEntry.getKey(), lhsEntry.getValue());
 				t1.tuples.add(lhsEntry.getValue());
 			} // if
@@ -368,6 +715,10 @@ public class Table implements Serializable{
         
 		String[] t_attrs = attributes1.split(" ");
 		String[] u_attrs = attributes2.split(" ");
+		if (t_attrs.length == 1 && tuples instanceof ColumnStore && table2.tuples instanceof ColumnStore) {
+			Table t = joinOnCodes(col(t_attrs[0]), table2, table2.col(u_attrs[0]));
+			if (t != null) return t;
+		} // if
 		String[] combinedKey = new String[t_attrs.length + u_attrs.length];
 		int[] index1 = new int[t_attrs.length];
 		int[] index2 = new int[t_attrs.length];
@@ -814,18 +1165,345 @@ public class Table implements Serializable{
 		out.println("DML> insert into " + name + " values ( " + Arrays.toString(tup) + " )");
 
 		if (typeCheck(tup)) {
-			tuples.add(tup);
-			Comparable[] keyVal = new Comparable[key.length];
-			int[] cols = match(key);
-			for (int j = 0; j < keyVal.length; j++)
-				keyVal[j] = tup[cols[j]];
-			index.put(new KeyType(keyVal), tup);
+			long lsn;
+			synchronized (this) {
+				lsn = wal != null ? wal.append(stream, tup) : -1;
+				apply(tup);
+			} // synchronized
+			if (lsn >= 0) {
+				try {
+					wal.commit(lsn);                           // outside the lock, so commits are grouped
+				} catch (IOException ex) {
+					out.println("insert: IO Exception");
+					ex.printStackTrace();
+					return false;
+				} // try
+			} // if
 			return true;
 		} else {
 			return false;
 		} // if
 	} // insert
 
+	/************************************************************************************
+	 * Add the tuple to the table and its index (for insert and log replay).
+	 *
+	 * @param tup
+	 *            the tuple to add
+	 */
+	private void apply(Comparable[] tup) {
+		if (! (index instanceof RidMap)) tuples.add(tup);      // a RidMap stores the tuple itself
+		Comparable[] keyVal = new Comparable[key.length];
+		int[] cols = match(key);
+		for (int j = 0; j < keyVal.length; j++)
+			keyVal[j] = tup[cols[j]];
+		index.put(new KeyType(keyVal), tup);
+	} // apply
+
+	/************************************************************************************
+	 * Apply a tuple replayed from the write-ahead log, unless the record is
+	 * older than the table's snapshot and delta files.
+	 *
+	 * @param lsn
+	 *            the log sequence number of the record
+	 * @param tup
+	 *            the logged tuple
+	 */
+	void redo(long lsn, Comparable[] tup) {
+		if (lsn > ckptLsn) apply(tup);
+	} // redo
+
+	/************************************************************************************
+	 * Log the tuples inserted into this table in its own write-ahead log (DIR +
+	 * name + ".wal"), so an insert is durable when it returns rather than when the
+	 * table is next saved.  Tuples left in the log by a crash are replayed
+	 * first; saving the table empties the log.  Concurrent inserts share log
+	 * writes and forces (group commit).
+	 *
+	 * @param sync
+	 *            how durable an insert is when it returns (NONE, WRITE or FORCE)
+	 */
+	public synchronized void log(WriteAheadLog.Sync sync) {
+		if (wal != null) {
+			wal.setSync(sync);
+			return;
+		} // if
+		try {
+			new File(dir).mkdirs();
+			wal = new WriteAheadLog(Paths.get(dir + name + LOG_EXT), Collections.singletonList(domain), sync,
+					(i, lsn, tup) -> redo(lsn, tup));
+			stream = 0;
+			ownsLog = true;
+		} catch (IOException ex) {
+			out.println("log: IO Exception");
+			ex.printStackTrace();
+		} // try
+	} // log
+
+	/************************************************************************************
+	 * Log the tuples inserted into this table in a stream of a shared
+	 * write-ahead log (a database's), which its owner checkpoints and empties.
+	 *
+	 * @param _wal
+	 *            the log
+	 * @param _stream
+	 *            the stream of this table in the log
+	 */
+	void attachLog(WriteAheadLog _wal, int _stream) {
+		wal = _wal;
+		stream = _stream;
+		ownsLog = false;
+	} // attachLog
+
+	/************************************************************************************
+	 * Checkpoint this table without stopping inserts: write out only what has
+	 * changed since the last checkpoint, then discard the part of the
+	 * write-ahead log (if any) before the checkpoint LSN (the end of the log
+	 * when the checkpoint started).
+	 * 
+	 * A disk resident table writes the pages that were dirty at the start, one
+	 * at a time, and its append buffer, then forces its data file.  An
+	 * in-memory table writes the tuples inserted since the last checkpoint to
+	 * a delta file (DIR + name + ".dbf." + number of its first tuple), which
+	 * load and open apply after the snapshot.  Like the snapshot, a delta file
+	 * is checksummed and renamed into place once it is complete, so it is
+	 * safe to checkpoint an unlogged table instead of saving all of it.
+	 * Inserts only wait for these short steps, not for the forces.  Once
+	 * there are MAX_DELTAS delta files, the table is saved instead, which
+	 * merges them into a new snapshot written while inserts go on.
+	 */
+	public void checkpoint() {
+		try {
+			long lsn = checkpointChanges();
+			if (wal != null && ownsLog) wal.truncate(lsn);
+		} catch (IOException ex) {
+			out.println("checkpoint: IO Exception");
+			ex.printStackTrace();
+		} // try
+	} // checkpoint
+
+	/************************************************************************************
+	 * Write out what has changed since the last checkpoint (see checkpoint),
+	 * leaving the write-ahead log alone.  An in-memory table with MAX_DELTAS
+	 * delta files merges them into a new snapshot instead (see save), so a
+	 * database checkpointing its tables bounds their delta files too.
+	 *
+	 * @return the checkpoint LSN: every change logged before it is on disk
+	 */
+	long checkpointChanges() throws IOException {
+		saving.lock();
+		try {
+			long lsn;
+			if (isOnDisk()) {
+				FileList file = (FileList) tuples;
+				int[] dirty;
+				synchronized (this) {
+					lsn = wal != null ? wal.end() : 0;
+					dirty = file.dirtyPages();
+				} // synchronized
+				for (int p : dirty) {
+					synchronized (this) {
+						file.flushPage(p);
+					} // synchronized
+				} // for
+				synchronized (this) {
+					file.flushAppends();
+				} // synchronized
+				file.sync();
+			} else if (deltas >= MAX_DELTAS) {
+				return writeSnapshot(true);
+			} else {
+				List<Comparable[]> delta;
+				synchronized (this) {
+					lsn = wal != null ? wal.end() : 0;
+					delta = new ArrayList<>(tuples.subList(checkpointed, tuples.size()));
+				} // synchronized
+				if (! delta.isEmpty()) {
+					new File(dir).mkdirs();
+					String file = checkpointed == 0 ? dir + name + EXT : dir + name + EXT + "." + checkpointed;
+					Snapshot.write(Paths.get(file), name, attribute, domain, key, delta, null, lsn);
+					if (checkpointed > 0) deltas++;
+					checkpointed += delta.size();
+				} // if
+			} // if
+			ckptLsn = lsn;
+			return lsn;
+		} finally {
+			saving.unlock();
+		} // try
+	} // checkpointChanges
+
+	/************************************************************************************
+	 * Fill the empty index of a table just read from entries in key order.  A
+	 * BpTreeMap index is bulk loaded (built bottom-up in one pass) rather than
+	 * filled one put at a time.
+	 *
+	 * @param entries
+	 *            the index entries, sorted by key
+	 */
+	@SuppressWarnings("unchecked")
+	private void loadIndex(List<Map.Entry<KeyType, Comparable[]>> entries) {
+		if (index instanceof BpTreeMap && index.isEmpty()) {
+			((BpTreeMap<KeyType, Comparable[]>) index).bulkLoad(entries.iterator());
+		} else {
+			for (Map.Entry<KeyType, Comparable[]> e : entries) index.put(e.getKey(), e.getValue());
+		} // if
+	} // loadIndex
+
+	/************************************************************************************
+	 * Bring a table just read from its files up to date: apply the delta files
+	 * written by checkpoints after its snapshot, then, if it has a write-ahead
+	 * log of its own, replay the newer records and keep logging inserts
+	 * (forcing each commit).  Deltas older than the snapshot (left by a crash
+	 * during save) are ignored.
+	 *
+	 * @param lsn
+	 *            the log sequence number the snapshot is current up to
+	 */
+	private void recover(long lsn) {
+		ckptLsn = lsn;
+		if (! isOnDisk()) {
+			try {
+				for (Path p; Files.exists(p = Paths.get(dir + name + EXT + "." + tuples.size())); ) {
+					Snapshot.Contents delta = Snapshot.read(p);
+					if (delta.tuples.isEmpty()) break;
+					for (Comparable[] tup : delta.tuples) apply(tup);
+					ckptLsn = Math.max(ckptLsn, delta.lsn);
+					deltas++;
+				} // for
+			} catch (IOException ex) {
+				out.println("recover: IO Exception");
+				ex.printStackTrace();
+			} // try
+			checkpointed = tuples.size();
+		} // if
+		if (new File(dir + name + LOG_EXT).exists()) log(WriteAheadLog.Sync.FORCE);
+	} // recover
+
+	/************************************************************************************
+	 * Compute the number of bytes needed to store a packed tuple of this table.
+	 *
+	 * @return the record size in bytes
+	 */
+	public int get_recordsize() {
+		int size = 0;
+		for (Class c : domain) {
+			if (c == String.class)
+				size += str_bytearray_size;
+			else if (c == Long.class || c == Double.class)
+				size += 8;
+			else if (c == Integer.class || c == Float.class)
+				size += 4;
+			else if (c == Short.class || c == Character.class)
+				size += 2;
+			else if (c == Byte.class)
+				size += 1;
+		} // for
+		return size;
+	} // get_recordsize
+
+	/************************************************************************************
+	 * Determine whether this table's tuples are stored on disk.
+	 *
+	 * @return whether the table is disk resident
+	 */
+	public boolean isOnDisk() {
+		return tuples instanceof FileList;
+	} // isOnDisk
+
+	/************************************************************************************
+	 * Return the sum of the values of a numeric attribute.  A columnar table
+	 * adds up its column array without touching the other columns.
+	 *
+	 * #usage movie.sum ("length")
+	 *
+	 * @param attr
+	 *            the attribute to sum
+	 * @return the sum
+	 */
+	public double sum(String attr) {
+		int j = col(attr);
+		if (tuples instanceof ColumnStore) return ((ColumnStore) tuples).sum(j);
+		double[] total = { 0 };
+		scan(r -> total[0] += ((Number) r.get(j)).doubleValue());
+		return total[0];
+	} // sum
+
+	/************************************************************************************
+	 * Equi-join two columnar tables on one dictionary encoded column each,
+	 * comparing int codes: the codes of table2's dictionary are translated
+	 * into this table's codes once, the rows of this table are chained by
+	 * code, and table2's rows are then matched without hashing or comparing
+	 * any Strings.  The matching rows are gathered column by column.
+	 *
+	 * @param j1
+	 *            the join column of this table
+	 * @param table2
+	 *            the rhs table
+	 * @param j2
+	 *            the join column of table2
+	 * @return the joined table, or null if either column is not dictionary
+	 *         encoded
+	 */
+	private Table joinOnCodes(int j1, Table table2, int j2) {
+		ColumnStore cs1 = (ColumnStore) tuples, cs2 = (ColumnStore) table2.tuples;
+		int[] codes1 = cs1.codes(j1), codes2 = cs2.codes(j2);
+		if (codes1 == null || codes2 == null) return null;
+		StringDictionary dict1 = cs1.dictionary(j1), dict2 = cs2.dictionary(j2);
+
+		int[] xlat = new int[dict2.size()];
+		for (int c = 0; c < xlat.length; c++) xlat[c] = dict1.find(dict2.decode(c));
+		int[] head = new int[dict1.size()], next = new int[cs1.rows()];
+		Arrays.fill(head, -1);
+		for (int r = cs1.rows() - 1; r >= 0; r--) {
+			if (! cs1.isLive(r)) continue;
+			next[r] = head[codes1[r]];
+			head[codes1[r]] = r;
+		} // for
+
+		int[] left = new int[16], right = new int[16];
+		int n = 0;
+		for (int r2 = 0; r2 < cs2.rows(); r2++) {
+			int c = xlat[codes2[r2]];
+			if (c < 0 || ! cs2.isLive(r2)) continue;
+			for (int r1 = head[c]; r1 >= 0; r1 = next[r1]) {
+				if (n == left.length) {
+					left = Arrays.copyOf(left, n * 2);
+					right = Arrays.copyOf(right, n * 2);
+				} // if
+				left[n] = r1;
+				right[n++] = r2;
+			} // for
+		} // for
+
+		int[] all1 = new int[domain.length], all2 = new int[table2.domain.length];
+		for (int c = 0; c < all1.length; c++) all1[c] = c;
+		for (int c = 0; c < all2.length; c++) all2[c] = c;
+		ColumnStore joined = ColumnStore.concat(cs1.gather(left, n, all1), cs2.gather(right, n, all2));
+		String[] newKey = Arrays.equals(key, new String[] { attribute[j1] }) ? table2.key
+				: Arrays.equals(table2.key, new String[] { table2.attribute[j2] }) ? key : ArrayUtil.concat(key, table2.key);
+		return new Table(name + count++, ArrayUtil.concat(attribute, table2.attribute),
+				ArrayUtil.concat(domain, table2.domain), newKey, joined);
+	} // joinOnCodes
+
+	/************************************************************************************
+	 * Determine whether this table's tuples are kept column by column.
+	 *
+	 * @return whether the table is columnar
+	 */
+	public boolean isColumnar() {
+		return tuples instanceof ColumnStore;
+	} // isColumnar
+
+	/************************************************************************************
+	 * Determine whether this table's tuples are stored off the Java heap.
+	 *
+	 * @return whether the table is off-heap
+	 */
+	public boolean isOffHeap() {
+		return tuples instanceof TupleArena;
+	} // isOffHeap
+
 	/************************************************************************************
 	 * Get the name of the table.
 	 *
@@ -877,17 +1555,57 @@ public class Table implements Serializable{
 	} // printIndex
 
 	/************************************************************************************
-	 * Load the table with the given name into memory.
+	 * Load the table with the given name into memory.  Tables are stored as
+	 * snapshots (see Snapshot); files saved by older versions with Java
+	 * serialization are still read.  If the snapshot holds no index, the index
+	 * is rebuilt from the key columns.  Tuples inserted since the table was
+	 * last saved are replayed from its write-ahead log, if it has one.
 	 *
 	 * @param name
 	 *            the name of the table to load
 	 */
 	public static Table load(String name) {
+		return load(DIR, name);
+	} // load
+
+	/************************************************************************************
+	 * Read a table saved by Java serialization, recreating the transient lock
+	 * the stream does not hold.
+	 */
+	private void readObject(ObjectInputStream ois) throws IOException, ClassNotFoundException {
+		ois.defaultReadObject();
+		saving = new ReentrantLock();
+	} // readObject
+
+	/************************************************************************************
+	 * Load the table with the given name from the given directory into memory.
+	 */
+	static Table load(String dir, String name) {
 		Table tab = null;
+		Path path = Paths.get(dir + name + EXT);
+		long lsn = 0;
 		try {
-			ObjectInputStream ois = new ObjectInputStream(new FileInputStream(DIR + name + EXT));
-			tab = (Table) ois.readObject();
-			ois.close();
+			if (!Snapshot.isSnapshot(path)) {
+				ObjectInputStream ois = new ObjectInputStream(new FileInputStream(path.toFile()));
+				tab = (Table) ois.readObject();
+				ois.close();
+				tab.dir = dir;
+			} else {
+				Snapshot.Contents s = Snapshot.read(path);
+				tab = new Table(dir, s.name, s.attribute, s.domain, s.key, s.tuples);
+				lsn = s.lsn;
+				if (s.index != null) {
+					tab.loadIndex(s.index);                      // stored in key order
+				} else {
+					int[] cols = tab.match(tab.key);
+					List<Map.Entry<KeyType, Comparable[]>> entries = new ArrayList<>(tab.tuples.size());
+					for (Comparable[] tup : tab.tuples)
+						entries.add(new AbstractMap.SimpleImmutableEntry<>(new KeyType(tab.extract(tup, cols)), tup));
+					entries.sort(Map.Entry.comparingByKey());
+					tab.loadIndex(entries);
+				} // if
+			} // if
+			tab.recover(lsn);
 		} catch (IOException ex) {
 			out.println("load: IO Exception");
 			ex.printStackTrace();
@@ -899,19 +1617,161 @@ public class Table implements Serializable{
 	} // load
 
 	/************************************************************************************
-	 * Save this table in a file.
+	 * Open the table with the given name without reading its tuples or its
+	 * index, so the time to open it does not depend on its size.  The snapshot
+	 * file is mapped: a block of tuples is read the first time one of its
+	 * tuples is used and keys are looked up in the stored index (see
+	 * SnapshotView).  Tuples inserted afterwards are kept in memory until the
+	 * table is saved.  Tables saved without an index, or by older versions,
+	 * are loaded.
+	 *
+	 * @param name
+	 *            the name of the table to open
+	 */
+	public static Table open(String name) {
+		return open(DIR, name);
+	} // open
+
+	/************************************************************************************
+	 * Open the table with the given name in the given directory without
+	 * reading its tuples or its index.
+	 */
+	static Table open(String dir, String name) {
+		Path path = Paths.get(dir + name + EXT);
+		try {
+			SnapshotView view = Snapshot.isSnapshot(path) ? SnapshotView.open(path) : null;
+			if (view == null || !view.hasIndex()) {
+				if (view != null) view.close();
+				return load(dir, name);
+			} // if
+			Snapshot.Contents h = view.header();
+			List<Comparable[]> tups = view.tuples();
+			Table tab = new Table(dir, h.name, h.attribute, h.domain, h.key, tups, view.index(tups));
+			tab.view = view;
+			tab.recover(h.lsn);
+			return tab;
+		} catch (IOException ex) {
+			out.println("open: IO Exception");
+			ex.printStackTrace();
+			return null;
+		} // try
+	} // open
+
+	/************************************************************************************
+	 * Save this table (with its index) in a file.  A disk resident table
+	 * already keeps its tuples in its data file, which is just flushed; it is
+	 * reopened with the onDisk constructor.
 	 */
 	public void save() {
+		save(true);
+	} // save
+
+	/************************************************************************************
+	 * Save this table in a file as a snapshot, with or without its index.
+	 * Leaving the index out makes the file smaller, but load must then
+	 * rebuild the index.  The row count, the log end and (if stored) the
+	 * index entries are taken with inserts held off; the snapshot of those
+	 * rows is then written to a side file while inserts go on, and only
+	 * renaming it into place and deleting the delta files hold them off
+	 * again.  The write-ahead log (unless it is its database's) then drops
+	 * the records the snapshot holds.  A disk resident table just forces its
+	 * data file, holding off inserts, and empties its log.  A table opened
+	 * lazily always stores its index, as its view then moves onto the new
+	 * snapshot (see SnapshotView.reopen) and lets go of the old file.
+	 *
+	 * @param withIndex
+	 *            whether to store the index
+	 */
+	public void save(boolean withIndex) {
+		saving.lock();
 		try {
-			ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(DIR + name + EXT));
-			oos.writeObject(this);
-			oos.close();
+			if (isOnDisk()) {
+				synchronized (this) {
+					ckptLsn = wal != null ? wal.end() : 0;
+					((FileList) tuples).force();
+					if (wal != null && ownsLog) wal.truncate();
+				} // synchronized
+				return;
+			} // if
+			long lsn = writeSnapshot(withIndex);
+			if (wal != null && ownsLog) wal.truncate(lsn);
 		} catch (IOException ex) {
 			out.println("save: IO Exception");
 			ex.printStackTrace();
+		} finally {
+			saving.unlock();
 		} // try
 	} // save
 
+	/************************************************************************************
+	 * Write a snapshot of an in-memory table in place of its snapshot and
+	 * delta files, with inserts held off only while the rows to write are
+	 * counted and while the file is renamed into place (see save).  The
+	 * caller holds the saving lock and truncates the write-ahead log.
+	 *
+	 * @param withIndex
+	 *            whether to store the index
+	 * @return the LSN the snapshot is current up to
+	 */
+	private long writeSnapshot(boolean withIndex) throws IOException {
+		long lsn;
+		int n;
+		List<Map.Entry<KeyType, Comparable[]>> entries = null;
+		synchronized (this) {
+			lsn = wal != null ? wal.end() : 0;
+			n = tuples.size();
+			if (withIndex || view != null) entries = new ArrayList<>(index.entrySet());
+		} // synchronized
+		List<Comparable[]> rows = new AbstractList<Comparable[]>() {
+			public Comparable[] get(int i) {
+				synchronized (Table.this) {
+					return tuples.get(i);
+				} // synchronized
+			} // get
+			public int size() {
+				return n;
+			} // size
+		};
+		new File(dir).mkdirs();
+		Path merged = Paths.get(dir + name + EXT + ".merge");
+		Snapshot.write(merged, name, attribute, domain, key, rows, entries, lsn);
+		synchronized (this) {
+			Path path = Paths.get(dir + name + EXT);
+			Files.move(merged, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			if (view != null) view.reopen(path);
+			File[] files = new File(dir).listFiles((d, f) -> f.matches(Pattern.quote(name + EXT) + "\\.\\d+"));
+			for (File f : files) f.delete();
+			checkpointed = n;
+			deltas = 0;
+			ckptLsn = lsn;
+		} // synchronized
+		return lsn;
+	} // writeSnapshot
+
+	/************************************************************************************
+	 * Close this table: a disk resident table writes out its append buffer
+	 * and cached pages and closes its data file (releasing its frames in the
+	 * buffer pool), a table opened lazily closes its snapshot file, and a
+	 * table with a write-ahead log of its own closes it.
+	 * The table cannot be used afterwards; tuples not yet saved or
+	 * checkpointed are replayed from the log when it is next loaded.
+	 */
+	public void close() {
+		saving.lock();
+		try {
+			synchronized (this) {
+				if (isOnDisk()) ((FileList) tuples).close();
+				if (view != null) view.close();
+				if (wal != null && ownsLog) wal.close();
+			} // synchronized
+		} catch (IOException ex) {
+			out.println("close: IO Exception");
+			ex.printStackTrace();
+		} finally {
+			saving.unlock();
+		} // try
+	} // close
+
 	// ----------------------------------------------------------------------------------
 	// Private Methods
 	// ----------------------------------------------------------------------------------
@@ -975,13 +1835,69 @@ public class Table implements Serializable{
 	 * @return a smaller tuple extracted from tuple t
 	 */
 	private Comparable[] extract(Comparable[] t, String[] column) {
-		Comparable[] tup = new Comparable[column.length];
-		int[] colPos = match(column);
-		for (int j = 0; j < column.length; j++)
+		return extract(t, match(column));
+	} // extract
+
+	/************************************************************************************
+	 * Extract the attributes at the given column positions from tuple t.
+	 *
+	 * @param t
+	 *            the tuple to extract from
+	 * @param colPos
+	 *            the column positions
+	 * @return a smaller tuple extracted from tuple t
+	 */
+	private Comparable[] extract(Comparable[] t, int[] colPos) {
+		Comparable[] tup = new Comparable[colPos.length];
+		for (int j = 0; j < colPos.length; j++)
 			tup[j] = t[colPos[j]];
 		return tup;
 	} // extract
 
+	/************************************************************************************
+	 * Build an index mapping the keys of the rows in the store to their record
+	 * ids.
+	 *
+	 * @param store
+	 *            the store holding the tuples
+	 * @param rows
+	 *            the same store, scanned to read the keys
+	 * @return the index
+	 */
+	private RidMap ridIndex(RidMap.Store store, Row.Source rows) {
+		RidMap rids = new RidMap(store, new BpTreeMap<>(KeyType.class, Long.class));
+		int[] cols = match(key);
+		for (Row.Cursor c = rows.cursor(); c.next(); ) rids.putRid(keyOf(c, cols), c.rid());
+		return rids;
+	} // ridIndex
+
+	/************************************************************************************
+	 * Return the key of the row, decoding just its key columns.
+	 *
+	 * @param r
+	 *            the row
+	 * @param colPos
+	 *            the positions of the key columns
+	 * @return the key
+	 */
+	private static KeyType keyOf(Row r, int[] colPos) {
+		Comparable[] keyVal = new Comparable[colPos.length];
+		for (int j = 0; j < colPos.length; j++)
+			keyVal[j] = r.get(colPos[j]);
+		return new KeyType(keyVal);
+	} // keyOf
+
+	/************************************************************************************
+	 * This class is the flyweight Row used to scan the tuples of an on-heap
+	 * table.
+	 */
+	private static class ArrayRow implements Row {
+		Comparable[] tuple;
+
+		public Comparable get(int j) { return tuple[j]; }
+		public Comparable[] toArray() { return tuple.clone(); }
+	} // ArrayRow class
+
 	/************************************************************************************
 	 * Check the size of the tuple (number of elements in list) as well as the
 	 * type of each value to ensure it is from the right domain.
@@ -1008,7 +1924,7 @@ public class Table implements Serializable{
 	 *            the array of class name (e.g., {"Integer", "String"})
 	 * @return an array of Java classes
 	 */
-	private static Class[] findClass(String[] className) {
+	static Class[] findClass(String[] className) {
 		Class[] classArray = new Class[className.length];
 
 		for (int i = 0; i < className.length; i++) {
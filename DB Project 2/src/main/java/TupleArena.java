@@ -0,0 +1,375 @@
+/*******************************************************************************
+ * @file  TupleArena.java
+ */
+
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/*******************************************************************************
+ * This class keeps the tuples of an off-heap table.  Each tuple is encoded by
+ * a TupleCodec into a record appended to the current chunk, a direct buffer of
+ * CHUNK_SIZE bytes outside the Java heap.  The only per-row data on the heap
+ * is the record's address in a long array, so a table of millions of rows is
+ * a few dozen objects instead of millions of arrays of boxed values, and the
+ * garbage collector has next to nothing to trace or copy.
+ *
+ * A record id (rid) is the row's position in the address array and never
+ * changes: an update that does not fit in place writes the record again at the
+ * end of the arena and just moves the address.  A deleted row keeps its rid as
+ * a hole.  The space of deleted and moved records is reclaimed by compact.
+ *
+ * As a List the arena decodes a new tuple for every get.  Code that only reads
+ * some columns should use a Cursor instead, a flyweight Row moved from record
+ * to record that decodes just the values asked for.
+ */
+public class TupleArena
+       extends AbstractList <Comparable []>
+       implements RandomAccess, RidMap.Store, Row.Source
+{
+	/**
+	 * The size of the direct buffers holding the records.
+	 */
+	public static final int CHUNK_SIZE = 1 << 20;
+
+	/**
+	 * The codec encoding the records.
+	 */
+	private final TupleCodec codec;
+
+	/**
+	 * The chunks holding the records.
+	 */
+	private final List <ByteBuffer> chunks = new ArrayList <> ();
+
+	/**
+	 * The position in the last chunk where the next record goes.
+	 */
+	private int tailPos = CHUNK_SIZE;
+
+	/**
+	 * The address of each row (chunk << 32 | position), -1 for a deleted row.
+	 */
+	private long [] addr = new long [1024];
+
+	/**
+	 * The number of rows (live or deleted) and of live rows.
+	 */
+	private int rows, live;
+
+	/**
+	 * The rids of the live rows in list order, once rows have been deleted
+	 * (null while there are none, or when it must be rebuilt).
+	 */
+	private int [] order;
+
+	/**
+	 * The number of bytes held by deleted and moved records.
+	 */
+	private long garbage;
+
+	/***************************************************************************
+	 * Construct an empty arena for tuples with the given domains.
+	 *
+	 * @param domain  the domains (data types) of the attributes
+	 */
+	public TupleArena (Class [] domain)
+	{
+		codec = new TupleCodec (domain);
+	} // constructor
+
+	/***************************************************************************
+	 * Add a tuple at the end of the list.
+	 *
+	 * @param tuple  the tuple to add
+	 * @return  whether the tuple was added
+	 */
+	public boolean add (Comparable [] tuple)
+	{
+		return insert (tuple) >= 0;
+	} // add
+
+	/***************************************************************************
+	 * Add a tuple (as add does) and return its record id.
+	 *
+	 * @param tuple  the tuple to add
+	 * @return  the record id
+	 */
+	public long insert (Comparable [] tuple)
+	{
+		long a = reserve (codec.encodedSize (tuple));
+		codec.encode (tuple, chunks.get ((int) (a >>> 32)), (int) a);
+		return addRow (a);
+	} // insert
+
+	/***************************************************************************
+	 * Add a copy of the record the cursor is on (of an arena with the same
+	 * domains), copying its bytes without decoding them.
+	 *
+	 * @param c  the cursor
+	 * @return  the record id
+	 */
+	public long insert (Cursor c)
+	{
+		int len = codec.length (c.buf, c.off);
+		long a = reserve (len);
+		ByteBuffer to = chunks.get ((int) (a >>> 32));
+		to.put ((int) a, c.buf, c.off, len);
+		return addRow (a);
+	} // insert
+
+	/***************************************************************************
+	 * Return the ith tuple of the list (decoded anew).
+	 *
+	 * @param i  the list position
+	 * @return  the tuple
+	 */
+	public Comparable [] get (int i)
+	{
+		if (i < 0 || i >= live) throw new IndexOutOfBoundsException ("TupleArena.get: " + i);
+		return fetch (ridOf (i));
+	} // get
+
+	/***************************************************************************
+	 * Return the record id of the ith tuple of the list.
+	 *
+	 * @param i  the list position
+	 * @return  the record id
+	 */
+	public long ridOf (int i)
+	{
+		if (live == rows) return i;
+		if (order == null) {
+			order = new int [live];
+			for (int r = 0, k = 0; r < rows; r++) if (addr [r] >= 0) order [k++] = r;
+		} // if
+		return order [i];
+	} // ridOf
+
+	/***************************************************************************
+	 * Return the tuple with the given record id.
+	 *
+	 * @param rid  the record id
+	 * @return  the tuple, or null if there is no such (live) row
+	 */
+	public Comparable [] fetch (long rid)
+	{
+		if (rid < 0 || rid >= rows || addr [(int) rid] < 0) return null;
+		long a = addr [(int) rid];
+		return codec.decode (chunks.get ((int) (a >>> 32)), (int) a);
+	} // fetch
+
+	/***************************************************************************
+	 * Replace the tuple with the given record id.  The new record overwrites
+	 * the old one if it is no longer; otherwise it is appended.
+	 *
+	 * @param rid    the record id
+	 * @param tuple  the new tuple
+	 * @return  the record id, or -1 if there is no such (live) row
+	 */
+	public long update (long rid, Comparable [] tuple)
+	{
+		if (rid < 0 || rid >= rows || addr [(int) rid] < 0) return -1;
+		long a = addr [(int) rid];
+		ByteBuffer b = chunks.get ((int) (a >>> 32));
+		int oldLen = codec.length (b, (int) a), len = codec.encodedSize (tuple);
+		if (len <= oldLen) {
+			codec.encode (tuple, b, (int) a);
+			garbage += oldLen - len;
+		} else {
+			long to = reserve (len);
+			codec.encode (tuple, chunks.get ((int) (to >>> 32)), (int) to);
+			addr [(int) rid] = to;
+			garbage += oldLen;
+		} // if
+		return rid;
+	} // update
+
+	/***************************************************************************
+	 * Delete the row with the given record id.
+	 *
+	 * @param rid  the record id
+	 * @return  whether a live row was deleted
+	 */
+	public boolean delete (long rid)
+	{
+		if (rid < 0 || rid >= rows || addr [(int) rid] < 0) return false;
+		long a = addr [(int) rid];
+		garbage += codec.length (chunks.get ((int) (a >>> 32)), (int) a);
+		addr [(int) rid] = -1;
+		live--;
+		order = null;
+		modCount++;
+		return true;
+	} // delete
+
+	/***************************************************************************
+	 * Remove the ith tuple (see delete).
+	 *
+	 * @param i  the list position
+	 * @return  the removed tuple
+	 */
+	public Comparable [] remove (int i)
+	{
+		long rid = ridOf (i);
+		Comparable [] tuple = fetch (rid);
+		delete (rid);
+		return tuple;
+	} // remove
+
+	/***************************************************************************
+	 * Return the number of (live) tuples.
+	 *
+	 * @return  the size of the list
+	 */
+	public int size ()
+	{
+		return live;
+	} // size
+
+	/***************************************************************************
+	 * Return the number of bytes the records take off the heap.
+	 *
+	 * @return  the bytes allocated
+	 */
+	public long allocated ()
+	{
+		return (long) chunks.size () * CHUNK_SIZE;
+	} // allocated
+
+	/***************************************************************************
+	 * Copy the live records into new chunks, dropping the space of deleted and
+	 * moved records.  Record ids stay the same.  The old chunks are freed when
+	 * the garbage collector reclaims them.
+	 *
+	 * @return  the number of bytes reclaimed
+	 */
+	public long compact ()
+	{
+		if (garbage == 0) return 0;
+		long before = allocated ();
+		List <ByteBuffer> old = new ArrayList <> (chunks);
+		chunks.clear ();
+		tailPos = CHUNK_SIZE;
+		for (int r = 0; r < rows; r++) {
+			if (addr [r] < 0) continue;
+			ByteBuffer b = old.get ((int) (addr [r] >>> 32));
+			int off = (int) addr [r], len = codec.length (b, off);
+			long a = reserve (len);
+			chunks.get ((int) (a >>> 32)).put ((int) a, b, off, len);
+			addr [r] = a;
+		} // for
+		garbage = 0;
+		return before - allocated ();
+	} // compact
+
+	/***************************************************************************
+	 * Return a cursor positioned before the first live row.
+	 *
+	 * @return  the cursor
+	 */
+	public Cursor cursor ()
+	{
+		return new Cursor ();
+	} // cursor
+
+	/***************************************************************************
+	 * This inner class is a flyweight row that visits the live rows of the
+	 * arena in list order (next) or goes to a given row (seek).  It decodes
+	 * only the values asked for, straight out of the record.
+	 */
+	public class Cursor
+	       implements Row.Cursor
+	{
+		private int rid = -1;
+		private ByteBuffer buf;
+		private int off;
+
+		/***********************************************************************
+		 * Move to the next live row.
+		 *
+		 * @return  whether there is one
+		 */
+		public boolean next ()
+		{
+			while (++rid < rows) {
+				if (addr [rid] >= 0) {
+					at (addr [rid]);
+					return true;
+				} // if
+			} // while
+			return false;
+		} // next
+
+		/***********************************************************************
+		 * Move to the row with the given record id.
+		 *
+		 * @param _rid  the record id
+		 * @return  whether the row is live
+		 */
+		public boolean seek (long _rid)
+		{
+			if (_rid < 0 || _rid >= rows || addr [(int) _rid] < 0) return false;
+			rid = (int) _rid;
+			at (addr [rid]);
+			return true;
+		} // seek
+
+		/** Return the record id of the current row. */
+		public long rid () { return rid; }
+
+		public Comparable get (int j) { return codec.decode (buf, off, j); }
+		public int getInt (int j) { return codec.getInt (buf, off, j); }
+		public long getLong (int j) { return codec.getLong (buf, off, j); }
+		public double getDouble (int j) { return codec.getDouble (buf, off, j); }
+		public String getString (int j) { return (String) codec.decode (buf, off, j); }
+		public Comparable [] toArray () { return codec.decode (buf, off); }
+
+		/***********************************************************************
+		 * Point the cursor at the record with the given address.
+		 */
+		private void at (long a)
+		{
+			buf = chunks.get ((int) (a >>> 32));
+			off = (int) a;
+		} // at
+	} // Cursor class
+
+	// ------------------------------------------------------------------------
+	// Private Methods
+	// ------------------------------------------------------------------------
+
+	/***************************************************************************
+	 * Make room for a record of len bytes and return its address.
+	 */
+	private long reserve (int len)
+	{
+		if (tailPos + len > CHUNK_SIZE) {
+			chunks.add (ByteBuffer.allocateDirect (CHUNK_SIZE));
+			tailPos = 0;
+		} // if
+		long a = (long) (chunks.size () - 1) << 32 | tailPos;
+		tailPos += len;
+		return a;
+	} // reserve
+
+	/***************************************************************************
+	 * Add a row with the record at the given address and return its rid.
+	 */
+	private int addRow (long a)
+	{
+		if (rows == addr.length) addr = Arrays.copyOf (addr, rows * 2);
+		addr [rows] = a;
+		if (order != null) {
+			if (live == order.length) order = Arrays.copyOf (order, Math.max (16, live * 2));
+			order [live] = rows;
+		} // if
+		live++;
+		modCount++;
+		return rows++;
+	} // addRow
+
+} // TupleArena class
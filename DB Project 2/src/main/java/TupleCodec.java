@@ -0,0 +1,360 @@
+/*******************************************************************************
+ * @file  TupleCodec.java
+ */
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/*******************************************************************************
+ * This class packs tuples into records and unpacks them again for one table
+ * schema (domain array).  Everything that depends only on the schema -- the
+ * kind of each column and its byte offset within the record -- is worked out
+ * once in the constructor, so encoding and decoding just walk the columns and
+ * read or write primitives directly at absolute positions of a ByteBuffer,
+ * without temporary arrays.
+ *
+ * Records are variable length.  The fixed part holds the numeric columns and,
+ * for each String column, the (unsigned short) offset where the string's
+ * UTF-8 bytes end.  The strings follow the fixed part in column order, so
+ * string j starts where the previous string ends (or at the end of the fixed
+ * part) and a record is self-describing without padding.
+ *
+ *     | fixed columns and string end offsets | string bytes ... |
+ */
+public class TupleCodec
+{
+	/***************************************************************************
+	 * The kinds of columns, each with its size and its encoder/decoder.
+	 */
+	private enum Kind
+	{
+		STRING (2) {                                    // end offset of the string in the record
+			void put (ByteBuffer b, int off, Comparable v) { b.putShort (off, (short) (int) (Integer) v); }
+			Comparable get (ByteBuffer b, int off) { return b.getShort (off) & 0xFFFF; }
+		},
+		DOUBLE (8) {
+			void put (ByteBuffer b, int off, Comparable v) { b.putDouble (off, (Double) v); }
+			Comparable get (ByteBuffer b, int off) { return b.getDouble (off); }
+		},
+		INTEGER (4) {
+			void put (ByteBuffer b, int off, Comparable v) { b.putInt (off, (Integer) v); }
+			Comparable get (ByteBuffer b, int off) { return b.getInt (off); }
+		},
+		LONG (8) {
+			void put (ByteBuffer b, int off, Comparable v) { b.putLong (off, (Long) v); }
+			Comparable get (ByteBuffer b, int off) { return b.getLong (off); }
+		},
+		FLOAT (4) {
+			void put (ByteBuffer b, int off, Comparable v) { b.putFloat (off, (Float) v); }
+			Comparable get (ByteBuffer b, int off) { return b.getFloat (off); }
+		},
+		SHORT (2) {
+			void put (ByteBuffer b, int off, Comparable v) { b.putShort (off, (Short) v); }
+			Comparable get (ByteBuffer b, int off) { return b.getShort (off); }
+		},
+		CHARACTER (2) {
+			void put (ByteBuffer b, int off, Comparable v) { b.putChar (off, (Character) v); }
+			Comparable get (ByteBuffer b, int off) { return b.getChar (off); }
+		},
+		BYTE (1) {
+			void put (ByteBuffer b, int off, Comparable v) { b.put (off, (Byte) v); }
+			Comparable get (ByteBuffer b, int off) { return b.get (off); }
+		};
+
+		final int size;
+
+		Kind (int _size) { size = _size; }
+
+		/** Write/read the value kept in the fixed part of a record at off (for a
+		 *  String, the end offset of its bytes, which follow the fixed part). */
+		abstract void put (ByteBuffer b, int off, Comparable v);
+
+		abstract Comparable get (ByteBuffer b, int off);
+
+		/** Return the kind used to store values of class c. */
+		static Kind of (Class c)
+		{
+			if (c == String.class)    return STRING;
+			if (c == Double.class)    return DOUBLE;
+			if (c == Integer.class)   return INTEGER;
+			if (c == Long.class)      return LONG;
+			if (c == Float.class)     return FLOAT;
+			if (c == Short.class)     return SHORT;
+			if (c == Character.class) return CHARACTER;
+			if (c == Byte.class)      return BYTE;
+			throw new IllegalArgumentException ("TupleCodec: unsupported domain " + c);
+		} // of
+	} // Kind enum
+
+	/**
+	 * The kind of each column.
+	 */
+	private final Kind [] kind;
+
+	/**
+	 * The byte offset of each column within a record.
+	 */
+	private final int [] offset;
+
+	/**
+	 * For each String column, the previous String column (-1 if none).
+	 */
+	private final int [] prevString;
+
+	/**
+	 * The number of bytes in the fixed part of a record.
+	 */
+	private final int fixedSize;
+
+	/**
+	 * The largest record length (offsets are stored as unsigned shorts).
+	 */
+	public static final int MAX_RECORD = 0xFFFF;
+
+	/***************************************************************************
+	 * Construct a codec for tuples with the given domains.
+	 *
+	 * @param domain  the domains (data types) of the attributes
+	 */
+	public TupleCodec (Class [] domain)
+	{
+		kind       = new Kind [domain.length];
+		offset     = new int [domain.length];
+		prevString = new int [domain.length];
+		int off = 0, prev = -1;
+		for (int j = 0; j < domain.length; j++) {
+			kind [j]   = Kind.of (domain [j]);
+			offset [j] = off;
+			off       += kind [j].size;
+			if (kind [j] == Kind.STRING) {
+				prevString [j] = prev;
+				prev = j;
+			} // if
+		} // for
+		fixedSize = off;
+	} // constructor
+
+	/***************************************************************************
+	 * Return the number of bytes in the fixed part of a record (the size of a
+	 * record whose strings are all empty).
+	 *
+	 * @return  the fixed record size
+	 */
+	public int fixedSize ()
+	{
+		return fixedSize;
+	} // fixedSize
+
+	/***************************************************************************
+	 * Return the number of bytes the tuple takes when encoded.
+	 *
+	 * @param tuple  the tuple to measure
+	 * @return  the record length in bytes
+	 * @throws IllegalArgumentException  if the record would exceed MAX_RECORD
+	 */
+	public int encodedSize (Comparable [] tuple)
+	{
+		int n = fixedSize;
+		for (int j = 0; j < kind.length; j++) {
+			if (kind [j] == Kind.STRING) n += utf8Length ((String) tuple [j]);
+		} // for
+		if (n > MAX_RECORD) throw new IllegalArgumentException ("TupleCodec: record of " + n + " bytes is too long");
+		return n;
+	} // encodedSize
+
+	/***************************************************************************
+	 * Encode the tuple into the buffer as a record starting at position off.
+	 * The buffer must have room for encodedSize (tuple) bytes.
+	 *
+	 * @param tuple  the tuple to encode
+	 * @param b      the buffer to write into
+	 * @param off    the position of the record in the buffer
+	 * @return  the record length in bytes
+	 */
+	public int encode (Comparable [] tuple, ByteBuffer b, int off)
+	{
+		int end = fixedSize;
+		for (int j = 0; j < kind.length; j++) {
+			if (kind [j] == Kind.STRING) {
+				end += putUtf8 (b, off + end, (String) tuple [j]);
+				kind [j].put (b, off + offset [j], end);
+			} else {
+				kind [j].put (b, off + offset [j], tuple [j]);
+			} // if
+		} // for
+		return end;
+	} // encode
+
+	/***************************************************************************
+	 * Decode the record starting at position off of the buffer.
+	 *
+	 * @param b    the buffer holding the record
+	 * @param off  the position of the record in the buffer
+	 * @return  the decoded tuple
+	 */
+	public Comparable [] decode (ByteBuffer b, int off)
+	{
+		Comparable [] tuple = new Comparable [kind.length];
+		int start = fixedSize;
+		for (int j = 0; j < kind.length; j++) {
+			if (kind [j] == Kind.STRING) {
+				int end = b.getShort (off + offset [j]) & 0xFFFF;
+				tuple [j] = getUtf8 (b, off + start, end - start);
+				start = end;
+			} else {
+				tuple [j] = kind [j].get (b, off + offset [j]);
+			} // if
+		} // for
+		return tuple;
+	} // decode
+
+	/***************************************************************************
+	 * Decode just column j of the record starting at position off.
+	 *
+	 * @param b    the buffer holding the record
+	 * @param off  the position of the record in the buffer
+	 * @param j    the column to decode
+	 * @return  the value of column j
+	 */
+	public Comparable decode (ByteBuffer b, int off, int j)
+	{
+		if (kind [j] != Kind.STRING) return kind [j].get (b, off + offset [j]);
+		int p     = prevString [j];
+		int start = p < 0 ? fixedSize : b.getShort (off + offset [p]) & 0xFFFF;
+		int end   = b.getShort (off + offset [j]) & 0xFFFF;
+		return getUtf8 (b, off + start, end - start);
+	} // decode
+
+	/***************************************************************************
+	 * Return the length of the record starting at position off (where its last
+	 * string ends, or the fixed size if it has no strings).
+	 *
+	 * @param b    the buffer holding the record
+	 * @param off  the position of the record in the buffer
+	 * @return  the record length in bytes
+	 */
+	public int length (ByteBuffer b, int off)
+	{
+		for (int j = kind.length - 1; j >= 0; j--) {
+			if (kind [j] == Kind.STRING) return b.getShort (off + offset [j]) & 0xFFFF;
+		} // for
+		return fixedSize;
+	} // length
+
+	/***************************************************************************
+	 * Read column j of the record starting at position off as a primitive,
+	 * without boxing it (used by flyweight rows, see TupleArena.Cursor).  The
+	 * column must have the matching domain.
+	 *
+	 * @param b    the buffer holding the record
+	 * @param off  the position of the record in the buffer
+	 * @param j    the column to read
+	 * @return  the value of column j
+	 * @throws ClassCastException  if column j has another domain
+	 */
+	public int getInt (ByteBuffer b, int off, int j)
+	{
+		check (j, Kind.INTEGER);
+		return b.getInt (off + offset [j]);
+	} // getInt
+
+	public long getLong (ByteBuffer b, int off, int j)
+	{
+		check (j, Kind.LONG);
+		return b.getLong (off + offset [j]);
+	} // getLong
+
+	public double getDouble (ByteBuffer b, int off, int j)
+	{
+		check (j, Kind.DOUBLE);
+		return b.getDouble (off + offset [j]);
+	} // getDouble
+
+	/***************************************************************************
+	 * Return the number of columns and, for column j, whether it is a String
+	 * column, its offset in the fixed part and its size there (used by
+	 * PageCompressor to work on records column by column).
+	 */
+	int columns () { return kind.length; }
+	boolean isString (int j) { return kind [j] == Kind.STRING; }
+	int offset (int j) { return offset [j]; }
+	int size (int j) { return kind [j].size; }
+
+	// ------------------------------------------------------------------------
+	// Private Methods
+	// ------------------------------------------------------------------------
+
+	/***************************************************************************
+	 * Check that column j is of the given kind.
+	 */
+	private void check (int j, Kind k)
+	{
+		if (kind [j] != k) throw new ClassCastException ("TupleCodec: column " + j + " is " + kind [j] + ", not " + k);
+	} // check
+
+	/***************************************************************************
+	 * Return the number of bytes in the UTF-8 encoding of the string (unpaired
+	 * surrogates are encoded as '?', as String.getBytes does).
+	 */
+	private static int utf8Length (String s)
+	{
+		int n = 0;
+		for (int i = 0; i < s.length (); i++) {
+			char c = s.charAt (i);
+			if (c < 0x80) n += 1;
+			else if (c < 0x800) n += 2;
+			else if (Character.isHighSurrogate (c) && i + 1 < s.length () && Character.isLowSurrogate (s.charAt (i + 1))) {
+				n += 4;
+				i++;
+			} else if (Character.isSurrogate (c)) n += 1;
+			else n += 3;
+		} // for
+		return n;
+	} // utf8Length
+
+	/***************************************************************************
+	 * Write the UTF-8 encoding of the string at position pos.
+	 *
+	 * @return  the number of bytes written
+	 */
+	private static int putUtf8 (ByteBuffer b, int pos, String s)
+	{
+		int start = pos;
+		for (int i = 0; i < s.length (); i++) {
+			char c = s.charAt (i);
+			if (c < 0x80) {
+				b.put (pos++, (byte) c);
+			} else if (c < 0x800) {
+				b.put (pos++, (byte) (0xC0 | c >> 6));
+				b.put (pos++, (byte) (0x80 | c & 0x3F));
+			} else if (Character.isHighSurrogate (c) && i + 1 < s.length () && Character.isLowSurrogate (s.charAt (i + 1))) {
+				int cp = Character.toCodePoint (c, s.charAt (++i));
+				b.put (pos++, (byte) (0xF0 | cp >> 18));
+				b.put (pos++, (byte) (0x80 | cp >> 12 & 0x3F));
+				b.put (pos++, (byte) (0x80 | cp >> 6 & 0x3F));
+				b.put (pos++, (byte) (0x80 | cp & 0x3F));
+			} else if (Character.isSurrogate (c)) {
+				b.put (pos++, (byte) '?');
+			} else {
+				b.put (pos++, (byte) (0xE0 | c >> 12));
+				b.put (pos++, (byte) (0x80 | c >> 6 & 0x3F));
+				b.put (pos++, (byte) (0x80 | c & 0x3F));
+			} // if
+		} // for
+		return pos - start;
+	} // putUtf8
+
+	/***************************************************************************
+	 * Read a string from the n UTF-8 bytes at position pos.
+	 */
+	private static String getUtf8 (ByteBuffer b, int pos, int n)
+	{
+		if (b.hasArray ()) {
+			return new String (b.array (), b.arrayOffset () + pos, n, StandardCharsets.UTF_8);
+		} // if
+		byte [] bytes = new byte [n];                   // direct and mapped buffers
+		b.get (pos, bytes);
+		return new String (bytes, StandardCharsets.UTF_8);
+	} // getUtf8
+
+} // TupleCodec class
@@ -0,0 +1,425 @@
+/*******************************************************************************
+ * @file  WriteAheadLog.java
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/*******************************************************************************
+ * This class implements an append-only write-ahead log of the tuples inserted
+ * into one table or, for a Database, into several: each table logs its tuples
+ * in its own stream (numbered from 0 in the order their domains are given or
+ * added), so they share the log's writes and forces.  An insert appends a
+ * record to an in-memory buffer and gets back its log sequence number (LSN,
+ * the log position just past the record);
+ * commit (lsn) then returns once the record is as durable as the Sync policy
+ * says.  Commits use group commit: the first committer to find the log not
+ * being flushed becomes the leader, swaps in the spare buffer (so inserts go
+ * on) and writes and forces everything appended so far, while the other
+ * committers wait for it -- so many concurrent inserts share one force ().
+ *
+ * The file starts with MAGIC and the LSN of its first record (see truncate).
+ * Each record is
+ *
+ *     | payload length (int) | CRC-32C of payload (int) | stream (short) | tuple (TupleCodec) |
+ *
+ * Opening a log replays its records and cuts off a torn or corrupt tail, which
+ * can only hold records whose commit never returned.
+ */
+public class WriteAheadLog
+       implements Closeable
+{
+	/***************************************************************************
+	 * This interface is implemented by the actions applying logged tuples
+	 * during replay.
+	 */
+	public interface Redo
+	{
+		/** Apply the tuple logged in the stream by the record with the given LSN. */
+		void apply (int stream, long lsn, Comparable [] tuple);
+	} // Redo interface
+
+	/***************************************************************************
+	 * The policies for making committed records durable.
+	 */
+	public enum Sync
+	{
+		NONE,                                           // buffered; written when the buffer fills
+		WRITE,                                          // written to the OS (survives a process crash)
+		FORCE                                           // forced to disk (survives a system crash)
+	} // Sync enum
+
+	/**
+	 * The magic number at the start of a log ("TWAL").
+	 */
+	private static final int MAGIC = 0x5457414C;
+
+	/**
+	 * The sizes of the file header and of a record header (length, CRC and
+	 * stream).
+	 */
+	private static final int HEADER = 12, RECORD_HEADER = 10;
+
+	/**
+	 * The initial size of the append buffers and, with Sync.NONE, the amount
+	 * buffered before it is written.
+	 */
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * The path and channel of the log file.
+	 */
+	private final Path path;
+	private FileChannel ch;
+
+	/**
+	 * The codec for the tuples of each stream.
+	 */
+	private final List <TupleCodec> codecs = new ArrayList <> ();
+
+	/**
+	 * The durability policy.
+	 */
+	private volatile Sync sync;
+
+	/**
+	 * The buffer records are appended to and the spare one (null while the
+	 * leader is flushing it).
+	 */
+	private ByteBuffer buf, spare;
+
+	/**
+	 * The LSN of the start of the file, the LSN just past the last appended
+	 * record and the LSN up to which the log is durable.
+	 */
+	private long base, appended, synced;
+
+	/**
+	 * Whether a leader is flushing the log.
+	 */
+	private boolean flushing;
+
+	/***************************************************************************
+	 * Open (or create) the log of one table in the given file and replay its
+	 * records.
+	 *
+	 * @param _path   the log file
+	 * @param domain  the domains of the logged tuples
+	 * @param _sync   the durability policy
+	 * @param redo    the action to apply to each logged tuple (or null)
+	 * @throws IOException  if the file cannot be opened or is not a log
+	 */
+	public WriteAheadLog (Path _path, Class [] domain, Sync _sync, Consumer <Comparable []> redo) throws IOException
+	{
+		this (_path, Collections.singletonList (domain), _sync, redo == null ? null : (i, lsn, t) -> redo.accept (t));
+	} // constructor
+
+	/***************************************************************************
+	 * Open (or create) a log with a stream for each of the given domains and
+	 * replay its records.
+	 *
+	 * @param _path    the log file
+	 * @param domains  the domains of the tuples logged in each stream
+	 * @param _sync    the durability policy
+	 * @param redo     the action to apply to each logged tuple (or null)
+	 * @throws IOException  if the file cannot be opened or is not a log
+	 */
+	public WriteAheadLog (Path _path, List <Class []> domains, Sync _sync, Redo redo) throws IOException
+	{
+		path  = _path;
+		for (Class [] d : domains) codecs.add (new TupleCodec (d));
+		ch    = FileChannel.open (path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		sync  = _sync;
+		buf   = ByteBuffer.allocate (BUFFER_SIZE);
+		spare = ByteBuffer.allocate (BUFFER_SIZE);
+		try {
+			if (ch.size () < HEADER) {
+				writeHeader (0);
+			} else {
+				ByteBuffer h = ByteBuffer.allocate (HEADER);
+				readFully (h, 0);
+				if (h.getInt (0) != MAGIC) throw new IOException ("WriteAheadLog: " + path + " is not a log");
+				base = h.getLong (4);
+			} // if
+			long end = replay (redo);
+			if (end < ch.size ()) ch.truncate (end);                // cut off a torn tail
+			ch.position (end);
+			appended = synced = base + end - HEADER;
+		} catch (IOException ex) {
+			ch.close ();
+			throw ex;
+		} // try
+	} // constructor
+
+	/***************************************************************************
+	 * Set the durability policy.
+	 *
+	 * @param _sync  the new policy
+	 */
+	public void setSync (Sync _sync)
+	{
+		sync = _sync;
+	} // setSync
+
+	/***************************************************************************
+	 * Add a stream for tuples with the given domains.
+	 *
+	 * @param domain  the domains of the tuples
+	 * @return  the number of the new stream
+	 */
+	public synchronized int addStream (Class [] domain)
+	{
+		codecs.add (new TupleCodec (domain));
+		return codecs.size () - 1;
+	} // addStream
+
+	/***************************************************************************
+	 * Append a record for the tuple to the log (in memory).
+	 *
+	 * @param tuple  the inserted tuple
+	 * @return  the LSN of the record, to be passed to commit
+	 */
+	public long append (Comparable [] tuple)
+	{
+		return append (0, tuple);
+	} // append
+
+	/***************************************************************************
+	 * Append a record for the tuple to a stream of the log (in memory).
+	 *
+	 * @param stream  the stream (table) the tuple was inserted into
+	 * @param tuple   the inserted tuple
+	 * @return  the LSN of the record, to be passed to commit
+	 */
+	public synchronized long append (int stream, Comparable [] tuple)
+	{
+		TupleCodec codec = codecs.get (stream);
+		int len = 2 + codec.encodedSize (tuple);
+		if (buf.remaining () < 8 + len) {
+			ByteBuffer bigger = ByteBuffer.allocate (Math.max (2 * buf.capacity (), buf.position () + 8 + len));
+			buf = bigger.put (buf.flip ());
+		} // if
+		int pos = buf.position ();
+		buf.putShort (pos + 8, (short) stream);
+		codec.encode (tuple, buf, pos + RECORD_HEADER);
+		CRC32C crc = new CRC32C ();
+		crc.update (buf.array (), buf.arrayOffset () + pos + 8, len);
+		buf.putInt (len).putInt ((int) crc.getValue ()).position (pos + 8 + len);
+		appended += 8 + len;
+		return appended;
+	} // append
+
+	/***************************************************************************
+	 * Wait until the record with the given LSN is durable according to the
+	 * policy.  With Sync.NONE this only writes the log when the buffer is full.
+	 *
+	 * @param lsn  the LSN returned by append
+	 * @throws IOException  if the log cannot be written
+	 */
+	public void commit (long lsn) throws IOException
+	{
+		sync (lsn, sync);
+	} // commit
+
+	/***************************************************************************
+	 * Write (and, unless the policy is Sync.NONE, force) everything appended.
+	 *
+	 * @throws IOException  if the log cannot be written
+	 */
+	public void flush () throws IOException
+	{
+		Sync s = sync;
+		sync (end (), s == Sync.NONE ? Sync.WRITE : s);
+	} // flush
+
+	/***************************************************************************
+	 * Return the LSN just past the last appended record.
+	 *
+	 * @return  the end of the log
+	 */
+	public synchronized long end ()
+	{
+		return appended;
+	} // end
+
+	/***************************************************************************
+	 * Discard all the records appended so far, which the caller has made
+	 * durable some other way (e.g., by saving the table while no inserts could
+	 * happen).
+	 *
+	 * @throws IOException  if the log cannot be written
+	 */
+	public synchronized void truncate () throws IOException
+	{
+		truncate (appended);
+	} // truncate
+
+	/***************************************************************************
+	 * Discard the records before the given LSN (e.g., the LSN at which a
+	 * checkpoint started, once everything logged before it is on disk).  LSNs
+	 * keep increasing: the header of the file records the LSN of its first
+	 * record.  The records from lsn on that are already in the file are
+	 * copied to a new file that replaces it; appends wait only for this copy,
+	 * which holds just the records logged since the checkpoint started.
+	 *
+	 * @param lsn  the LSN of the first record to keep
+	 * @throws IOException  if the log cannot be written
+	 */
+	public synchronized void truncate (long lsn) throws IOException
+	{
+		awaitLeader ();
+		long written = appended - buf.position ();           // the end of the records in the file
+		if (lsn <= base) return;
+		if (lsn >= written) {                                // only buffered records are kept
+			buf.flip ().position ((int) (Math.min (lsn, appended) - written));
+			buf.compact ();
+			ch.truncate (HEADER);
+			writeHeader (lsn);
+			ch.force (true);
+			ch.position (HEADER);
+		} else {
+			Path tmp = path.resolveSibling (path.getFileName () + ".tmp");
+			try (FileChannel t = FileChannel.open (tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+			                                       StandardOpenOption.TRUNCATE_EXISTING)) {
+				ByteBuffer h = ByteBuffer.allocate (HEADER).putInt (MAGIC).putLong (lsn).flip ();
+				while (h.hasRemaining ()) t.write (h);
+				for (long pos = HEADER + lsn - base, end = HEADER + written - base; pos < end; ) {
+					pos += ch.transferTo (pos, end - pos, t);
+				} // for
+				t.force (true);
+			} // try
+			Files.move (tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			ch.close ();
+			ch = FileChannel.open (path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			ch.position (ch.size ());
+		} // if
+		base   = Math.min (lsn, appended);
+		synced = Math.max (synced, base);
+	} // truncate
+
+	/***************************************************************************
+	 * Flush and close the log.
+	 */
+	public void close () throws IOException
+	{
+		try {
+			flush ();
+		} finally {
+			ch.close ();
+		} // try
+	} // close
+
+	// ------------------------------------------------------------------------
+	// Private Methods
+	// ------------------------------------------------------------------------
+
+	/***************************************************************************
+	 * Make the log durable up to lsn with policy s, as the leader of a group
+	 * commit or by waiting for the leader.
+	 */
+	private void sync (long lsn, Sync s) throws IOException
+	{
+		ByteBuffer batch;
+		long end;
+		synchronized (this) {
+			if (s == Sync.NONE && buf.position () < BUFFER_SIZE) return;
+			if (synced < lsn) awaitLeader ();
+			if (synced >= lsn) return;
+			flushing = true;                                // become the leader
+			batch = buf;
+			buf   = spare;
+			spare = null;
+			end   = appended;
+		} // synchronized
+
+		boolean done = false;
+		try {
+			batch.flip ();
+			while (batch.hasRemaining ()) ch.write (batch);
+			if (s == Sync.FORCE) ch.force (false);
+			done = true;
+		} finally {
+			synchronized (this) {
+				spare    = batch.clear ();
+				flushing = false;
+				if (done) synced = end;
+				notifyAll ();
+			} // synchronized
+		} // try
+	} // sync
+
+	/***************************************************************************
+	 * Wait (holding the lock) until no leader is flushing the log.
+	 */
+	private void awaitLeader () throws IOException
+	{
+		while (flushing) {
+			try {
+				wait ();
+			} catch (InterruptedException ex) {
+				Thread.currentThread ().interrupt ();
+				throw new InterruptedIOException ("WriteAheadLog: interrupted");
+			} // try
+		} // while
+	} // awaitLeader
+
+	/***************************************************************************
+	 * Read the records from the start of the file, passing their tuples to
+	 * redo, and return the file position just past the last valid record.
+	 */
+	private long replay (Redo redo) throws IOException
+	{
+		long size = ch.size (), pos = HEADER;
+		ByteBuffer h = ByteBuffer.allocate (8);
+		ByteBuffer rec = ByteBuffer.allocate (BUFFER_SIZE);
+		CRC32C crc = new CRC32C ();
+		while (pos + RECORD_HEADER <= size) {
+			readFully (h.clear (), pos);
+			int len = h.getInt (0);
+			if (len < 2 || len > 2 + TupleCodec.MAX_RECORD || pos + 8 + len > size) break;
+			if (rec.capacity () < len) rec = ByteBuffer.allocate (len);
+			readFully (rec.clear ().limit (len), pos + 8);
+			crc.reset ();
+			crc.update (rec.array (), 0, len);
+			int stream = rec.getShort (0);
+			if ((int) crc.getValue () != h.getInt (4) || stream < 0 || stream >= codecs.size ()) break;
+			pos += 8 + len;
+			if (redo != null) redo.apply (stream, base + pos - HEADER, codecs.get (stream).decode (rec, 2));
+		} // while
+		return pos;
+	} // replay
+
+	/***************************************************************************
+	 * Write the file header with the given base LSN.
+	 */
+	private void writeHeader (long _base) throws IOException
+	{
+		ByteBuffer h = ByteBuffer.allocate (HEADER).putInt (MAGIC).putLong (_base).flip ();
+		for (long pos = 0; h.hasRemaining (); ) pos += ch.write (h, pos);
+	} // writeHeader
+
+	/***************************************************************************
+	 * Fill the buffer from the file starting at position pos.
+	 */
+	private void readFully (ByteBuffer b, long pos) throws IOException
+	{
+		while (b.hasRemaining ()) {
+			int n = ch.read (b, pos);
+			if (n < 0) throw new IOException ("WriteAheadLog: unexpected end of file");
+			pos += n;
+		} // while
+	} // readFully
+
+} // WriteAheadLog class
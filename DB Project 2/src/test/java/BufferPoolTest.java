@@ -0,0 +1,83 @@
+import static org.junit.Assert.*;
+
+import java.io.File;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class BufferPoolTest {
+
+	private static final String DIR = System.getProperty("java.io.tmpdir") + File.separator;
+
+	private static final Class[] DOMAIN = { String.class, Integer.class };
+
+	private static final int RECORD_SIZE = Table.str_bytearray_size + 4;
+
+	private static final int PER_PAGE = Page.capacity(4096, 2 + 4 + "poolTest1".length() + 5);
+
+	@After
+	public void cleanUp() {
+		new File(DIR + "poolTest1.dat").delete();
+		new File(DIR + "poolTest2.dat").delete();
+	}
+
+	private static FileList fill(String name, BufferPool pool, int n) {
+		FileList list = new FileList(DIR + name, RECORD_SIZE, DOMAIN, 4096, pool);
+		for (int i = 0; i < n; i++) list.add(new Comparable[] { key(name, i), i });
+		list.flush();                                    // move the pages out of the append buffer
+		return list;
+	}
+
+	private static String key(String name, int i) {
+		return name + String.format("%05d", i);          // fixed length, so every page holds PER_PAGE records
+	}
+
+	@Test
+	public void testSharedPoolEvicts() {
+		BufferPool pool = new BufferPool(4, 4096, new EvictionPolicy.Clock());
+		FileList a = fill("poolTest1", pool, 2000);
+		FileList b = fill("poolTest2", pool, 2000);
+
+		for (int i = 0; i < 2000; i++) {
+			assertEquals(i, a.get(i)[1]);
+			assertEquals(key("poolTest2", i), b.get(i)[0]);
+		}
+		assertTrue(pool.residentPages() <= 4);
+		assertTrue(pool.evictions() > 0);
+
+		long misses = pool.misses();
+		a.get(0);
+		a.get(1);
+		assertEquals(misses + 1, pool.misses());
+		a.close();
+		b.close();
+	}
+
+	@Test
+	public void testLruKKeepsHotPage() {
+		BufferPool pool = new BufferPool(3, 4096, new EvictionPolicy.LruK(2));
+		FileList a = fill("poolTest1", pool, 2000);
+
+		a.get(0);
+		a.get(0);                                        // page 0 is referenced twice
+		for (int p = 1; p < a.pageCount() - 1; p++) a.get(p * PER_PAGE);   // one pass over the rest
+
+		long misses = pool.misses();
+		a.get(0);
+		assertEquals(misses, pool.misses());
+		a.close();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testAllPinned() throws Exception {
+		BufferPool pool = new BufferPool(1, 4096, new EvictionPolicy.Clock());
+		FileList a = fill("poolTest1", pool, 100);
+		try {
+			pool.pin(a, 0);
+			pool.pin(a, 1);
+		} finally {
+			a.close();
+		}
+	}
+
+}
@@ -0,0 +1,112 @@
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ColumnStoreTest {
+
+	private static final String[] ATTRIBUTE = { "title", "year", "length", "genre", "id", "flag" };
+
+	private static final Class[] DOMAIN = { String.class, Integer.class, Double.class, String.class, Long.class,
+			Character.class };
+
+	private static final String[] KEY = { "title", "year" };
+
+	private static final String[] GENRES = { "drama", "comedy", "action" };
+
+	private static Comparable[] row(int i) {
+		return new Comparable[] { "movie_" + i, 1900 + i % 100, i * 0.5, GENRES[i % 3], (long) i << 33,
+				(char) ('a' + i % 26) };
+	}
+
+	@Test
+	public void testStore() {
+		ColumnStore store = new ColumnStore(DOMAIN);
+		for (int i = 0; i < 5000; i++) store.add(row(i));
+		assertEquals(5000, store.size());
+		assertArrayEquals(row(4321), store.get(4321));
+		assertEquals(7, store.update(7, row(8)));
+		assertArrayEquals(row(8), store.fetch(7));
+		assertTrue(store.delete(0));
+		assertFalse(store.delete(0));
+		assertArrayEquals(row(1), store.get(0));
+		store.add(row(5000));
+		assertArrayEquals(row(5000), store.get(4999));
+
+		ColumnStore.Cursor c = store.cursor();
+		assertTrue(c.next());
+		assertEquals(1, c.rid());
+		assertEquals("movie_1", c.getString(0));
+		assertEquals(1901, c.getInt(1));
+		assertEquals(0.5, c.getDouble(2), 0.0);
+		assertEquals(1L << 33, c.getLong(4));
+
+		double expected = 0;
+		for (Comparable[] t : store) expected += (Integer) t[1];
+		assertEquals(expected, store.sum(1), 0.0);
+	}
+
+	@Test
+	public void testColumnarTable() {
+		Table t = new Table("columnar", ATTRIBUTE, DOMAIN, KEY, new ColumnStore(DOMAIN));
+		List<Comparable[]> tuples = new ArrayList<>();
+		for (int i = 0; i < 3000; i++) {
+			assertTrue(t.insert(row(i)));
+			tuples.add(row(i));
+		}
+		assertTrue(t.isColumnar());
+		Table all = new Table("expected", ATTRIBUTE, DOMAIN, KEY, tuples);
+		assertTrue(all.equals(t) && t.equals(all));
+
+		List<Comparable[]> one = new ArrayList<>();
+		one.add(row(1234));
+		assertTrue(new Table("expected", ATTRIBUTE, DOMAIN, KEY, one).equals(t.select(new KeyType("movie_1234", 1934))));
+
+		int year = t.col("year"), genre = t.col("genre");
+		Table sel = t.where(r -> r.getInt(year) == 1977 && r.getString(genre).equals("drama"));
+		assertTrue(sel.isColumnar());
+		Table same = all.where(r -> r.getInt(year) == 1977 && r.getString(genre).equals("drama"));
+		assertTrue(same.equals(sel) && sel.equals(same));
+		assertEquals(all.sum("length"), t.sum("length"), 0.0);
+
+		Table p = t.project("genre year");
+		assertTrue(p.isColumnar());
+		List<Comparable[]> projected = new ArrayList<>();
+		for (Comparable[] tup : tuples) projected.add(new Comparable[] { tup[genre], tup[year] });
+		Table q = new Table("expected", new String[] { "genre", "year" }, new Class[] { String.class, Integer.class },
+				new String[] { "genre", "year" }, projected);
+		assertTrue(q.equals(p) && p.equals(q));
+		assertEquals(all.sum("year"), p.sum("year"), 0.0);
+	}
+
+	@Test
+	public void testDictionaryEncoding() {
+		Table movie = new Table("movie", ATTRIBUTE, DOMAIN, KEY, new ColumnStore(DOMAIN));
+		for (int i = 0; i < 10000; i++) movie.insert(row(i));
+		Table drama = movie.select("genre", "drama");
+		assertTrue(drama.isColumnar());
+		Table expected = movie.where(r -> r.getString(3).equals("drama"));
+		assertTrue(expected.equals(drama) && drama.equals(expected));
+		long[] d = { 0 };
+		drama.scan(r -> d[0]++);
+		assertEquals(3334, d[0]);
+		assertEquals(0, movie.select("genre", "western").sum("year"), 0.0);
+
+		String[] gAttr = { "genre", "label" };
+		Class[] gDom = { String.class, String.class };
+		Table genre = new Table("genre", gAttr, gDom, new String[] { "genre" }, new ColumnStore(gDom));
+		for (String g : new String[] { "western", "comedy", "drama" }) genre.insert(new Comparable[] { g, g.toUpperCase() });
+		Table joined = movie.join("genre", "genre", genre);
+		assertTrue(joined.isColumnar());
+		long[] n = { 0 };
+		joined.scan(r -> {
+			assertEquals(r.getString(3), r.getString(6));
+			assertEquals(r.getString(3).toUpperCase(), r.getString(7));
+			n[0]++;
+		});
+		assertEquals(3334 + 3333, n[0]);
+	}
+
+}
@@ -0,0 +1,121 @@
+import static org.junit.Assert.*;
+
+import java.io.File;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class DatabaseTest {
+
+	private static final String NAME = "dbTest";
+
+	private static final File DIR = new File("store" + File.separator + NAME);
+
+	@After
+	public void cleanUp() {
+		File[] files = DIR.listFiles();
+		if (files != null) for (File f : files) f.delete();
+		DIR.delete();
+	}
+
+	@Test
+	public void testReopenAndReplay() throws Exception {
+		Database db = Database.open(NAME);
+		Table movie = db.create("movie", "title year", "String Integer", "title year", false);
+		Table studio = db.create("studio", "name address", "String String", "name", true);
+		Table expected = new Table("studio", "name address", "String String", "name");
+		for (int i = 0; i < 10; i++) {
+			movie.insert(new Comparable[] { "movie_" + i, 2000 + i });
+			studio.insert(new Comparable[] { "studio_" + i, "address_" + i });
+			expected.insert(new Comparable[] { "studio_" + i, "address_" + i });
+		}
+		db.close();
+
+		Database again = Database.open(NAME);
+		Table m = again.table("movie");
+		assertTrue(movie.equals(m) && m.equals(movie));
+		KeyType k = new KeyType("movie_7", 2007);
+		assertTrue(movie.select(k).equals(m.select(k)));
+		Table s = again.table("studio");                   // studio was closed with db
+		assertTrue(expected.equals(s) && s.equals(expected));
+		assertNull(again.table("star"));
+		again.close();
+	}
+
+	@Test
+	public void testCheckpoint() throws Exception {
+		Database db = Database.open(NAME);
+		Table movie = db.create("movie", "title year", "String Integer", "title year", false);
+		Table studio = db.create("studio", "name address", "String String", "name", true);
+		Table expected = new Table("studio", "name address", "String String", "name");
+		for (int i = 0; i < 5; i++) movie.insert(new Comparable[] { "movie_" + i, 2000 + i });
+		for (int i = 0; i < 200; i++) {
+			studio.insert(new Comparable[] { "studio_" + i, "address_" + i });
+			expected.insert(new Comparable[] { "studio_" + i, "address_" + i });
+		}
+		db.checkpoint();
+		assertEquals(12, new File(DIR, "log").length());
+		for (int i = 5; i < 9; i++) movie.insert(new Comparable[] { "movie_" + i, 2000 + i });
+		db.checkpoint();                                    // writes a delta of 4 tuples
+		assertTrue(new File(DIR, "movie.dbf.5").exists());
+		movie.insert(new Comparable[] { "movie_9", 2009 });
+		studio.insert(new Comparable[] { "studio_200", "address_200" });
+		expected.insert(new Comparable[] { "studio_200", "address_200" });
+		db.close();
+
+		Database again = Database.open(NAME);
+		Table m = again.table("movie");
+		assertTrue(movie.equals(m) && m.equals(movie));
+		Table s = again.table("studio");                   // studio was closed with db
+		assertTrue(expected.equals(s) && s.equals(expected));
+		Table t = again.create("star", "name", "String", "name", false);
+		t.insert(new Comparable[] { "star_0" });
+		again.close();
+
+		again = Database.open(NAME);
+		assertTrue(t.equals(again.table("star")));
+		again.close();
+	}
+
+	@Test
+	public void testCheckpointMergesDeltas() throws Exception {
+		Database db = Database.open(NAME);
+		Table movie = db.create("movie", "title year", "String Integer", "title year", false);
+		for (int i = 0; i < 20; i++) {
+			movie.insert(new Comparable[] { "movie_" + i, 2000 + i });
+			db.checkpoint();
+			String[] deltas = DIR.list((d, f) -> f.startsWith("movie.dbf."));
+			assertTrue(deltas.length <= 8);                 // Table.MAX_DELTAS
+		}
+		db.close();
+
+		Database again = Database.open(NAME);
+		Table m = again.table("movie");
+		assertTrue(movie.equals(m) && m.equals(movie));
+		again.close();
+	}
+
+	@Test
+	public void testCloseWithoutReplay() throws Exception {
+		Database db = Database.open(NAME);
+		Table movie = db.create("movie", "title year", "String Integer", "title year", false);
+		Table studio = db.create("studio", "name address", "String String", "name", true);
+		Table expected = new Table("studio", "name address", "String String", "name");
+		for (int i = 0; i < 5; i++) movie.insert(new Comparable[] { "movie_" + i, 2000 + i });
+		db.checkpoint();
+		for (int i = 0; i < 200; i++) {
+			studio.insert(new Comparable[] { "studio_" + i, "address_" + i });
+			expected.insert(new Comparable[] { "studio_" + i, "address_" + i });
+		}
+		db.close();
+		assertTrue(new File(DIR, "log").delete());          // nothing left to replay
+
+		Database again = Database.open(NAME);
+		Table m = again.table("movie");
+		assertTrue(movie.equals(m) && m.equals(movie));
+		Table s = again.table("studio");
+		assertTrue(expected.equals(s) && s.equals(expected));
+		again.close();
+	}
+
+}
@@ -0,0 +1,67 @@
+import static org.junit.Assert.*;
+
+import java.io.File;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class DiskTableTest {
+
+	private static final String NAME = "diskTableTest";
+
+	@After
+	public void cleanUp() {
+		new File("store" + File.separator + NAME + ".dat").delete();
+	}
+
+	private static Table open() {
+		return new Table(NAME, "title year studioName", "String Integer String", "title year", true);
+	}
+
+	private static Comparable[] movie(int i) {
+		return new Comparable[] { "movie_" + i, 1900 + i, "studio_" + i % 7 };
+	}
+
+	private static Table expect(Comparable[] tup) {
+		Table t = new Table("expected", "title year studioName", "String Integer String", "title year");
+		t.insert(tup);
+		return t;
+	}
+
+	@Test
+	public void testSelectByKey() {
+		Table movie = open();
+		assertTrue(movie.isOnDisk());
+		for (int i = 0; i < 300; i++) assertTrue(movie.insert(movie(i)));
+		assertTrue(expect(movie(42)).equals(movie.select(new KeyType("movie_42", 1942))));
+		movie.save();
+
+		movie = open();                                    // the index is rebuilt from the data file
+		assertTrue(expect(movie(299)).equals(movie.select(new KeyType("movie_299", 2199))));
+		assertTrue(expect(movie(7)).equals(movie.select(t -> t[0].equals("movie_7"))));
+
+		Comparable[] changed = { "movie_7", 1907, "studio_with_a_much_longer_name" };
+		movie.insert(changed);                             // same key: replaces the tuple
+		assertTrue(expect(changed).equals(movie.select(new KeyType("movie_7", 1907))));
+		movie.save();
+	}
+
+	@Test
+	public void testSelectRange() {
+		Table movie = open();
+		for (int i = 299; i >= 0; i--) movie.insert(new Comparable[] { String.format("movie_%03d", i), 1900 + i, "studio_" + i % 7 });
+		KeyType lo = new KeyType("movie_100", 2000), hi = new KeyType("movie_199", 2099);
+		Table range = movie.select(lo, hi);                // read with the cursor of the rid map
+		Table expected = new Table("expected", "title year studioName", "String Integer String", "title year");
+		for (int i = 100; i < 200; i++) expected.insert(new Comparable[] { String.format("movie_%03d", i), 1900 + i, "studio_" + i % 7 });
+		assertTrue(expected.equals(range) && range.equals(expected));
+		assertTrue(expect(new Comparable[] { "movie_150", 2050, "studio_3" }).equals(range.select(new KeyType("movie_150", 2050))));
+
+		movie.save();
+		movie = open();                                    // rebuilt from the data file
+		range = movie.select(lo, hi);
+		assertTrue(expected.equals(range) && range.equals(expected));
+		movie.save();
+	}
+
+}
@@ -0,0 +1,271 @@
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class FileListTest {
+
+	private static final String NAME = System.getProperty("java.io.tmpdir") + File.separator + "fileListTest";
+
+	private static final Class[] DOMAIN = { String.class, Integer.class, Double.class };
+
+	private static final int RECORD_SIZE = Table.str_bytearray_size + 4 + 8;
+
+	@After
+	public void cleanUp() {
+		new File(NAME + ".dat").delete();
+	}
+
+	private static Comparable[] tuple(int i) {
+		return new Comparable[] { "movie_" + i, i, i * 1.5 };
+	}
+
+	@Test
+	public void testAddGetAcrossPages() {
+		FileList list = new FileList(NAME, RECORD_SIZE, DOMAIN);
+		int n = 500;
+		for (int i = 0; i < n; i++) assertTrue(list.add(tuple(i)));
+
+		assertEquals(n, list.size());
+		assertTrue(list.pageCount() > 1);
+		for (int i = 0; i < n; i++) assertArrayEquals(tuple(i), list.get(i));
+		list.close();
+	}
+
+	@Test
+	public void testReopen() {
+		FileList list = new FileList(NAME, RECORD_SIZE, DOMAIN, 8192);
+		for (int i = 0; i < 100; i++) list.add(tuple(i));
+		list.close();
+
+		list = new FileList(NAME, RECORD_SIZE, DOMAIN, 8192);
+		assertEquals(100, list.size());
+		list.add(tuple(100));
+		assertArrayEquals(tuple(0), list.get(0));
+		assertArrayEquals(tuple(100), list.get(100));
+		assertEquals(0, new File(NAME + ".dat").length() % 8192);
+		list.close();
+	}
+
+	@Test
+	public void testVariableLength() {
+		FileList list = new FileList(NAME, RECORD_SIZE, DOMAIN);
+		char[] c = new char[1000];
+		java.util.Arrays.fill(c, 'y');
+		for (int i = 0; i < 100; i++) assertTrue(list.add(new Comparable[] { i % 10 == 0 ? new String(c) : "g" + i, i, 0.5 }));
+		assertFalse(list.add(new Comparable[] { new String(new char[5000]), 0, 0.0 }));
+		assertEquals(100, list.size());
+		assertEquals(new String(c), list.get(50)[0]);
+		assertEquals("g51", list.get(51)[0]);
+		list.close();
+	}
+
+	@Test
+	public void testDeleteReusesSpace() {
+		FileList list = new FileList(NAME, RECORD_SIZE, DOMAIN);
+		long[] rid = new long[2000];
+		for (int i = 0; i < 2000; i++) rid[i] = list.insert(tuple(i));
+		list.flush();
+		int pages = list.pageCount();
+
+		for (int i = 0; i < 2000; i += 2) assertTrue(list.delete(rid[i]));
+		assertFalse(list.delete(rid[0]));
+		assertNull(list.fetch(rid[0]));
+		assertEquals(1000, list.size());
+		assertArrayEquals(tuple(1), list.get(0));
+		assertArrayEquals(tuple(1999), list.get(999));
+		assertArrayEquals(tuple(1001), list.fetch(rid[1001]));
+
+		int n = 0;
+		for (Comparable[] t : list) assertEquals(2 * n++ + 1, t[1]);
+		assertEquals(1000, n);
+
+		for (int i = 0; i < 1000; i++) list.add(tuple(i));   // fills the holes first
+		assertEquals(pages, list.pageCount());
+		assertEquals(2000, list.stream().count());
+		list.close();
+
+		list = new FileList(NAME, RECORD_SIZE, DOMAIN);
+		assertEquals(2000, list.size());
+		assertArrayEquals(tuple(1001), list.fetch(rid[1001]));
+		list.close();
+	}
+
+	@Test
+	public void testUpdate() {
+		FileList list = new FileList(NAME, RECORD_SIZE, DOMAIN);
+		long[] rid = new long[300];
+		for (int i = 0; i < 300; i++) rid[i] = list.insert(tuple(i));
+		list.flush();
+
+		assertEquals(rid[5], list.update(rid[5], new Comparable[] { "m", 5, 0.0 }));
+		assertEquals("m", list.fetch(rid[5])[0]);
+
+		char[] c = new char[2000];
+		java.util.Arrays.fill(c, 'z');
+		Comparable[] big = { new String(c), 6, 0.0 };
+		long moved = list.update(rid[6], big);
+		assertTrue(moved >= 0);
+		assertArrayEquals(big, list.fetch(moved));
+		assertEquals(300, list.size());
+		assertEquals(-1, list.update(rid[299] + 1000, tuple(0)));
+		list.close();
+	}
+
+	@Test
+	public void testCompact() {
+		File f = new File(NAME + ".dat");
+		FileList list = new FileList(NAME, RECORD_SIZE, DOMAIN);
+		for (int i = 0; i < 3000; i++) list.add(tuple(i));
+		list.flush();
+		long full = f.length();
+
+		for (int i = list.size() - 1; i >= 1000; i--) list.remove(i);     // empties the last pages
+		for (int i = 0; i < 1000; i += 3) list.remove(i - i / 3);        // and thins out the rest
+		assertEquals(666, list.size());
+
+		long reclaimed = list.compact();
+		assertTrue(reclaimed > full - f.length());
+		assertTrue(f.length() < full / 2);
+		assertEquals(list.pageCount() * 4096L, f.length());
+		for (int i = 0, j = 0; i < 1000; i++) if (i % 3 != 0) assertArrayEquals(tuple(i), list.get(j++));
+		assertEquals(0, list.compact());
+		list.close();
+
+		list = new FileList(NAME, RECORD_SIZE, DOMAIN);
+		assertEquals(666, list.size());
+		assertArrayEquals(tuple(998), list.get(665));
+		list.close();
+	}
+
+	@Test
+	public void testCompressed() {
+		Class[] domain = { String.class, Integer.class, String.class, String.class };
+		String[] genre = { "drama", "comedy", "sciFi" };
+		File f = new File(NAME + ".dat");
+		FileList list = new FileList(NAME, RECORD_SIZE, domain, 4096, BufferPool.getShared(), true);
+		for (int i = 0; i < 20000; i++) list.add(new Comparable[] { "movie_" + i, 1900 + i % 100, "studio_" + i / 1000, genre[i / 500 % 3] });
+		list.close();
+		int pages = list.pageCount();
+		assertTrue(f.length() * 3 < (long) pages * 4096);
+
+		list = new FileList(NAME, RECORD_SIZE, domain, 4096, BufferPool.getShared(), false);
+		assertTrue(list.isCompressed());
+		assertEquals(20000, list.size());
+		assertArrayEquals(new Comparable[] { "movie_12345", 1945, "studio_12", "drama" }, list.get(12345));
+		int n = 0;
+		for (Comparable[] t : list) assertEquals("movie_" + n++, t[0]);
+		assertEquals(20000, n);
+		assertEquals(10000, list.stream().parallel().filter(t -> (Integer) t[1] % 2 == 0).count());
+
+		for (int i = 19999; i >= 1000; i--) list.remove(i);
+		for (int i = 0; i < 1000; i += 2) list.remove(i / 2);
+		assertTrue(list.compact() > 0);
+		list.setMapped(true);
+		assertArrayEquals(new Comparable[] { "movie_999", 1999, "studio_0", "comedy" }, list.get(499));
+		list.close();
+
+		list = new FileList(NAME, RECORD_SIZE, domain, 4096, BufferPool.getShared(), true);
+		assertEquals(500, list.size());
+		assertEquals("movie_1", list.get(0)[0]);
+		list.close();
+	}
+
+	@Test
+	public void testBufferedAppend() {
+		File f = new File(NAME + ".dat");
+		FileList list = new FileList(NAME, RECORD_SIZE, DOMAIN);
+		List<Comparable[]> batch = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) batch.add(tuple(i));
+
+		assertTrue(list.addAll(batch));
+		assertEquals(1000, list.size());
+		assertEquals(0, f.length());                     // still in the append buffer
+		assertArrayEquals(tuple(999), list.get(999));
+
+		list.flush();
+		assertEquals((long) list.pageCount() * 4096, f.length());
+		list.add(tuple(1000));
+		list.close();
+
+		list = new FileList(NAME, RECORD_SIZE, DOMAIN);
+		assertEquals(1001, list.size());
+		assertArrayEquals(tuple(1000), list.get(1000));
+		list.close();
+	}
+
+	@Test
+	public void testScan() {
+		FileList list = new FileList(NAME, RECORD_SIZE, DOMAIN);
+		list.setReadAhead(3 * 4096);
+		for (int i = 0; i < 5000; i++) list.add(tuple(i));
+
+		int n = 0;
+		for (Comparable[] t : list) assertArrayEquals(tuple(n++), t);
+		assertEquals(5000, n);
+
+		assertEquals(5000, list.stream().parallel().count());
+		assertEquals(2500, list.stream().parallel().filter(t -> (Integer) t[1] % 2 == 0).count());
+		list.close();
+	}
+
+	@Test
+	public void testPrefetchScan() {
+		FileList list = new FileList(NAME, RECORD_SIZE, DOMAIN);
+		list.setReadAhead(2 * 4096);
+		for (int i = 0; i < 20000; i++) list.add(tuple(i));
+		list.flush();
+
+		for (int blocks : new int[] { 3, 1, 0 }) {
+			list.setPrefetch(blocks);
+			int n = 0;
+			for (Comparable[] t : list) assertArrayEquals(tuple(n++), t);
+			assertEquals(20000, n);
+		}
+		list.setPrefetch(2);
+		java.util.Iterator<Comparable[]> it = list.iterator();
+		for (int i = 0; i < 100; i++) it.next();                // abandoned with reads in flight
+		assertEquals(10000, list.stream().parallel().filter(t -> (Integer) t[1] % 2 == 0).count());
+		list.close();
+	}
+
+	@Test
+	public void testMappedReads() {
+		FileList list = new FileList(NAME, RECORD_SIZE, DOMAIN);
+		list.setMapped(true);
+		for (int i = 0; i < 200; i++) {
+			list.add(tuple(i));
+			assertArrayEquals(tuple(i / 2), list.get(i / 2));
+		}
+		int n = 0;
+		for (Comparable[] t : list) assertArrayEquals(tuple(n++), t);
+		assertEquals(200, n);
+		list.close();
+	}
+
+	@Test
+	public void testParallelScanAfterChanges() {
+		FileList list = new FileList(NAME, RECORD_SIZE, DOMAIN);
+		list.setMapped(true);
+		for (int i = 0; i < 10000; i++) list.add(tuple(i));
+		list.flush();
+		assertArrayEquals(tuple(9999), list.get(9999));           // maps the file as it is now
+		for (int i = 10000; i < 20000; i++) list.add(tuple(i));
+		list.flush();                                             // grows past the mapping
+		for (int i = 0; i < 1000; i++) list.remove(0);          // leaves pageFirst out of date
+
+		List<Comparable[]> all = new ArrayList<>();
+		for (Comparable[] t : list) all.add(t);
+		assertEquals(19000, all.size());
+		Object[] par = list.stream().parallel().toArray();
+		assertEquals(19000, par.length);
+		for (int i = 0; i < par.length; i++) assertArrayEquals(all.get(i), (Comparable[]) par[i]);
+		assertEquals(9500, list.stream().parallel().filter(t -> (Integer) t[1] % 2 == 0).count());
+		list.close();
+	}
+
+}
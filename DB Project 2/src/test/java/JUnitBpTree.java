@@ -1,8 +1,16 @@
 import static java.lang.System.out;
 import static org.junit.Assert.*;
 
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Random;
-
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 import org.junit.Test;
 
@@ -37,4 +45,198 @@ public class JUnitBpTree {
     
 	}
 
+	@Test
+	public void testManyKeys() {
+		for (int order : new int[] { 3, 4, 64, BpTreeMap.ORDER }) {
+			BpTreeMap<Integer, Integer> bpt = new BpTreeMap<>(Integer.class, Integer.class, order);
+			Random rng = new Random(order);
+			TreeMap<Integer, Integer> expected = new TreeMap<>();
+			for (int i = 0; i < 20000; i++) {
+				int k = rng.nextInt(50000);
+				assertEquals(expected.put(k, i), bpt.put(k, i));
+			}
+			assertEquals(expected.size(), bpt.size());
+			assertEquals(expected.firstKey(), bpt.firstKey());
+			assertEquals(expected.lastKey(), bpt.lastKey());
+			for (int k = -1; k <= 50000; k++) assertEquals(expected.get(k), bpt.get(k));
+		}
+	}
+
+	/** A tree of the keys 0 to 999999 (mapped to themselves), built once and only read. */
+	private static BpTreeMap<Integer, Integer> million;
+
+	private static BpTreeMap<Integer, Integer> million() {
+		if (million == null) {
+			million = new BpTreeMap<>(Integer.class, Integer.class);
+			for (int i = 0; i < 1000000; i++) million.put(i, i);
+		}
+		return million;
+	}
+
+	@Test
+	public void testLookupCost() {
+		BpTreeMap<Integer, Integer> bpt = million();
+		bpt.count = 0;
+		for (int i = 0; i < 1000000; i += 1000) assertEquals(i, bpt.get(i).intValue());
+		assertTrue(bpt.count <= 4 * 1000);
+	}
+
+	@Test
+	public void testBulkLoad() {
+		for (int order : new int[] { 3, 5, BpTreeMap.ORDER }) {
+			for (int n : new int[] { 0, 1, 2, 7, 1000, 30000 }) {
+				for (double fill : new double[] { 0.5, BpTreeMap.FILL, 1.0 }) {
+					List<Map.Entry<Integer, Integer>> entries = new ArrayList<>();
+					for (int i = 0; i < n; i++) entries.add(new AbstractMap.SimpleEntry<>(2 * i, i));
+					if (n > 1) entries.add(1, new AbstractMap.SimpleEntry<>(2, -1));   // replaced by (2, 1)
+					BpTreeMap<Integer, Integer> bpt = new BpTreeMap<>(Integer.class, Integer.class, order);
+					bpt.bulkLoad(entries.iterator(), fill);
+					assertEquals(n, bpt.size());
+					for (int k = -1; k <= 2 * n; k++) assertEquals(k % 2 == 0 && k >= 0 && k < 2 * n ? (Integer) (k / 2) : null, bpt.get(k));
+					if (n > 0) {
+						assertEquals(0, bpt.firstKey().intValue());
+						assertEquals(2 * n - 2, bpt.lastKey().intValue());
+					}
+					for (int k = 1; k < 2 * n; k += 2) bpt.put(k, -k);          // fill in the odd keys
+					for (int k = 1; k < 2 * n; k += 2) assertEquals(-k, bpt.get(k).intValue());
+					assertEquals(2 * n, bpt.size());
+				}
+			}
+		}
+		BpTreeMap<Integer, Integer> bpt = new BpTreeMap<>(Integer.class, Integer.class);
+		try {
+			bpt.bulkLoad(Arrays.asList(new AbstractMap.SimpleEntry<>(2, 2),
+					new AbstractMap.SimpleEntry<>(1, 1)).iterator());
+			fail("keys out of order");
+		} catch (IllegalArgumentException ex) {
+		}
+	}
+
+	@Test
+	public void testRanges() {
+		for (int order : new int[] { 3, 8, BpTreeMap.ORDER }) {
+			BpTreeMap<Integer, Integer> bpt = new BpTreeMap<>(Integer.class, Integer.class, order);
+			TreeMap<Integer, Integer> expected = new TreeMap<>();
+			Random rng = new Random(order);
+			for (int i = 0; i < 5000; i++) {
+				int k = rng.nextInt(10000);
+				bpt.put(k, i);
+				expected.put(k, i);
+			}
+			for (int t = 0; t < 200; t++) {
+				int a = rng.nextInt(10100) - 50, b = a + rng.nextInt(500);
+				boolean aIn = rng.nextBoolean(), bIn = rng.nextBoolean(), desc = rng.nextBoolean();
+				NavigableMap<Integer, Integer> sub = expected.subMap(a, aIn, b, bIn);
+				if (desc) sub = sub.descendingMap();
+				BpTreeMap<Integer, Integer>.Cursor c = bpt.cursor(a, aIn, b, bIn, desc);
+				for (Map.Entry<Integer, Integer> e : sub.entrySet()) {
+					assertTrue(c.next());
+					assertEquals(e.getKey(), c.key());
+					assertEquals(e.getValue(), c.value());
+				}
+				assertFalse(c.next());
+				assertEquals(new ArrayList<>(expected.subMap(a, b).entrySet()),
+						new ArrayList<>(bpt.subMap(a, b).entrySet()));
+			}
+			assertEquals(new ArrayList<>(expected.headMap(777).keySet()), new ArrayList<>(bpt.headMap(777).keySet()));
+			assertEquals(new ArrayList<>(expected.tailMap(9000).values()), new ArrayList<>(bpt.tailMap(9000).values()));
+			SortedMap<Integer, Integer> view = bpt.subMap(1000, 2000).tailMap(1500);
+			assertEquals(expected.subMap(1500, 2000).firstKey(), view.firstKey());
+			assertEquals(expected.subMap(1500, 2000).lastKey(), view.lastKey());
+			assertEquals(expected.subMap(1500, 2000).size(), view.size());
+			assertNull(view.get(1499));
+
+			BpTreeMap<Integer, Integer>.Cursor all = bpt.cursor(null, true, null, true, true);
+			for (Integer k : expected.descendingKeySet()) {
+				assertTrue(all.next());
+				assertEquals(k, all.key());
+			}
+			assertFalse(all.next());
+		}
+
+		BpTreeMap<Integer, Integer> big = million();
+		big.count = 0;
+		int n = 0;
+		for (BpTreeMap<Integer, Integer>.Cursor c = big.cursor(500000, true, 500009, true, false); c.next(); ) n++;
+		assertEquals(10, n);
+		assertTrue(big.count <= 4);
+	}
+
+	@Test
+	public void testTableRangeSelect() {
+		Table movie = new Table("rangeMovie", "title year", "String Integer", "year title");
+		for (int i = 0; i < 500; i++) movie.insert(new Comparable[] { "movie_" + i, 1900 + i % 100 });
+		Table seventies = movie.select(new KeyType(1970, ""), new KeyType(1980, ""));
+		int[] n = { 0 };
+		int[] last = { 0 };
+		seventies.scan(r -> {
+			assertTrue(r.getInt(1) >= 1970 && r.getInt(1) < 1980);
+			assertTrue(r.getInt(1) >= last[0]);                  // in key order
+			last[0] = r.getInt(1);
+			n[0]++;
+		});
+		assertEquals(50, n[0]);
+	}
+
+	@Test
+	public void testOrderedViews() {
+		BpTreeMap<Integer, Integer> bpt = new BpTreeMap<>(Integer.class, Integer.class, 16);
+		TreeMap<Integer, Integer> expected = new TreeMap<>();
+		Set<Map.Entry<Integer, Integer>> entries = bpt.entrySet();
+		Set<Integer> keys = bpt.keySet();
+		assertTrue(entries.isEmpty());
+		Random rng = new Random(24);
+		for (int i = 0; i < 3000; i++) {
+			int k = rng.nextInt(5000);
+			bpt.put(k, -k);
+			expected.put(k, -k);
+		}
+		assertEquals(expected.size(), entries.size());                 // the views are live
+		assertEquals(new ArrayList<>(expected.entrySet()), new ArrayList<>(entries));
+		assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(keys));
+		assertEquals(new ArrayList<>(expected.values()), new ArrayList<>(bpt.values()));
+		for (int k = 0; k < 5000; k++) assertEquals(expected.containsKey(k), keys.contains(k));
+	}
+
+	@Test
+	public void testRemove() {
+		for (int order : new int[] { 3, 4, 5, 16, BpTreeMap.ORDER }) {
+			BpTreeMap<Integer, Integer> bpt = new BpTreeMap<>(Integer.class, Integer.class, order);
+			TreeMap<Integer, Integer> expected = new TreeMap<>();
+			Random rng = new Random(order);
+			for (int i = 0; i < 40000; i++) {
+				int k = rng.nextInt(4000);
+				if (rng.nextInt(3) == 0) {
+					assertEquals(expected.put(k, i), bpt.put(k, i));
+				} else {
+					assertEquals(expected.remove(k), bpt.remove(k));
+				}
+			}
+			assertEquals(expected.size(), bpt.size());
+			assertEquals(new ArrayList<>(expected.entrySet()), new ArrayList<>(bpt.entrySet()));
+			BpTreeMap<Integer, Integer>.Cursor c = bpt.cursor(null, true, null, true, true);
+			for (Integer k : expected.descendingKeySet()) {
+				assertTrue(c.next());
+				assertEquals(k, c.key());
+			}
+			assertFalse(c.next());
+
+			bpt.compact();
+			assertEquals(new ArrayList<>(expected.entrySet()), new ArrayList<>(bpt.entrySet()));
+			for (Integer k : new ArrayList<>(expected.keySet())) assertEquals(expected.remove(k), bpt.remove(k));
+			assertTrue(bpt.isEmpty());
+			assertFalse(bpt.cursor(null, true, null, true, false).next());
+			for (int k = 0; k < 100; k++) bpt.put(k, k);
+			assertEquals(0, bpt.firstKey().intValue());
+			assertEquals(99, bpt.lastKey().intValue());
+		}
+
+		BpTreeMap<Integer, Integer> big = new BpTreeMap<>(Integer.class, Integer.class);
+		for (int i = 0; i < 1000000; i++) big.put(i, i);
+		for (int i = 0; i < 1000000; i++) if (i % 100 != 0) big.remove(i);
+		big.count = 0;
+		for (int i = 0; i < 1000000; i += 100) assertEquals(i, big.get(i).intValue());
+		assertTrue(big.count <= 3 * 10000);                      // a level shorter than before the removes
+	}
+
 }
@@ -0,0 +1,59 @@
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class PageCompressorTest {
+
+	@Test
+	public void testLzRoundTrip() {
+		Random rand = new Random(7);
+		byte[] src = new byte[5000];
+		for (int i = 0; i < src.length; i++) src[i] = (byte) (i % 300 < 150 ? i % 7 : rand.nextInt());
+		byte[] z = new byte[6000];
+		int len = PageCompressor.lzCompress(src, src.length, z, 3, z.length - 3);
+		assertTrue(len > 0 && len < src.length);
+
+		byte[] out = new byte[src.length];
+		assertEquals(src.length, PageCompressor.lzExpand(z, 3, len, out));
+		assertArrayEquals(src, out);
+
+		rand.nextBytes(src);                           // incompressible
+		assertEquals(-1, PageCompressor.lzCompress(src, src.length, z, 0, src.length - 1));
+	}
+
+	@Test
+	public void testPageRoundTrip() {
+		TupleCodec codec = new TupleCodec(new Class[] { String.class, Integer.class, String.class });
+		ByteBuffer buf = ByteBuffer.allocateDirect(4096);
+		Page page = Page.format(buf);
+		for (int i = 0; i < 100; i++) {
+			Comparable[] t = { "title " + i, i, i < 60 ? "Fox" : "Paramount" };
+			int len = codec.encodedSize(t);
+			codec.encode(t, buf, page.nextOffset(len));
+			page.allocate(len);
+		}
+		page.delete(10);
+		page.delete(11);
+
+		PageCompressor zip = new PageCompressor(4096, codec);
+		byte[] z = new byte[4096];
+		int len = zip.compress(buf, z, 0);
+		assertTrue(len > 0 && len < 2048);
+
+		ByteBuffer copy = ByteBuffer.allocate(4096);
+		zip.decompress(ByteBuffer.wrap(z), 0, len, copy);
+		Page back = new Page(copy);
+		assertEquals(100, back.slotCount());
+		assertEquals(98, back.liveCount());
+		assertEquals(0, back.garbage());
+		assertEquals(page.room(), back.room());
+		assertFalse(back.isLive(10));
+		for (int s = 12; s < 100; s++) {
+			assertArrayEquals(codec.decode(buf, page.offset(s)), codec.decode(copy, back.offset(s)));
+		}
+	}
+
+}
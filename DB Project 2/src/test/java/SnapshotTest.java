@@ -0,0 +1,283 @@
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class SnapshotTest {
+
+	private static final String NAME = "snapshotTest";
+
+	@After
+	public void cleanUp() {
+		new File("store" + File.separator + NAME + ".dbf").delete();
+		new File("store" + File.separator + NAME + ".dbf.10").delete();
+	}
+
+	private static Table movies() {
+		Table t = new Table(NAME, "title year length rating genre flag",
+				"String Integer Double Long Character Byte", "title year");
+		for (int i = 0; i < 10; i++)
+			t.insert(new Comparable[] { "movie_" + i + "_\u00e9t\u00e9", 1990 + i, i * 1.25, (long) i << 40, (char) ('a' + i), (byte) -i });
+		return t;
+	}
+
+	private static void check(Table t, Table u) {
+		assertEquals(t.getName(), u.getName());
+		assertTrue(t.equals(u) && u.equals(t));
+		KeyType k = new KeyType("movie_7_\u00e9t\u00e9", 1997);
+		assertTrue(t.select(k).equals(u.select(k)));
+	}
+
+	@Test
+	public void testRoundTrip() {
+		Table t = movies();
+		t.save();
+		check(t, Table.load(NAME));
+	}
+
+	@Test
+	public void testWithoutIndex() {
+		Table t = movies();
+		t.save(false);
+		check(t, Table.load(NAME));
+	}
+
+	@Test
+	public void testLazyOpen() throws Exception {
+		String[] attribute = { "title", "year", "studioName" };
+		Class[] domain = { String.class, Integer.class, String.class };
+		String[] key = { "title", "year" };
+		List<Comparable[]> tuples = new ArrayList<>();
+		Map<KeyType, Comparable[]> index = new TreeMap<>();
+		for (int i = 0; i < 10000; i++) {
+			Comparable[] t = { "movie_" + i, 1900 + i % 100, "studio_" + i % 7 };
+			tuples.add(t);
+			index.put(new KeyType(t[0], t[1]), t);
+		}
+		new File("store").mkdirs();
+		Snapshot.write(Paths.get("store", NAME + ".dbf"), NAME, attribute, domain, key, tuples, index);
+
+		Table t = Table.open(NAME);
+		assertEquals(NAME, t.getName());
+		KeyType k = new KeyType("movie_7777", 1977);
+		List<Comparable[]> one = new ArrayList<>();
+		one.add(tuples.get(7777));
+		assertTrue(new Table("expected", attribute, domain, key, one).equals(t.select(k)));
+
+		Comparable[] added = { "movie_new", 2020, "studio_new" };
+		assertTrue(t.insert(added));
+		tuples.add(added);
+		t.save();
+		t = Table.open(NAME);
+		Table all = new Table("expected", attribute, domain, key, tuples);
+		assertTrue(all.equals(t) && t.equals(all));
+		one.set(0, added);
+		assertTrue(new Table("expected", attribute, domain, key, one).equals(t.select(new KeyType("movie_new", 2020))));
+	}
+
+	@Test
+	public void testSaveOverView() throws Exception {
+		Table t = movies();
+		t.save();
+		int files = openFiles();
+		Table u = Table.open(NAME);
+		Comparable[] added = { "movie_10", 2000, 12.5, 10L << 40, 'k', (byte) -10 };
+		u.insert(added);
+		t.insert(added);
+		u.save(false);                                // the view moves onto the new snapshot
+		check(t, u);
+		check(t, Table.load(NAME));
+
+		added = new Comparable[] { "movie_11", 2001, 13.75, 11L << 40, 'l', (byte) -11 };
+		u.insert(added);
+		t.insert(added);
+		u.save();
+		check(t, u);
+		check(t, Table.load(NAME));
+		u.close();
+		if (files >= 0) assertEquals(files, openFiles());
+	}
+
+	/** Return the number of files this process has open, or -1 if unknown. */
+	private static int openFiles() {
+		String[] fds = new File("/proc/self/fd").list();
+		return fds != null ? fds.length : -1;
+	}
+
+	/** An index entry that knows its row (as SnapshotView's entries do). */
+	private static class RowEntry extends AbstractMap.SimpleImmutableEntry<KeyType, Comparable[]> implements Snapshot.RowEntry {
+		private final int row;
+
+		RowEntry(KeyType k, Comparable[] t, int _row) {
+			super(k, t);
+			row = _row;
+		}
+
+		public int row() {
+			return row;
+		}
+	}
+
+	@Test
+	public void testIndexEntryRows() throws Exception {
+		String[] attribute = { "title", "year" };
+		Class[] domain = { String.class, Integer.class };
+		String[] key = { "title" };
+		List<Comparable[]> tuples = new ArrayList<>();
+		Map<KeyType, Comparable[]> index = new TreeMap<>();
+		List<Map.Entry<KeyType, Comparable[]>> copies = new ArrayList<>();
+		List<Map.Entry<KeyType, Comparable[]>> rows = new ArrayList<>();
+		for (int i = 0; i < 10000; i++) {
+			Comparable[] t = { "movie_" + i, 1900 + i % 100 };
+			tuples.add(t);
+			index.put(new KeyType(t[0]), t);
+			copies.add(new AbstractMap.SimpleImmutableEntry<>(new KeyType(t[0]), t.clone()));
+			rows.add(new RowEntry(new KeyType(t[0]), t.clone(), i));      // e.g., decoded again
+		}
+		new File("store").mkdirs();
+		java.nio.file.Path path = Paths.get("store", NAME + ".dbf");
+		Snapshot.write(path, NAME, attribute, domain, key, tuples, index);
+		long byIdentity = path.toFile().length();
+		Snapshot.write(path, NAME, attribute, domain, key, tuples, copies, 0);
+		assertTrue(path.toFile().length() > byIdentity);          // tuples stored again in the index
+		Snapshot.write(path, NAME, attribute, domain, key, tuples, rows, 0);
+		assertEquals(byIdentity, path.toFile().length());
+
+		Snapshot.Contents c = Snapshot.read(path);
+		assertEquals(10000, c.index.size());
+		for (Map.Entry<KeyType, Comparable[]> e : c.index) {
+			int i = Integer.parseInt(((String) e.getValue()[0]).substring("movie_".length()));
+			assertSame(c.tuples.get(i), e.getValue());            // stored as a row number
+		}
+	}
+
+	@Test
+	public void testDictionaryBlocks() throws Exception {
+		String[] attribute = { "title", "genre" };
+		Class[] domain = { String.class, String.class };
+		String[] key = { "title" };
+		List<Comparable[]> tuples = new ArrayList<>();
+		for (int i = 0; i < 10000; i++) tuples.add(new Comparable[] { "movie_" + i, new String("genre_" + i % 5) });
+		new File("store").mkdirs();
+		java.nio.file.Path path = Paths.get("store", NAME + ".dbf");
+		Snapshot.write(path, NAME, attribute, domain, key, tuples, null);
+		assertTrue(path.toFile().length() < 10000 * 20);
+
+		List<Comparable[]> read = Snapshot.read(path).tuples;
+		assertEquals(tuples.size(), read.size());
+		for (int i = 0; i < tuples.size(); i++) assertArrayEquals(tuples.get(i), read.get(i));
+		assertSame(read.get(0)[1], read.get(5)[1]);          // one String per distinct value
+		assertFalse(read.get(0)[1] == read.get(1)[1]);
+	}
+
+	@Test
+	public void testChecksum() throws Exception {
+		String[] attribute = { "title", "year" };
+		Class[] domain = { String.class, Integer.class };
+		List<Comparable[]> tuples = new ArrayList<>();
+		for (int i = 0; i < 10000; i++) tuples.add(new Comparable[] { "movie_" + i, 1900 + i % 100 });
+		new File("store").mkdirs();
+		java.nio.file.Path path = Paths.get("store", NAME + ".dbf");
+		Snapshot.write(path, NAME, attribute, domain, new String[] { "title" }, tuples, null);
+		assertEquals(10000, Snapshot.read(path).tuples.size());
+
+		try (RandomAccessFile f = new RandomAccessFile(path.toFile(), "rw")) {
+			long pos = f.length() / 2;                       // in the middle block
+			f.seek(pos);
+			int b = f.read();
+			f.seek(pos);
+			f.write(b ^ 1);
+		}
+		try {
+			Snapshot.read(path);
+			fail("corrupt snapshot read");
+		} catch (IOException ex) {
+			assertTrue(ex.getMessage().contains("corrupt"));
+		}
+		assertNull(Table.load(NAME));
+
+		List<Comparable[]> view = SnapshotView.open(path).tuples();
+		assertArrayEquals(tuples.get(0), view.get(0));
+		assertArrayEquals(tuples.get(9999), view.get(9999));
+		try {
+			view.get(5000);
+			fail("corrupt block read");
+		} catch (UncheckedIOException ex) {
+			assertTrue(ex.getMessage().contains("corrupt"));
+		}
+	}
+
+	@Test
+	public void testCheckpointWithoutLog() {
+		Table t = movies();
+		t.checkpoint();
+		File delta = new File("store" + File.separator + NAME + ".dbf.10");
+		assertFalse(delta.exists());
+		check(t, Table.load(NAME));
+
+		t.insert(new Comparable[] { "movie_10", 2000, 12.5, 10L << 40, 'k', (byte) -10 });
+		t.checkpoint();
+		assertTrue(delta.exists());
+		check(t, Table.load(NAME));
+		t.save();
+		assertFalse(delta.exists());
+		check(t, Table.load(NAME));
+	}
+
+	@Test
+	public void testMergeDeltas() {
+		Table t = movies();
+		t.checkpoint();
+		for (int i = 10; i < 19; i++) {
+			t.insert(new Comparable[] { "movie_" + i, 1990 + i, i * 1.25, (long) i << 40, 'k', (byte) -i });
+			t.checkpoint();
+			assertEquals(i < 18, new File("store" + File.separator + NAME + ".dbf." + i).exists());
+		}
+		for (int i = 10; i < 18; i++)
+			assertFalse(new File("store" + File.separator + NAME + ".dbf." + i).exists());
+		assertFalse(new File("store" + File.separator + NAME + ".dbf.merge").exists());
+		check(t, Table.load(NAME));
+	}
+
+	@Test
+	public void testLegacySerialized() throws IOException {
+		File dir = Files.createTempDirectory("legacy").toFile();
+		File file = new File(dir, "legacy.dbf");
+		try (InputStream in = SnapshotTest.class.getResourceAsStream("/legacy.dbf")) {
+			Files.copy(in, file.toPath());          // written by Java serialization
+		}
+		Table expected = new Table("legacy", "id name", "Integer String", "id");
+		expected.insert(new Comparable[] { 1, "one" });
+		expected.insert(new Comparable[] { 2, "two" });
+		expected.insert(new Comparable[] { 3, "three" });
+		try {
+			Table t = Table.load(dir.getPath() + File.separator, "legacy");
+			assertTrue(expected.equals(t) && t.equals(expected));
+			assertTrue(expected.select(new KeyType(2)).equals(t.select(new KeyType(2))));
+
+			t.insert(new Comparable[] { 4, "four" });
+			expected.insert(new Comparable[] { 4, "four" });
+			t.save();                                 // rewritten as a snapshot
+			Table u = Table.load(dir.getPath() + File.separator, "legacy");
+			assertTrue(expected.equals(u) && u.equals(expected));
+		} finally {
+			for (File f : dir.listFiles())
+				f.delete();
+			dir.delete();
+		}
+	}
+
+}
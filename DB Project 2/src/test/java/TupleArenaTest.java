@@ -0,0 +1,104 @@
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TupleArenaTest {
+
+	private static final Class[] DOMAIN = { String.class, Integer.class, Double.class, Long.class };
+
+	private static Comparable[] row(int i) {
+		return new Comparable[] { "movie_" + i, 1900 + i % 100, i * 0.5, (long) i << 33 };
+	}
+
+	@Test
+	public void testAddGetAcrossChunks() {
+		TupleArena arena = new TupleArena(DOMAIN);
+		for (int i = 0; i < 100000; i++) arena.add(row(i));
+		assertEquals(100000, arena.size());
+		assertTrue(arena.allocated() > TupleArena.CHUNK_SIZE);
+		assertArrayEquals(row(77777), arena.get(77777));
+
+		TupleArena.Cursor c = arena.cursor();
+		long sum = 0;
+		int n = 0;
+		while (c.next()) {
+			sum += c.getInt(1);
+			n++;
+		}
+		assertEquals(100000, n);
+		long expected = 0;
+		for (int i = 0; i < 100000; i++) expected += 1900 + i % 100;
+		assertEquals(expected, sum);
+		assertTrue(c.seek(12345));
+		assertEquals("movie_12345", c.getString(0));
+		assertEquals(12345 * 0.5, c.getDouble(2), 0.0);
+		assertEquals(12345L << 33, c.getLong(3));
+		assertArrayEquals(row(12345), c.toArray());
+	}
+
+	@Test(expected = ClassCastException.class)
+	public void testWrongDomain() {
+		TupleArena arena = new TupleArena(DOMAIN);
+		arena.add(row(1));
+		TupleArena.Cursor c = arena.cursor();
+		c.next();
+		c.getInt(2);
+	}
+
+	@Test
+	public void testUpdateDeleteCompact() {
+		TupleArena arena = new TupleArena(DOMAIN);
+		for (int i = 0; i < 1000; i++) arena.add(row(i));
+		Comparable[] longer = { "a much longer title than before", 2000, 1.0, 1L };
+		assertEquals(10, arena.update(10, longer));
+		assertEquals(11, arena.update(11, new Comparable[] { "m", 2001, 2.0, 2L }));
+		for (int i = 0; i < 1000; i += 2) assertTrue(arena.delete(i));
+		assertFalse(arena.delete(0));
+		assertEquals(500, arena.size());
+		assertArrayEquals(row(1), arena.get(0));
+		assertEquals(21, arena.ridOf(10));
+		arena.add(row(1000));
+		assertArrayEquals(row(1000), arena.get(500));
+
+		List<Comparable[]> before = new ArrayList<>(arena);
+		assertTrue(arena.compact() >= 0);
+		assertEquals(before.size(), arena.size());
+		for (int i = 0; i < before.size(); i++) assertArrayEquals(before.get(i), arena.get(i));
+		assertArrayEquals(new Comparable[] { "m", 2001, 2.0, 2L }, arena.fetch(11));
+		assertNull(arena.fetch(10));
+	}
+
+	@Test
+	public void testOffHeapTable() {
+		String[] attribute = { "title", "year", "length", "id" };
+		String[] key = { "title", "year" };
+		Table t = new Table("offHeap", attribute, DOMAIN, key, new TupleArena(DOMAIN));
+		List<Comparable[]> tuples = new ArrayList<>();
+		for (int i = 0; i < 2000; i++) {
+			assertTrue(t.insert(row(i)));
+			tuples.add(row(i));
+		}
+		assertTrue(t.isOffHeap() && !t.isOnDisk());
+		Table all = new Table("expected", attribute, DOMAIN, key, tuples);
+		assertTrue(all.equals(t) && t.equals(all));
+
+		List<Comparable[]> one = new ArrayList<>();
+		one.add(row(1234));
+		Table expected = new Table("expected", attribute, DOMAIN, key, one);
+		assertTrue(expected.equals(t.select(new KeyType("movie_1234", 1934))));
+
+		Table recent = t.where(r -> r.getInt(1) == 1977);
+		assertTrue(recent.isOffHeap());
+		Table same = all.where(r -> r.getInt(1) == 1977);
+		assertTrue(same.equals(recent) && recent.equals(same));
+		long[] count = { 0 };
+		recent.scan(r -> count[0]++);
+		assertEquals(20, count[0]);
+		one.set(0, row(1077));
+		assertTrue(new Table("expected", attribute, DOMAIN, key, one).equals(recent.select(new KeyType("movie_1077", 1977))));
+	}
+
+}
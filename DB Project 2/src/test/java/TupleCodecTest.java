@@ -0,0 +1,54 @@
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class TupleCodecTest {
+
+	private static final Class[] DOMAIN = { String.class, Integer.class, Double.class, Long.class,
+			Float.class, Short.class, Character.class, Byte.class };
+
+	@Test
+	public void testRoundTrip() {
+		TupleCodec codec = new TupleCodec(DOMAIN);
+		assertEquals(2 + 4 + 8 + 8 + 4 + 2 + 2 + 1, codec.fixedSize());
+
+		Comparable[] t = { "Star_Wars", 1977, 124.5, 12345L, 10000.0F, (short) 7, 'F', (byte) -3 };
+		Comparable[] u = { "Am\u00e9lie \ud83c\udfac", -1, 0.0, Long.MIN_VALUE, -1.5F, Short.MAX_VALUE, '\u00e9', Byte.MAX_VALUE };
+		int tLen = codec.encodedSize(t), uLen = codec.encodedSize(u);
+		assertEquals(codec.fixedSize() + 9, tLen);
+		assertEquals(codec.fixedSize() + ((String) u[0]).getBytes(java.nio.charset.StandardCharsets.UTF_8).length, uLen);
+
+		ByteBuffer heap = ByteBuffer.allocate(tLen + uLen + 5);
+		ByteBuffer direct = ByteBuffer.allocateDirect(tLen + uLen + 5);
+		for (ByteBuffer b : new ByteBuffer[] { heap, direct }) {
+			assertEquals(tLen, codec.encode(t, b, 5));
+			assertEquals(uLen, codec.encode(u, b, 5 + tLen));
+			assertArrayEquals(t, codec.decode(b, 5));
+			assertArrayEquals(u, codec.decode(b, 5 + tLen));
+			assertEquals(u[0], codec.decode(b, 5 + tLen, 0));
+		}
+	}
+
+	@Test
+	public void testSeveralStrings() {
+		TupleCodec codec = new TupleCodec(new Class[] { String.class, Integer.class, String.class, String.class });
+		char[] c = new char[1000];
+		java.util.Arrays.fill(c, 'x');
+		Comparable[] t = { "", 7, new String(c), "Fox" };
+		ByteBuffer b = ByteBuffer.allocate(codec.encodedSize(t));
+		codec.encode(t, b, 0);
+		assertArrayEquals(t, codec.decode(b, 0));
+		assertEquals("Fox", codec.decode(b, 0, 3));
+		assertEquals(new String(c), codec.decode(b, 0, 2));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRecordTooLong() {
+		TupleCodec codec = new TupleCodec(new Class[] { String.class });
+		char[] c = new char[TupleCodec.MAX_RECORD];
+		codec.encodedSize(new Comparable[] { new String(c) });
+	}
+
+}
@@ -0,0 +1,134 @@
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class WriteAheadLogTest {
+
+	private static final String NAME = "walTest";
+
+	private static final Path LOG = new File("store" + File.separator + NAME + ".wal").toPath();
+
+	private static final Class[] DOMAIN = { String.class, Integer.class };
+
+	@After
+	public void cleanUp() {
+		for (File f : new File("store").listFiles((d, f) -> f.startsWith(NAME + "."))) f.delete();
+	}
+
+	@Test
+	public void testGroupCommitAndReplay() throws Exception {
+		new File("store").mkdirs();
+		WriteAheadLog log = new WriteAheadLog(LOG, DOMAIN, WriteAheadLog.Sync.FORCE, null);
+		Thread[] threads = new Thread[8];
+		for (int t = 0; t < threads.length; t++) {
+			int id = t;
+			threads[t] = new Thread(() -> {
+				try {
+					for (int i = 0; i < 500; i++) log.commit(log.append(new Comparable[] { "t" + id, i }));
+				} catch (Exception ex) {
+					throw new RuntimeException(ex);
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread t : threads) t.join();
+		log.close();
+
+		try (RandomAccessFile f = new RandomAccessFile(LOG.toFile(), "rw")) {
+			f.seek(f.length());
+			f.write(new byte[] { 0, 0, 0, 9, 1, 2, 3 });        // a torn record
+		}
+		List<Comparable[]> redone = new ArrayList<>();
+		WriteAheadLog wal = new WriteAheadLog(LOG, DOMAIN, WriteAheadLog.Sync.WRITE, redone::add);
+		assertEquals(4000, redone.size());
+		assertEquals(4000, redone.stream().filter(t -> (Integer) t[1] < 500).count());
+		long end = wal.end();
+		wal.commit(wal.append(new Comparable[] { "last", 1 }));
+		assertTrue(wal.end() > end);
+		wal.close();
+
+		redone.clear();
+		new WriteAheadLog(LOG, DOMAIN, WriteAheadLog.Sync.WRITE, redone::add).close();
+		assertEquals(4001, redone.size());
+		assertArrayEquals(new Comparable[] { "last", 1 }, redone.get(4000));
+	}
+
+	@Test
+	public void testTableReplay() {
+		Table t = new Table(NAME, "title year", "String Integer", "title year");
+		t.log(WriteAheadLog.Sync.FORCE);
+		for (int i = 0; i < 5; i++) t.insert(new Comparable[] { "movie_" + i, 2000 + i });
+		t.save();                                           // empties the log
+		for (int i = 5; i < 10; i++) t.insert(new Comparable[] { "movie_" + i, 2000 + i });
+
+		Table u = Table.load(NAME);                         // as after a crash
+		assertTrue(t.equals(u) && u.equals(t));
+		KeyType k = new KeyType("movie_7", 2007);
+		assertTrue(t.select(k).equals(u.select(k)));
+	}
+
+	@Test
+	public void testTruncate() throws Exception {
+		new File("store").mkdirs();
+		WriteAheadLog wal = new WriteAheadLog(LOG, DOMAIN, WriteAheadLog.Sync.WRITE, null);
+		long half = 0;
+		for (int i = 0; i < 100; i++) {
+			long lsn = wal.append(new Comparable[] { "r", i });
+			if (i % 10 == 0) wal.commit(lsn);
+			if (i == 49) half = lsn;
+		}
+		wal.truncate(half);                                 // some of the kept records are still buffered
+		wal.close();
+		List<Comparable[]> redone = new ArrayList<>();
+		wal = new WriteAheadLog(LOG, DOMAIN, WriteAheadLog.Sync.WRITE, redone::add);
+		assertEquals(50, redone.size());
+		assertEquals(50, redone.get(0)[1]);
+		assertTrue(wal.end() > half);
+		wal.close();
+	}
+
+	@Test
+	public void testCheckpoint() {
+		Table t = new Table(NAME, "title year", "String Integer", "title year");
+		t.log(WriteAheadLog.Sync.FORCE);
+		for (int i = 0; i < 5; i++) t.insert(new Comparable[] { "movie_" + i, 2000 + i });
+		t.checkpoint();                                     // writes the snapshot
+		assertEquals(12, LOG.toFile().length());
+		for (int i = 5; i < 8; i++) t.insert(new Comparable[] { "movie_" + i, 2000 + i });
+		t.checkpoint();                                     // writes a delta of 3 tuples
+		assertTrue(new File("store" + File.separator + NAME + ".dbf.5").exists());
+		for (int i = 8; i < 10; i++) t.insert(new Comparable[] { "movie_" + i, 2000 + i });
+
+		Table u = Table.load(NAME);
+		assertTrue(t.equals(u) && u.equals(t));
+		KeyType k = new KeyType("movie_9", 2009);
+		assertTrue(t.select(k).equals(u.select(k)));
+
+		u.save();
+		assertFalse(new File("store" + File.separator + NAME + ".dbf.5").exists());
+		assertTrue(t.equals(Table.load(NAME)));
+	}
+
+	@Test
+	public void testCheckpointDiskTable() {
+		new File("store" + File.separator + NAME + ".dat").delete();
+		Table t = new Table(NAME, "title year", "String Integer", "title year", true);
+		t.log(WriteAheadLog.Sync.WRITE);
+		for (int i = 0; i < 500; i++) t.insert(new Comparable[] { "movie_" + i, 2000 + i });
+		Checkpointer c = new Checkpointer(1, java.util.concurrent.TimeUnit.HOURS);
+		c.add(t);
+		c.checkpoint();
+		c.close();
+		assertEquals(12, LOG.toFile().length());
+		t.insert(new Comparable[] { "movie_500", 2500 });
+		assertTrue(LOG.toFile().length() > 12);
+	}
+
+}